@@ -0,0 +1,96 @@
+package com.jas777.railops;
+
+import com.jas777.railops.journal.EventJournal;
+import com.jas777.railops.log.Log;
+import com.jas777.railops.logic.CompiledStation;
+import com.jas777.railops.logic.HeadlessSimulationEngine;
+import com.jas777.railops.logic.SimulationController;
+import com.jas777.railops.logic.StationConfigLoader;
+import com.jas777.railops.logic.TimetableLoader;
+import com.jas777.railops.logic.TopologyCache;
+import com.jas777.railops.model.StationConfig;
+import com.jas777.railops.model.SwitchState;
+import com.jas777.railops.model.TimetableEntry;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs the simulation without a GUI, e.g. for overnight regression replays.
+ * Usage: HeadlessLauncher [hours=24] [rate=0 (unthrottled)] [routing=hops|lengths]
+ * Set {@code -Drailops.sim.threads=N} to resolve train movement on N worker threads, and
+ * {@code -Drailops.journal=DIR} to journal every state change to DIR. {@code -Drailops.checkpoint.load=FILE}
+ * starts from a saved checkpoint and {@code -Drailops.checkpoint.save=FILE} saves one when the run ends.
+ * {@code -Drailops.timetable=FILE} loads a GTFS stop_times or CSV timetable instead of the demo one, filtered to
+ * the comma-separated ids in {@code -Drailops.timetable.station}. The compiled layout is cached in
+ * {@code -Drailops.cache=DIR}, see {@link TopologyCache}.
+ */
+public class HeadlessLauncher {
+    public static void main(String[] args) throws IOException {
+        double hours = args.length > 0 ? Double.parseDouble(args[0]) : 24.0;
+        double rate = args.length > 1 ? Double.parseDouble(args[1]) : 0.0;
+        boolean useTrackLengths = args.length > 2 && "lengths".equalsIgnoreCase(args[2]);
+
+        CompiledStation station = TopologyCache.load("station_config.json", useTrackLengths);
+        StationConfig config = station.getConfig();
+        Map<String, SwitchState> switchStates = StationConfigLoader.createSwitchStates(config);
+
+        String timetableFile = System.getProperty("railops.timetable");
+        List<TimetableEntry> timetable;
+        if (timetableFile != null) {
+            String stations = System.getProperty("railops.timetable.station", "");
+            List<String> filter = stations.isBlank() ? List.of() : Arrays.asList(stations.split(","));
+            timetable = new TimetableLoader(filter, TimetableLoader.defaultEntryNode(config))
+                    .load(Path.of(timetableFile));
+        } else {
+            timetable = SimulationController.createDefaultTimetable(config);
+        }
+
+        SimulationController controller = new SimulationController(station, switchStates, timetable);
+        int threads = Integer.getInteger("railops.sim.threads", 1);
+        if (threads > 1) {
+            int threshold = Integer.getInteger("railops.sim.parallelThreshold", 1024);
+            controller.setMovementPool(new ForkJoinPool(threads), threshold);
+        }
+        String checkpointIn = System.getProperty("railops.checkpoint.load");
+        if (checkpointIn != null) {
+            long loadStart = System.nanoTime();
+            controller.loadCheckpoint(Path.of(checkpointIn));
+            System.out.printf("Loaded checkpoint at %s in %.1f ms%n", controller.getCurrentTime(),
+                    (System.nanoTime() - loadStart) / 1_000_000.0);
+        }
+        String journalDir = System.getProperty("railops.journal");
+        EventJournal journal = journalDir == null ? null : new EventJournal(Path.of(journalDir));
+        controller.setJournal(journal);
+        HeadlessSimulationEngine engine = new HeadlessSimulationEngine(controller, rate);
+
+        long seconds = (long) (hours * 3600);
+        long start = System.nanoTime();
+        long simulated = engine.run(seconds);
+        Log.flush();
+        if (journal != null) {
+            journal.close();
+        }
+        double wallSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        String checkpointOut = System.getProperty("railops.checkpoint.save");
+        if (checkpointOut != null) {
+            long saveStart = System.nanoTime();
+            controller.saveCheckpoint(Path.of(checkpointOut));
+            System.out.printf("Saved checkpoint at %s in %.1f ms%n", controller.getCurrentTime(),
+                    (System.nanoTime() - saveStart) / 1_000_000.0);
+        }
+
+        System.out.printf("Simulated %d s in %.3f s wall-clock (%.0fx), clock at %s%n",
+                simulated, wallSeconds, simulated / Math.max(wallSeconds, 1e-9), controller.getCurrentTime());
+        System.out.printf("Route cache: %d hits, %d misses%n",
+                controller.getRouteCache().getHits(), controller.getRouteCache().getMisses());
+        if (journal != null) {
+            System.out.printf("Journal: %d records in %s%n", journal.getRecordCount(), journal.getDirectory());
+        }
+        Log.flush();
+    }
+}
@@ -0,0 +1,48 @@
+package com.jas777.railops;
+
+import com.jas777.railops.log.Log;
+import com.jas777.railops.log.LogLevel;
+import com.jas777.railops.log.Subsystem;
+import com.jas777.railops.logic.ArrivalPerturbation;
+import com.jas777.railops.logic.CompiledStation;
+import com.jas777.railops.logic.MonteCarloReport;
+import com.jas777.railops.logic.MonteCarloRunner;
+import com.jas777.railops.logic.SimulationController;
+import com.jas777.railops.logic.StationConfigLoader;
+import com.jas777.railops.model.StationConfig;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs a batch of perturbed headless replications and prints the delay percentiles.
+ * Usage: MonteCarloLauncher [replications=1000] [seed=42] [lateProbability=0.3] [meanDelayMinutes=5]
+ * [threads=all cores]
+ */
+public class MonteCarloLauncher {
+    public static void main(String[] args) throws Exception {
+        int replications = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+        double lateProbability = args.length > 2 ? Double.parseDouble(args[2]) : 0.3;
+        double meanDelayMinutes = args.length > 3 ? Double.parseDouble(args[3]) : 5.0;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        // Per-train messages from thousands of replications would only flood the log
+        Log.setLevel(Subsystem.SIMULATION, LogLevel.WARN);
+
+        StationConfig config = StationConfigLoader.load("station_config.json");
+        CompiledStation station = CompiledStation.compile(config, false);
+        MonteCarloRunner runner = new MonteCarloRunner(station,
+                SimulationController.createDefaultTimetable(config),
+                ArrivalPerturbation.exponential(lateProbability, meanDelayMinutes * 60));
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            MonteCarloReport report = runner.run(replications, seed, pool);
+            Log.flush();
+            System.out.print(report.format());
+        } finally {
+            pool.shutdown();
+        }
+        Log.flush();
+    }
+}
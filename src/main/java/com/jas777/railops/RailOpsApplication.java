@@ -1,5 +1,12 @@
 package com.jas777.railops;
 
+import com.jas777.railops.log.Log;
+import com.jas777.railops.log.Logger;
+import com.jas777.railops.log.Subsystem;
+import com.jas777.railops.logic.ReplayEngine;
+import com.jas777.railops.logic.SimulationController;
+import com.jas777.railops.views.FxSimulationClock;
+import com.jas777.railops.views.ReplayTimeline;
 import com.jas777.railops.views.StationView;
 import com.jas777.railops.views.TimetableView;
 import javafx.application.Application;
@@ -14,8 +21,16 @@ import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import javafx.animation.AnimationTimer;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Start with {@code -Drailops.replay=DIR} to scrub through a journaled run instead of simulating live.
+ */
 public class RailOpsApplication extends Application {
 
+    private static final Logger LOG = Log.get(Subsystem.VIEW);
+
     private StationView stationView;
     private TimetableView timetableView;
     private BorderPane mainLayout;
@@ -43,6 +58,11 @@ public class RailOpsApplication extends Application {
         mainLayout.setCenter(stationView);
         updateNavbarSelection(true);
 
+        String replayDir = System.getProperty("railops.replay");
+        if (replayDir != null) {
+            startReplay(Path.of(replayDir));
+        }
+
         // Setup periodic refresh for timetable
         refreshTimer = new AnimationTimer() {
             private long lastUpdate = 0;
@@ -71,6 +91,19 @@ public class RailOpsApplication extends Application {
         });
     }
 
+    private void startReplay(Path journalDirectory) {
+        FxSimulationClock clock = stationView.getSimulationClock();
+        if (clock == null) return;
+        clock.stop();
+        SimulationController controller = clock.getController();
+        try {
+            ReplayEngine replay = new ReplayEngine(controller, journalDirectory);
+            mainLayout.setBottom(new ReplayTimeline(replay, clock));
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Could not load journal " + journalDirectory + ": " + e.getMessage(), e);
+        }
+    }
+
     private void createNavbar() {
         navbar = new HBox(10);
         navbar.setPadding(new Insets(10));
@@ -109,8 +142,8 @@ public class RailOpsApplication extends Application {
         speedSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
             int speed = newVal.intValue();
             speedLabel.setText(speed + "x");
-            if (stationView != null && stationView.getSimulationController() != null) {
-                stationView.getSimulationController().setTimeAcceleration(speed);
+            if (stationView != null && stationView.getSimulationClock() != null) {
+                stationView.getSimulationClock().setTimeAcceleration(speed);
             }
         });
 
@@ -0,0 +1,152 @@
+package com.jas777.railops.journal;
+
+import com.jas777.railops.model.TimetableEntry;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads the latest run written by {@link EventJournal} to a directory, in order, for offline analysis and replay.
+ */
+public final class JournalReader {
+
+    private final Path directory;
+    private int runStart = -1;
+    private int initialTimetableSize = -1;
+
+    public JournalReader(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Decode every record of the latest run, oldest first. Returns the number of records read.
+     */
+    public long forEach(Consumer<JournalRecord> action) throws IOException {
+        long count = 0;
+        for (int index = runStart(); Files.exists(EventJournal.segmentPath(directory, index)); index++) {
+            count += readSegment(EventJournal.segmentPath(directory, index), action);
+        }
+        return count;
+    }
+
+    /**
+     * First segment of the latest run, read from the header of the last segment in the directory.
+     */
+    public int runStart() throws IOException {
+        if (runStart >= 0) return runStart;
+        int last = -1;
+        while (Files.exists(EventJournal.segmentPath(directory, last + 1))) {
+            last++;
+        }
+        if (last < 0) {
+            throw new IOException("No journal segments in " + directory);
+        }
+        Path path = EventJournal.segmentPath(directory, last);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, EventJournal.HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            checkHeader(header, path);
+            long start = header.getLong(24);
+            if (start < 0 || start > last) {
+                throw new IOException("Corrupt run start " + start + " in segment " + last);
+            }
+            runStart = (int) start;
+        }
+        return runStart;
+    }
+
+    /**
+     * The latest run's timetable: the entries it started with, followed by every train injected while it ran, so
+     * {@link JournalType#INJECT} indices can be looked up in it.
+     */
+    public List<TimetableEntry> readTimetable() throws IOException {
+        Path path = EventJournal.timetablePath(directory, runStart());
+        if (!Files.exists(path)) {
+            throw new IOException("Journal run has no timetable: " + path);
+        }
+        List<TimetableEntry> entries = new ArrayList<>();
+        int initial = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != EventJournal.TIMETABLE_MAGIC || in.readShort() != EventJournal.VERSION) {
+                throw new IOException("Not a journal timetable: " + path);
+            }
+            while (true) {
+                int kind = in.read();
+                if (kind < 0) break;
+                // A run that crashed mid-write leaves a partial last entry; it was never injected
+                try {
+                    entries.add(new TimetableEntry(readString(in), readString(in), readString(in),
+                            LocalTime.ofSecondOfDay(in.readInt()), LocalTime.ofSecondOfDay(in.readInt()),
+                            readString(in), readString(in)));
+                } catch (EOFException e) {
+                    break;
+                }
+                if (kind == EventJournal.TIMETABLE_INITIAL) {
+                    initial = entries.size();
+                }
+            }
+        }
+        initialTimetableSize = initial;
+        return entries;
+    }
+
+    /** Number of leading {@link #readTimetable()} entries the run started with. */
+    public int initialTimetableSize() throws IOException {
+        if (initialTimetableSize < 0) {
+            readTimetable();
+        }
+        return initialTimetableSize;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void checkHeader(MappedByteBuffer buffer, Path path) throws IOException {
+        if (buffer.remaining() < EventJournal.HEADER_SIZE || buffer.getInt() != EventJournal.MAGIC) {
+            throw new IOException("Not a journal segment: " + path);
+        }
+        short version = buffer.getShort();
+        short recordSize = buffer.getShort();
+        if (version != EventJournal.VERSION || recordSize != EventJournal.RECORD_SIZE) {
+            throw new IOException("Unsupported journal segment version " + version + ": " + path);
+        }
+    }
+
+    private long readSegment(Path path, Consumer<JournalRecord> action) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            checkHeader(buffer, path);
+            buffer.position(EventJournal.HEADER_SIZE);
+
+            long count = 0;
+            while (buffer.remaining() >= EventJournal.RECORD_SIZE) {
+                long sequence = buffer.getLong();
+                long time = buffer.getLong();
+                JournalType type = JournalType.fromCode(buffer.get());
+                byte aux = buffer.get();
+                buffer.getShort();
+                int subject = buffer.getInt();
+                int a = buffer.getInt();
+                int b = buffer.getInt();
+                if (type == null) break; // Unwritten tail of the segment
+                action.accept(new JournalRecord(sequence, time, type, aux, subject, a, b));
+                count++;
+            }
+            return count;
+        }
+    }
+}
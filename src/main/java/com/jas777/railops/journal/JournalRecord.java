@@ -0,0 +1,7 @@
+package com.jas777.railops.journal;
+
+/**
+ * One decoded journal record. See {@link JournalType} for the meaning of the fields per type.
+ */
+public record JournalRecord(long sequence, long time, JournalType type, byte aux, int subject, int a, int b) {
+}
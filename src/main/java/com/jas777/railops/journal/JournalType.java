@@ -0,0 +1,44 @@
+package com.jas777.railops.journal;
+
+/**
+ * Kind of state change in an {@link EventJournal} record. The code is what is written to disk, so existing
+ * codes must never change.
+ * <p>
+ * Field use per type: {@code subject} is a train slot for train records, a switch index for SWITCH, the
+ * protected node index for SIGNAL and an interlocking route for ROUTE_LOCK / ROUTE_RELEASE.
+ */
+public enum JournalType {
+    SPAWN(1),          // a = timetable index, b = platform track
+    ENTER(2),          // a = node
+    MOVE(3),           // a = from node, b = to node
+    ARRIVE(4),         // a = node
+    DEPART(5),         // a = node
+    CLEAR(6),          // Train left the station; its slot may be reused afterwards
+    SWITCH(7),         // aux = new state, a = 1 if thrown by the operator, 0 by the interlocking
+    SIGNAL(8),         // aux = new aspect code
+    ROUTE_LOCK(9),     // a = train slot
+    ROUTE_RELEASE(10), // a = train slot
+    INJECT(11),        // a = timetable index of a train handed over at runtime, b = its arrival in sim seconds
+    LAYOUT_EDIT(12);   // a = number of changed nodes; marks a run that replay cannot reproduce
+
+    private static final JournalType[] BY_CODE = new JournalType[16];
+
+    static {
+        for (JournalType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final byte code;
+
+    JournalType(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte code() { return code; }
+
+    /** Type for a code read from disk, or null for 0 (unwritten space) and unknown codes. */
+    public static JournalType fromCode(byte code) {
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
@@ -0,0 +1,135 @@
+package com.jas777.railops.log;
+
+import com.jas777.railops.util.MpscRingBuffer;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous log facility. Records are pushed into a lock-free ring buffer and written to stdout/stderr by a
+ * background daemon thread, so simulation threads never wait on console I/O. When the buffer is full records are
+ * dropped and counted rather than blocking the caller.
+ *
+ * Levels default to INFO and can be set per subsystem, e.g. {@code -Drailops.log.level=WARN}
+ * or {@code -Drailops.log.pathfinder=TRACE}.
+ *
+ * Each line is written as {@code 2024-05-01 06:15:00.123 INFO  [SIMULATION] message}; the timestamp is the
+ * wall-clock time the record was logged.
+ */
+public final class Log {
+
+    private static final int BUFFER_CAPACITY = 16384;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private static final Map<Subsystem, Logger> LOGGERS = new EnumMap<>(Subsystem.class);
+    private static final MpscRingBuffer<LogRecord> BUFFER = new MpscRingBuffer<>(BUFFER_CAPACITY);
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static final Thread WRITER;
+
+    // Only used by the single consumer, under the BUFFER monitor
+    private static final DateTimeFormatter TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final StringBuilder LINE = new StringBuilder(256);
+
+    static {
+        LogLevel defaultLevel = parseLevel(System.getProperty("railops.log.level"), LogLevel.INFO);
+        for (Subsystem subsystem : Subsystem.values()) {
+            String property = System.getProperty("railops.log." + subsystem.name().toLowerCase());
+            LOGGERS.put(subsystem, new Logger(subsystem, parseLevel(property, defaultLevel)));
+        }
+
+        WRITER = new Thread(Log::drainLoop, "railops-log");
+        WRITER.setDaemon(true);
+        WRITER.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "railops-log-flush"));
+    }
+
+    private Log() {
+    }
+
+    public static Logger get(Subsystem subsystem) {
+        return LOGGERS.get(subsystem);
+    }
+
+    public static void setLevel(Subsystem subsystem, LogLevel level) {
+        LOGGERS.get(subsystem).setLevel(level);
+    }
+
+    public static void setLevel(LogLevel level) {
+        for (Logger logger : LOGGERS.values()) {
+            logger.setLevel(level);
+        }
+    }
+
+    /** Number of records dropped because the ring buffer was full. */
+    public static long getDroppedCount() {
+        return DROPPED.get();
+    }
+
+    /**
+     * Write out everything queued so far on the calling thread.
+     */
+    public static void flush() {
+        synchronized (BUFFER) {
+            drain();
+            System.out.flush();
+            System.err.flush();
+        }
+    }
+
+    static void write(LogRecord record) {
+        if (!BUFFER.offer(record)) {
+            DROPPED.incrementAndGet();
+        }
+    }
+
+    private static void drainLoop() {
+        while (true) {
+            boolean wrote;
+            synchronized (BUFFER) {
+                wrote = drain();
+            }
+            if (!wrote) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    // Single consumer: callers hold the BUFFER monitor
+    private static boolean drain() {
+        boolean wrote = false;
+        LogRecord record;
+        while ((record = BUFFER.poll()) != null) {
+            PrintStream out = record.level().ordinal() >= LogLevel.WARN.ordinal() ? System.err : System.out;
+            out.println(format(record));
+            wrote = true;
+        }
+        return wrote;
+    }
+
+    private static String format(LogRecord record) {
+        LINE.setLength(0);
+        TIMESTAMP.formatTo(Instant.ofEpochMilli(record.timeMillis()), LINE);
+        LINE.append(' ').append(record.level().name());
+        for (int pad = record.level().name().length(); pad < 5; pad++) {
+            LINE.append(' ');
+        }
+        LINE.append(" [").append(record.subsystem().name()).append("] ").append(record.message());
+        return LINE.toString();
+    }
+
+    private static LogLevel parseLevel(String value, LogLevel fallback) {
+        if (value == null) return fallback;
+        try {
+            return LogLevel.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+}
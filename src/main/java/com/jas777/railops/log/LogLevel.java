@@ -0,0 +1,10 @@
+package com.jas777.railops.log;
+
+public enum LogLevel {
+    TRACE,
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    OFF
+}
@@ -0,0 +1,7 @@
+package com.jas777.railops.log;
+
+/**
+ * One queued log line. The timestamp is taken when the record is created, not when it is written.
+ */
+record LogRecord(long timeMillis, LogLevel level, Subsystem subsystem, String message) {
+}
@@ -0,0 +1,47 @@
+package com.jas777.railops.log;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Leveled logger for one {@link Subsystem}. Hot paths should guard calls with the {@code isXxxEnabled()} checks
+ * so that nothing, not even the message concatenation, is evaluated at disabled levels.
+ */
+public final class Logger {
+
+    private final Subsystem subsystem;
+    private volatile int threshold;
+
+    Logger(Subsystem subsystem, LogLevel level) {
+        this.subsystem = subsystem;
+        this.threshold = level.ordinal();
+    }
+
+    public Subsystem getSubsystem() { return subsystem; }
+    public LogLevel getLevel() { return LogLevel.values()[threshold]; }
+    public void setLevel(LogLevel level) { this.threshold = level.ordinal(); }
+
+    public boolean isEnabled(LogLevel level) { return level.ordinal() >= threshold; }
+    public boolean isTraceEnabled() { return threshold <= 0; }
+    public boolean isDebugEnabled() { return threshold <= 1; }
+    public boolean isInfoEnabled() { return threshold <= 2; }
+
+    public void trace(String message) { log(LogLevel.TRACE, message); }
+    public void debug(String message) { log(LogLevel.DEBUG, message); }
+    public void info(String message) { log(LogLevel.INFO, message); }
+    public void warn(String message) { log(LogLevel.WARN, message); }
+    public void error(String message) { log(LogLevel.ERROR, message); }
+
+    public void error(String message, Throwable error) {
+        if (!isEnabled(LogLevel.ERROR)) return;
+        StringWriter trace = new StringWriter();
+        error.printStackTrace(new PrintWriter(trace));
+        log(LogLevel.ERROR, message + System.lineSeparator() + trace);
+    }
+
+    public void log(LogLevel level, String message) {
+        if (level.ordinal() >= threshold && level != LogLevel.OFF) {
+            Log.write(new LogRecord(System.currentTimeMillis(), level, subsystem, message));
+        }
+    }
+}
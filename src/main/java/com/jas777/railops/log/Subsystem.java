@@ -0,0 +1,12 @@
+package com.jas777.railops.log;
+
+/**
+ * Areas of the application whose log output can be toggled independently.
+ */
+public enum Subsystem {
+    SIMULATION,
+    PATHFINDER,
+    GRAPH,
+    ENGINE,
+    VIEW
+}
@@ -0,0 +1,30 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.TimetableEntry;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random arrival delay applied to a timetable entry for one Monte Carlo replication.
+ * Implementations must draw only from the given random source so replications are reproducible.
+ */
+@FunctionalInterface
+public interface ArrivalPerturbation {
+
+    /** Seconds to add to the entry's scheduled arrival; negative values make the train early. */
+    long delaySeconds(TimetableEntry entry, SplittableRandom random);
+
+    /**
+     * Each train is late with the given probability, by an exponentially distributed number of seconds.
+     */
+    static ArrivalPerturbation exponential(double lateProbability, double meanDelaySeconds) {
+        return (entry, random) -> {
+            if (random.nextDouble() >= lateProbability) return 0;
+            return Math.round(-meanDelaySeconds * Math.log(1.0 - random.nextDouble()));
+        };
+    }
+
+    static ArrivalPerturbation none() {
+        return (entry, random) -> 0;
+    }
+}
@@ -0,0 +1,41 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.StationConfig;
+
+/**
+ * A station layout together with everything derived from it at startup: the compiled topology and the
+ * interlocking route tables. Built by {@link #compile} or loaded from the {@link TopologyCache}.
+ * <p>
+ * All of it is read-only, so one station can back any number of {@link SimulationController}s, e.g. every
+ * replication of a Monte Carlo batch or every shard running the same layout.
+ */
+public final class CompiledStation {
+
+    private final StationConfig config;
+    private final CompiledTopology topology;
+    private final InterlockingTable interlocking;
+    private final PlatformAllocator platformLayout; // Never booked; only copied
+
+    CompiledStation(StationConfig config, CompiledTopology topology, InterlockingTable interlocking) {
+        this.config = config;
+        this.topology = topology;
+        this.interlocking = interlocking;
+        this.platformLayout = new PlatformAllocator(config, topology);
+    }
+
+    public static CompiledStation compile(StationConfig config, boolean useTrackLengths) {
+        return of(config, new LogicalGraphBuilder().compile(config, useTrackLengths));
+    }
+
+    /** Compile the interlocking for a topology compiled from this layout. */
+    public static CompiledStation of(StationConfig config, CompiledTopology topology) {
+        return new CompiledStation(config, topology, InterlockingTable.compile(config, topology));
+    }
+
+    public StationConfig getConfig() { return config; }
+    public CompiledTopology getTopology() { return topology; }
+    public InterlockingTable getInterlocking() { return interlocking; }
+
+    /** A fresh allocator for this station's platforms, with an empty plan. */
+    PlatformAllocator newPlatformAllocator() { return platformLayout.copyLayout(); }
+}
@@ -0,0 +1,427 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.StationConfig;
+import com.jas777.railops.model.Switch;
+import com.jas777.railops.model.Track;
+import com.jas777.railops.model.TrackLink;
+
+import java.util.*;
+
+/**
+ * Integer-indexed form of the logical graph. Node, track and switch IDs are interned into dense ints and
+ * the adjacency is stored in compressed-sparse-row form: the links of node n are the edge slots
+ * {@code edgeOffsets[n] .. edgeOffsets[n + 1] - 1}, with the target node, required switch and required
+ * switch state held in parallel arrays.
+ */
+public final class CompiledTopology {
+
+    public static final int NONE = -1;
+    public static final byte STATE_MAIN = 0;
+    public static final byte STATE_SIDE = 1;
+
+    private final String[] nodeIds;
+    private final String[] trackIds;
+    private final String[] switchIds;
+    private final Map<String, Integer> nodeIndex;
+    private final Map<String, Integer> trackIndex;
+    private final Map<String, Integer> switchIndex;
+
+    // Node <-> track index: entry/exit node of each track, and the track each node belongs to
+    private final int[] trackEntryNode;
+    private final int[] trackExitNode;
+    private final int[] nodeTrack;
+
+    private final int[] edgeOffsets;
+    private final int[] edgeTargets;
+    private final int[] edgeSwitch;
+    private final byte[] edgeSwitchState;
+    private final double[] edgeWeights; // null when every edge costs 1.0
+    private final double[] nodeX;       // NaN when the layout has no position for the node
+    private final double[] nodeY;
+
+    private final Map<String, List<TrackLink>> logicalGraph;
+
+    private CompiledTopology(String[] nodeIds, String[] trackIds, String[] switchIds,
+                             int[] trackEntryNode, int[] trackExitNode, int[] nodeTrack,
+                             int[] edgeOffsets, int[] edgeTargets, int[] edgeSwitch, byte[] edgeSwitchState,
+                             double[] edgeWeights, double[] nodeX, double[] nodeY,
+                             Map<String, List<TrackLink>> logicalGraph) {
+        this(nodeIds, trackIds, switchIds, indexOf(nodeIds), indexOf(trackIds), indexOf(switchIds),
+                trackEntryNode, trackExitNode, nodeTrack, edgeOffsets, edgeTargets, edgeSwitch, edgeSwitchState,
+                edgeWeights, nodeX, nodeY, logicalGraph);
+    }
+
+    private CompiledTopology(String[] nodeIds, String[] trackIds, String[] switchIds,
+                             Map<String, Integer> nodeIndex, Map<String, Integer> trackIndex,
+                             Map<String, Integer> switchIndex,
+                             int[] trackEntryNode, int[] trackExitNode, int[] nodeTrack,
+                             int[] edgeOffsets, int[] edgeTargets, int[] edgeSwitch, byte[] edgeSwitchState,
+                             double[] edgeWeights, double[] nodeX, double[] nodeY,
+                             Map<String, List<TrackLink>> logicalGraph) {
+        this.nodeIds = nodeIds;
+        this.trackIds = trackIds;
+        this.switchIds = switchIds;
+        this.nodeIndex = nodeIndex;
+        this.trackIndex = trackIndex;
+        this.switchIndex = switchIndex;
+        this.trackEntryNode = trackEntryNode;
+        this.trackExitNode = trackExitNode;
+        this.nodeTrack = nodeTrack;
+        this.edgeOffsets = edgeOffsets;
+        this.edgeTargets = edgeTargets;
+        this.edgeSwitch = edgeSwitch;
+        this.edgeSwitchState = edgeSwitchState;
+        this.edgeWeights = edgeWeights;
+        this.nodeX = nodeX;
+        this.nodeY = nodeY;
+        this.logicalGraph = logicalGraph;
+    }
+
+    /**
+     * Intern every node, track and switch of the station and flatten the logical graph into CSR arrays.
+     */
+    public static CompiledTopology compile(StationConfig config, Map<String, List<TrackLink>> logicalGraph) {
+        LinkedHashSet<String> nodes = new LinkedHashSet<>();
+        List<String> tracks = new ArrayList<>();
+        List<String> switches = new ArrayList<>();
+
+        for (Track track : config.getTracks()) {
+            tracks.add(track.id());
+            addIfPresent(nodes, track.entryNodeId());
+            addIfPresent(nodes, track.exitNodeId());
+        }
+        for (Switch sw : config.getSwitches()) {
+            switches.add(sw.id());
+            addIfPresent(nodes, sw.p1ConnectionId());
+            addIfPresent(nodes, sw.p2MainConnectionId());
+            addIfPresent(nodes, sw.p2SideConnectionId());
+        }
+        for (Map.Entry<String, List<TrackLink>> entry : logicalGraph.entrySet()) {
+            nodes.add(entry.getKey());
+            for (TrackLink link : entry.getValue()) {
+                nodes.add(link.targetTrackId());
+            }
+        }
+
+        String[] nodeIds = nodes.toArray(new String[0]);
+        String[] switchIds = switches.toArray(new String[0]);
+        Map<String, Integer> nodeIndex = indexOf(nodeIds);
+        Map<String, Integer> switchIndex = indexOf(switchIds);
+
+        int edgeCount = 0;
+        for (List<TrackLink> links : logicalGraph.values()) {
+            edgeCount += links.size();
+        }
+
+        int[] offsets = new int[nodeIds.length + 1];
+        int[] targets = new int[edgeCount];
+        int[] requiredSwitch = new int[edgeCount];
+        byte[] requiredState = new byte[edgeCount];
+
+        int edge = 0;
+        for (int n = 0; n < nodeIds.length; n++) {
+            offsets[n] = edge;
+            List<TrackLink> links = logicalGraph.get(nodeIds[n]);
+            if (links == null) continue;
+
+            for (TrackLink link : links) {
+                targets[edge] = nodeIndex.get(link.targetTrackId());
+                if (link.isConditional()) {
+                    Integer sw = switchIndex.get(link.requiredSwitchId());
+                    requiredSwitch[edge] = sw != null ? sw : NONE;
+                    requiredState[edge] = "SIDE".equals(link.requiredSwitchState()) ? STATE_SIDE : STATE_MAIN;
+                } else {
+                    requiredSwitch[edge] = NONE;
+                    requiredState[edge] = NONE;
+                }
+                edge++;
+            }
+        }
+        offsets[nodeIds.length] = edge;
+
+        List<Track> trackList = config.getTracks();
+        int[] trackEntryNode = new int[trackList.size()];
+        int[] trackExitNode = new int[trackList.size()];
+        int[] nodeTrack = new int[nodeIds.length];
+        Arrays.fill(nodeTrack, NONE);
+        for (int t = 0; t < trackList.size(); t++) {
+            Track track = trackList.get(t);
+            trackEntryNode[t] = track.entryNodeId() == null ? NONE : nodeIndex.get(track.entryNodeId());
+            trackExitNode[t] = track.exitNodeId() == null ? NONE : nodeIndex.get(track.exitNodeId());
+            if (trackEntryNode[t] != NONE) nodeTrack[trackEntryNode[t]] = t;
+            if (trackExitNode[t] != NONE) nodeTrack[trackExitNode[t]] = t;
+        }
+
+        double[] nodeX = new double[nodeIds.length];
+        double[] nodeY = new double[nodeIds.length];
+        Arrays.fill(nodeX, Double.NaN);
+        Arrays.fill(nodeY, Double.NaN);
+        mapNodeCoordinates(config.getSwitches(), config.getTracks(), nodeIndex, nodeX, nodeY);
+
+        return new CompiledTopology(nodeIds, tracks.toArray(new String[0]), switchIds,
+                trackEntryNode, trackExitNode, nodeTrack, offsets, targets, requiredSwitch, requiredState, null, nodeX, nodeY, logicalGraph);
+    }
+
+    /**
+     * Copy of this topology that charges the given weight per edge slot instead of 1.0 per hop.
+     */
+    public CompiledTopology withEdgeWeights(double[] weights) {
+        if (weights.length != edgeTargets.length) {
+            throw new IllegalArgumentException("Expected " + edgeTargets.length + " edge weights, got " + weights.length);
+        }
+        return new CompiledTopology(nodeIds, trackIds, switchIds, nodeIndex, trackIndex, switchIndex,
+                trackEntryNode, trackExitNode, nodeTrack, edgeOffsets, edgeTargets, edgeSwitch, edgeSwitchState,
+                weights, nodeX, nodeY, logicalGraph);
+    }
+
+    /**
+     * Copy of this topology with the links of some nodes replaced, for {@link IncrementalGraph}.
+     * <p>
+     * The id arrays extend the ones of this topology, so existing indices stay valid. Rows not in
+     * {@code changedRows} are copied edge for edge; a null row drops the node's links. Edge weights are
+     * not carried over, the caller patches them through {@link #withEdgeWeights}.
+     */
+    CompiledTopology patch(String[] nodeIds, String[] trackIds, String[] switchIds,
+                           int[] trackEntryNode, int[] trackExitNode, Map<Integer, List<TrackLink>> changedRows,
+                           List<Switch> switches, List<Track> tracks) {
+        Map<String, Integer> nodeIndex = extend(this.nodeIndex, this.nodeIds.length, nodeIds);
+        Map<String, Integer> trackIndex = extend(this.trackIndex, this.trackIds.length, trackIds);
+        Map<String, Integer> switchIndex = extend(this.switchIndex, this.switchIds.length, switchIds);
+
+        int edgeCount = edgeTargets.length;
+        for (Map.Entry<Integer, List<TrackLink>> row : changedRows.entrySet()) {
+            int n = row.getKey();
+            if (n < nodeCount()) edgeCount -= edgeOffsets[n + 1] - edgeOffsets[n];
+            if (row.getValue() != null) edgeCount += row.getValue().size();
+        }
+
+        int[] offsets = new int[nodeIds.length + 1];
+        int[] targets = new int[edgeCount];
+        int[] requiredSwitch = new int[edgeCount];
+        byte[] requiredState = new byte[edgeCount];
+        Map<String, List<TrackLink>> graph = new HashMap<>(logicalGraph);
+
+        int edge = 0;
+        for (int n = 0; n < nodeIds.length; n++) {
+            offsets[n] = edge;
+            if (!changedRows.containsKey(n)) {
+                if (n >= nodeCount()) continue;
+                int count = edgeOffsets[n + 1] - edgeOffsets[n];
+                System.arraycopy(edgeTargets, edgeOffsets[n], targets, edge, count);
+                System.arraycopy(edgeSwitch, edgeOffsets[n], requiredSwitch, edge, count);
+                System.arraycopy(edgeSwitchState, edgeOffsets[n], requiredState, edge, count);
+                edge += count;
+                continue;
+            }
+
+            List<TrackLink> links = changedRows.get(n);
+            if (links == null) {
+                graph.remove(nodeIds[n]);
+                continue;
+            }
+            graph.put(nodeIds[n], links);
+            for (TrackLink link : links) {
+                targets[edge] = nodeIndex.get(link.targetTrackId());
+                Integer sw = switchIndex.get(link.requiredSwitchId());
+                requiredSwitch[edge] = sw != null ? sw : NONE;
+                requiredState[edge] = link.isConditional() ? parseSwitchState(link.requiredSwitchState()) : NONE;
+                edge++;
+            }
+        }
+        offsets[nodeIds.length] = edge;
+
+        int[] nodeTrack = new int[nodeIds.length];
+        Arrays.fill(nodeTrack, NONE);
+        for (int t = 0; t < trackEntryNode.length; t++) {
+            if (trackEntryNode[t] != NONE) nodeTrack[trackEntryNode[t]] = t;
+            if (trackExitNode[t] != NONE) nodeTrack[trackExitNode[t]] = t;
+        }
+
+        double[] nodeX = new double[nodeIds.length];
+        double[] nodeY = new double[nodeIds.length];
+        Arrays.fill(nodeX, Double.NaN);
+        Arrays.fill(nodeY, Double.NaN);
+        mapNodeCoordinates(switches, tracks, nodeIndex, nodeX, nodeY);
+
+        return new CompiledTopology(nodeIds, trackIds, switchIds, nodeIndex, trackIndex, switchIndex,
+                trackEntryNode, trackExitNode, nodeTrack, offsets, targets, requiredSwitch, requiredState, null,
+                nodeX, nodeY, graph);
+    }
+
+    // The index maps are never modified, so a patch that adds no ids shares them
+    private static Map<String, Integer> extend(Map<String, Integer> index, int count, String[] ids) {
+        if (ids.length == count) return index;
+        Map<String, Integer> extended = new HashMap<>(index);
+        for (int i = count; i < ids.length; i++) {
+            extended.put(ids[i], i);
+        }
+        return extended;
+    }
+
+    /**
+     * Write the interned ids and every array of the topology, for {@link TopologyCache}.
+     */
+    void write(SnapshotCodec.Output out) {
+        putIds(out, nodeIds);
+        putIds(out, trackIds);
+        putIds(out, switchIds);
+        out.putInts(trackEntryNode, trackEntryNode.length);
+        out.putInts(trackExitNode, trackExitNode.length);
+        out.putInts(nodeTrack, nodeTrack.length);
+        out.putInts(edgeOffsets, edgeOffsets.length);
+        out.putInts(edgeTargets, edgeTargets.length);
+        out.putInts(edgeSwitch, edgeSwitch.length);
+        out.putBytes(edgeSwitchState);
+        out.putByte((byte) (edgeWeights != null ? 1 : 0));
+        if (edgeWeights != null) {
+            out.putDoubles(edgeWeights);
+        }
+        out.putDoubles(nodeX);
+        out.putDoubles(nodeY);
+    }
+
+    /**
+     * Read a topology written by {@link #write}. The String-keyed logical graph is rebuilt from the edge arrays.
+     */
+    static CompiledTopology read(SnapshotCodec.Input in) {
+        String[] nodeIds = getIds(in);
+        String[] trackIds = getIds(in);
+        String[] switchIds = getIds(in);
+        int[] trackEntryNode = in.getInts();
+        int[] trackExitNode = in.getInts();
+        int[] nodeTrack = in.getInts();
+        int[] offsets = in.getInts();
+        int[] targets = in.getInts();
+        int[] requiredSwitch = in.getInts();
+        byte[] requiredState = in.getBytes();
+        double[] weights = in.getByte() != 0 ? in.getDoubles() : null;
+        double[] nodeX = in.getDoubles();
+        double[] nodeY = in.getDoubles();
+
+        Map<String, List<TrackLink>> logicalGraph = new HashMap<>();
+        for (int n = 0; n < nodeIds.length; n++) {
+            if (offsets[n] == offsets[n + 1]) continue;
+            List<TrackLink> links = new ArrayList<>(offsets[n + 1] - offsets[n]);
+            for (int edge = offsets[n]; edge < offsets[n + 1]; edge++) {
+                String target = nodeIds[targets[edge]];
+                if (requiredSwitch[edge] == NONE) {
+                    links.add(new TrackLink(target));
+                } else {
+                    links.add(new TrackLink(target, switchIds[requiredSwitch[edge]],
+                            requiredState[edge] == STATE_SIDE ? "SIDE" : "MAIN"));
+                }
+            }
+            logicalGraph.put(nodeIds[n], links);
+        }
+
+        return new CompiledTopology(nodeIds, trackIds, switchIds, trackEntryNode, trackExitNode, nodeTrack,
+                offsets, targets, requiredSwitch, requiredState, weights, nodeX, nodeY, logicalGraph);
+    }
+
+    private static void putIds(SnapshotCodec.Output out, String[] ids) {
+        out.putInt(ids.length);
+        for (String id : ids) {
+            out.putString(id);
+        }
+    }
+
+    private static String[] getIds(SnapshotCodec.Input in) {
+        String[] ids = new String[in.getInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = in.getString();
+        }
+        return ids;
+    }
+
+    // Same precedence as the station view: switch connection points first, then track end points
+    private static void mapNodeCoordinates(List<Switch> switches, List<Track> tracks, Map<String, Integer> nodeIndex,
+                                           double[] nodeX, double[] nodeY) {
+        for (Switch sw : switches) {
+            setCoordinates(nodeIndex, nodeX, nodeY, sw.p1ConnectionId(), sw.p1X(), sw.p1Y());
+            setCoordinates(nodeIndex, nodeX, nodeY, sw.p2MainConnectionId(), sw.p2MainX(), sw.p2MainY());
+            setCoordinates(nodeIndex, nodeX, nodeY, sw.p2SideConnectionId(), sw.p2SideX(), sw.p2SideY());
+        }
+        for (Track track : tracks) {
+            int last = track.pointCount() - 1;
+            if (last < 0) continue;
+            setCoordinates(nodeIndex, nodeX, nodeY, track.entryNodeId(), track.x(0), track.y(0));
+            setCoordinates(nodeIndex, nodeX, nodeY, track.exitNodeId(), track.x(last), track.y(last));
+        }
+    }
+
+    private static void setCoordinates(Map<String, Integer> nodeIndex, double[] nodeX, double[] nodeY,
+                                       String nodeId, double x, double y) {
+        if (nodeId == null || Double.isNaN(x)) return;
+        Integer node = nodeIndex.get(nodeId);
+        if (node != null) {
+            nodeX[node] = x;
+            nodeY[node] = y;
+        }
+    }
+
+    private static void addIfPresent(Set<String> set, String id) {
+        if (id != null) {
+            set.add(id);
+        }
+    }
+
+    private static Map<String, Integer> indexOf(String[] ids) {
+        Map<String, Integer> index = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            index.put(ids[i], i);
+        }
+        return index;
+    }
+
+    public int nodeCount() { return nodeIds.length; }
+    public int trackCount() { return trackIds.length; }
+    public int switchCount() { return switchIds.length; }
+    public int edgeCount() { return edgeTargets.length; }
+
+    /** Index of the node, or {@link #NONE} if it is not part of the topology. */
+    public int nodeIndex(String nodeId) {
+        Integer index = nodeId == null ? null : nodeIndex.get(nodeId);
+        return index != null ? index : NONE;
+    }
+
+    public int trackIndex(String trackId) {
+        Integer index = trackId == null ? null : trackIndex.get(trackId);
+        return index != null ? index : NONE;
+    }
+
+    public int switchIndex(String switchId) {
+        Integer index = switchId == null ? null : switchIndex.get(switchId);
+        return index != null ? index : NONE;
+    }
+
+    public String nodeId(int node) { return nodeIds[node]; }
+    public String trackId(int track) { return trackIds[track]; }
+    public String switchId(int sw) { return switchIds[sw]; }
+
+    public int trackEntryNode(int track) { return trackEntryNode[track]; }
+    public int trackExitNode(int track) { return trackExitNode[track]; }
+    /** Track whose entry or exit is this node, or {@link #NONE}. */
+    public int nodeTrack(int node) { return nodeTrack[node]; }
+
+    public int firstEdge(int node) { return edgeOffsets[node]; }
+    public int endEdge(int node) { return edgeOffsets[node + 1]; }
+    public int edgeTarget(int edge) { return edgeTargets[edge]; }
+    /** Switch that must be set for the edge to be traversable, or {@link #NONE}. */
+    public int edgeSwitch(int edge) { return edgeSwitch[edge]; }
+    /** {@link #STATE_MAIN} or {@link #STATE_SIDE} for conditional edges. */
+    public byte edgeSwitchState(int edge) { return edgeSwitchState[edge]; }
+
+    public boolean hasEdgeWeights() { return edgeWeights != null; }
+    public double edgeWeight(int edge) { return edgeWeights == null ? 1.0 : edgeWeights[edge]; }
+
+    public boolean hasCoordinates(int node) { return !Double.isNaN(nodeX[node]); }
+    public double nodeX(int node) { return nodeX[node]; }
+    public double nodeY(int node) { return nodeY[node]; }
+
+    /** The String-keyed graph this topology was compiled from. */
+    public Map<String, List<TrackLink>> logicalGraph() { return logicalGraph; }
+
+    public static byte parseSwitchState(String state) {
+        return "SIDE".equalsIgnoreCase(state) ? STATE_SIDE : STATE_MAIN;
+    }
+}
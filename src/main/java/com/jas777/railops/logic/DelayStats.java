@@ -0,0 +1,34 @@
+package com.jas777.railops.logic;
+
+import java.util.Arrays;
+
+/**
+ * Arrival delay distribution of one train or platform over all replications. Delays are in seconds against the
+ * unperturbed timetable; {@code missed} counts replications in which the train never arrived.
+ */
+public record DelayStats(String key, int samples, int missed, double mean,
+                         long p50, long p90, long p95, long p99, long max) {
+
+    /**
+     * Summarise the first {@code count} delays. The array is sorted in place.
+     */
+    public static DelayStats of(String key, long[] delays, int count, int missed) {
+        if (count == 0) {
+            return new DelayStats(key, 0, missed, 0.0, 0, 0, 0, 0, 0);
+        }
+        Arrays.sort(delays, 0, count);
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += delays[i];
+        }
+        return new DelayStats(key, count, missed, (double) sum / count,
+                percentile(delays, count, 0.50), percentile(delays, count, 0.90),
+                percentile(delays, count, 0.95), percentile(delays, count, 0.99), delays[count - 1]);
+    }
+
+    /** Nearest-rank percentile of a sorted prefix. */
+    private static long percentile(long[] sorted, int count, double fraction) {
+        int rank = (int) Math.ceil(fraction * count);
+        return sorted[Math.max(0, Math.min(count, rank) - 1)];
+    }
+}
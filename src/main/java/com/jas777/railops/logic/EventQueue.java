@@ -0,0 +1,87 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.TimetableEntry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Time-ordered queue of {@link SimEvent}s. Events with the same timestamp are returned in insertion order,
+ * which keeps runs deterministic.
+ */
+public class EventQueue {
+
+    private final PriorityQueue<SimEvent> queue = new PriorityQueue<>(
+            Comparator.comparingLong(SimEvent::time).thenComparingLong(SimEvent::sequence)
+    );
+    private long nextSequence = 0;
+
+    public void schedule(long time, SimEvent.Type type) {
+        queue.offer(new SimEvent(time, nextSequence++, type, TrainStore.NONE, null, null));
+    }
+
+    public void schedule(long time, SimEvent.Type type, int train) {
+        queue.offer(new SimEvent(time, nextSequence++, type, train, null, null));
+    }
+
+    public void schedule(long time, SimEvent.Type type, String nodeId) {
+        queue.offer(new SimEvent(time, nextSequence++, type, TrainStore.NONE, nodeId, null));
+    }
+
+    public void schedule(long time, SimEvent.Type type, TimetableEntry entry) {
+        queue.offer(new SimEvent(time, nextSequence++, type, TrainStore.NONE, null, entry));
+    }
+
+    /**
+     * Time of the earliest pending event, or {@link Long#MAX_VALUE} when the queue is empty.
+     */
+    public long peekTime() {
+        SimEvent head = queue.peek();
+        return head == null ? Long.MAX_VALUE : head.time();
+    }
+
+    /** Earliest pending event without removing it, or null when the queue is empty. */
+    public SimEvent peek() {
+        return queue.peek();
+    }
+
+    public SimEvent poll() {
+        return queue.poll();
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public void clear() {
+        queue.clear();
+    }
+
+    /** Pending events in the order they will be returned, e.g. for a snapshot. */
+    public List<SimEvent> pending() {
+        List<SimEvent> pending = new ArrayList<>(queue);
+        pending.sort(queue.comparator());
+        return pending;
+    }
+
+    /** Sequence number the next scheduled event will get. */
+    public long nextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Replace the queue with the given events and continue numbering at {@code nextSequence}. Events keep their
+     * sequence numbers, so ties are broken exactly as before.
+     */
+    public void restore(List<SimEvent> pending, long nextSequence) {
+        queue.clear();
+        queue.addAll(pending);
+        this.nextSequence = nextSequence;
+    }
+}
@@ -0,0 +1,51 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.Switch;
+import com.jas777.railops.model.Track;
+
+import java.util.List;
+
+/**
+ * Result of applying a {@link LayoutEdit} to an {@link IncrementalGraph}: the patched topology and the nodes
+ * whose outgoing edges changed. Node, track and switch indices of the previous topology keep their meaning in
+ * the new one; new elements are appended and removed ones keep their index with no links.
+ */
+public final class GraphDelta {
+
+    private final CompiledTopology previous;
+    private final CompiledTopology topology;
+    private final int[] changedNodes;
+    private final List<Track> tracks;
+    private final List<Switch> switches;
+    private final List<IncrementalGraph.Write> writes;
+
+    GraphDelta(CompiledTopology previous, CompiledTopology topology, int[] changedNodes,
+               List<Track> tracks, List<Switch> switches, List<IncrementalGraph.Write> writes) {
+        this.previous = previous;
+        this.topology = topology;
+        this.changedNodes = changedNodes;
+        this.tracks = tracks;
+        this.switches = switches;
+        this.writes = writes;
+    }
+
+    public CompiledTopology previous() { return previous; }
+    public CompiledTopology topology() { return topology; }
+
+    /** Nodes whose links or edge weights differ from the previous topology, in ascending order. */
+    public int[] changedNodes() { return changedNodes; }
+
+    public int addedNodeCount() { return topology.nodeCount() - previous.nodeCount(); }
+
+    /** Track and switch lists of the edited layout, indexed like the new topology. */
+    public List<Track> tracks() { return tracks; }
+    public List<Switch> switches() { return switches; }
+
+    List<IncrementalGraph.Write> writes() { return writes; }
+
+    @Override
+    public String toString() {
+        return "GraphDelta{changedNodes=" + changedNodes.length + ", addedNodes=" + addedNodeCount()
+                + ", edges=" + previous.edgeCount() + "->" + topology.edgeCount() + "}";
+    }
+}
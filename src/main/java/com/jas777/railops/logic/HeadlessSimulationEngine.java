@@ -0,0 +1,115 @@
+package com.jas777.railops.logic;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a {@link SimulationController} from a dedicated thread instead of the JavaFX AnimationTimer.
+ * With a target rate of 0 (or less) the simulation runs as fast as the CPU allows, otherwise it is
+ * throttled to the given number of simulated seconds per wall-clock second.
+ */
+public class HeadlessSimulationEngine {
+
+    private final SimulationController controller;
+    private volatile double targetRate;
+    private volatile boolean running;
+    private volatile long simulatedSeconds;
+    private Thread worker;
+
+    public HeadlessSimulationEngine(SimulationController controller) {
+        this(controller, 0.0);
+    }
+
+    public HeadlessSimulationEngine(SimulationController controller, double targetRate) {
+        this.controller = controller;
+        this.targetRate = targetRate;
+    }
+
+    /**
+     * Start stepping on a background thread until {@link #stop()} is called.
+     */
+    public synchronized void start() {
+        start(Long.MAX_VALUE);
+    }
+
+    /**
+     * Start stepping on a background thread for at most the given number of simulated seconds.
+     */
+    public synchronized void start(long seconds) {
+        if (worker != null && worker.isAlive()) {
+            throw new IllegalStateException("Simulation engine already running");
+        }
+        running = true;
+        worker = new Thread(() -> run(seconds), "railops-sim");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void stop() {
+        running = false;
+        Thread t = worker;
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void join() throws InterruptedException {
+        Thread t = worker;
+        if (t != null) {
+            t.join();
+        }
+    }
+
+    /**
+     * Run the given number of simulated seconds on the calling thread. Returns the number of seconds simulated,
+     * which is smaller than requested only if the engine was stopped.
+     * Unthrottled runs jump straight from one event to the next instead of stepping every second.
+     */
+    public long run(long seconds) {
+        running = true;
+        long startClock = controller.getSimClock();
+        long end = seconds == Long.MAX_VALUE ? Long.MAX_VALUE : startClock + seconds;
+        long paced = 0;
+        long startNanos = System.nanoTime();
+        double rate = targetRate;
+
+        while (running && controller.getSimClock() < end) {
+            if (rate != targetRate) {
+                // Rate changed mid-run, restart pacing from here
+                rate = targetRate;
+                startNanos = System.nanoTime();
+                paced = 0;
+            }
+
+            if (rate <= 0) {
+                long next = controller.nextEventTime();
+                if (next == Long.MAX_VALUE && end == Long.MAX_VALUE) {
+                    break; // Nothing left to simulate
+                }
+                controller.advanceTo(Math.min(next, end));
+            } else {
+                controller.step();
+                paced++;
+                long deadline = startNanos + (long) (paced * 1_000_000_000.0 / rate);
+                long wait = deadline - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+        }
+
+        running = false;
+        long simulated = controller.getSimClock() - startClock;
+        simulatedSeconds += simulated;
+        return simulated;
+    }
+
+    public boolean isRunning() { return running; }
+    public long getSimulatedSeconds() { return simulatedSeconds; }
+    public double getTargetRate() { return targetRate; }
+    public void setTargetRate(double targetRate) { this.targetRate = targetRate; }
+    public SimulationController getController() { return controller; }
+}
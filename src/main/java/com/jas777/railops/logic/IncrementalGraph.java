@@ -0,0 +1,405 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.log.Log;
+import com.jas777.railops.log.Logger;
+import com.jas777.railops.log.Subsystem;
+import com.jas777.railops.model.LayoutGeometry;
+import com.jas777.railops.model.StationConfig;
+import com.jas777.railops.model.Switch;
+import com.jas777.railops.model.Track;
+import com.jas777.railops.model.TrackLink;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Keeps a station layout and its {@link CompiledTopology} in step under live edits.
+ * <p>
+ * An edit only rebuilds the rows of the nodes it touches: the entry and exit node of each changed track and
+ * the P1 node of each changed switch, with the same precedence as {@link LogicalGraphBuilder} (a P1 that a
+ * track exits into takes the switch legs, otherwise a track entry links to its exit). All other rows are
+ * copied from the previous topology. New ids are appended and removed tracks and switches keep their index
+ * with no links, so indices held by the interlocking, the route cache and the simulation stay valid.
+ * <p>
+ * {@link #prepare} does not change anything, so a caller can check the delta and drop it; {@link #commit}
+ * makes it current.
+ */
+public final class IncrementalGraph {
+
+    private static final Logger LOG = Log.get(Subsystem.GRAPH);
+
+    private final StationConfig config;
+    private CompiledTopology topology;
+    private final Index index = new Index();
+
+    public IncrementalGraph(StationConfig config, CompiledTopology topology) {
+        if (config.getTracks().size() != topology.trackCount()
+                || config.getSwitches().size() != topology.switchCount()) {
+            throw new IllegalArgumentException("Topology was not compiled from this layout");
+        }
+        this.config = config;
+        this.topology = topology;
+        for (int t = 0; t < config.getTracks().size(); t++) {
+            index.addTrack(config.getTracks().get(t), t);
+        }
+        for (int s = 0; s < config.getSwitches().size(); s++) {
+            index.addSwitch(config.getSwitches().get(s), s);
+        }
+    }
+
+    public synchronized CompiledTopology topology() { return topology; }
+
+    /** Prepare and commit in one step. */
+    public synchronized GraphDelta apply(LayoutEdit edit) {
+        GraphDelta delta = prepare(edit);
+        commit(delta);
+        return delta;
+    }
+
+    /**
+     * Work out the topology after the edit without changing the current one.
+     *
+     * @throws IllegalArgumentException if the edit removes an unknown element or uses points outside the
+     *                                  layout's geometry
+     */
+    public synchronized GraphDelta prepare(LayoutEdit edit) {
+        CompiledTopology previous = topology;
+        List<Track> tracks = new ArrayList<>(config.getTracks());
+        List<Switch> switches = new ArrayList<>(config.getSwitches());
+        index.begin();
+        try {
+            return prepare(edit, previous, tracks, switches, index);
+        } finally {
+            index.rollback();
+        }
+    }
+
+    // Runs with the index updated in place; prepare(LayoutEdit) rolls it back afterwards
+    private GraphDelta prepare(LayoutEdit edit, CompiledTopology previous, List<Track> tracks, List<Switch> switches,
+                               Index next) {
+        Interner nodes = new Interner(previous.nodeCount(), previous::nodeId, previous::nodeIndex);
+        Interner trackIds = new Interner(previous.trackCount(), previous::trackId, previous::trackIndex);
+        Interner switchIds = new Interner(previous.switchCount(), previous::switchId, previous::switchIndex);
+        Set<String> touched = new LinkedHashSet<>();
+        Set<Integer> changedTracks = new HashSet<>();
+
+        for (LayoutEdit.Change change : edit.changes()) {
+            if (change.track() != null) {
+                Track track = change.track();
+                requireGeometry(track.id(), track.geometry());
+                int t = trackIds.intern(track.id());
+                if (t < tracks.size()) {
+                    Track old = tracks.get(t);
+                    next.removeTrack(old, t);
+                    touch(touched, old.entryNodeId(), old.exitNodeId());
+                    tracks.set(t, track);
+                } else {
+                    tracks.add(track);
+                }
+                next.addTrack(track, t);
+                touch(touched, track.entryNodeId(), track.exitNodeId());
+                nodes.intern(track.entryNodeId());
+                nodes.intern(track.exitNodeId());
+                changedTracks.add(t);
+            } else if (change.removedTrack() != null) {
+                int t = trackIds.indexOf(change.removedTrack());
+                if (t == CompiledTopology.NONE) {
+                    throw new IllegalArgumentException("Unknown track: " + change.removedTrack());
+                }
+                Track old = tracks.get(t);
+                next.removeTrack(old, t);
+                touch(touched, old.entryNodeId(), old.exitNodeId());
+                tracks.set(t, new Track(old.id(), null, old.geometry(), 0, 0, null, null, null));
+                changedTracks.add(t);
+            } else if (change.sw() != null) {
+                Switch sw = change.sw();
+                requireGeometry(sw.id(), sw.geometry());
+                int s = switchIds.intern(sw.id());
+                if (s < switches.size()) {
+                    Switch old = switches.get(s);
+                    next.removeSwitch(old, s);
+                    touch(touched, old.p1ConnectionId(), null);
+                    switches.set(s, sw);
+                } else {
+                    switches.add(sw);
+                }
+                next.addSwitch(sw, s);
+                touch(touched, sw.p1ConnectionId(), null);
+                nodes.intern(sw.p1ConnectionId());
+                nodes.intern(sw.p2MainConnectionId());
+                nodes.intern(sw.p2SideConnectionId());
+            } else {
+                int s = switchIds.indexOf(change.removedSwitch());
+                if (s == CompiledTopology.NONE) {
+                    throw new IllegalArgumentException("Unknown switch: " + change.removedSwitch());
+                }
+                Switch old = switches.get(s);
+                next.removeSwitch(old, s);
+                touch(touched, old.p1ConnectionId(), null);
+                switches.set(s, new Switch(old.id(), old.geometry(), LayoutGeometry.NONE, LayoutGeometry.NONE,
+                        LayoutGeometry.NONE, null, null, null, null));
+            }
+        }
+
+        Map<Integer, List<TrackLink>> rows = new HashMap<>();
+        for (String key : touched) {
+            rows.put(nodes.intern(key), links(key, next, tracks, switches));
+        }
+
+        int[] trackEntryNode = new int[tracks.size()];
+        int[] trackExitNode = new int[tracks.size()];
+        for (int t = 0; t < tracks.size(); t++) {
+            if (t < previous.trackCount() && !changedTracks.contains(t)) {
+                trackEntryNode[t] = previous.trackEntryNode(t);
+                trackExitNode[t] = previous.trackExitNode(t);
+            } else {
+                trackEntryNode[t] = nodes.indexOf(tracks.get(t).entryNodeId());
+                trackExitNode[t] = nodes.indexOf(tracks.get(t).exitNodeId());
+            }
+        }
+
+        CompiledTopology unweighted = previous.patch(nodes.toArray(), trackIds.toArray(), switchIds.toArray(),
+                trackEntryNode, trackExitNode, rows, switches, tracks);
+
+        Set<Integer> candidates = new TreeSet<>(rows.keySet());
+        CompiledTopology patched = previous.hasEdgeWeights()
+                ? unweighted.withEdgeWeights(patchEdgeLengths(previous, unweighted, rows.keySet(), candidates,
+                        next, tracks, switches))
+                : unweighted;
+
+        int[] changed = candidates.stream()
+                .filter(n -> rowDiffers(previous, patched, n))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Prepared layout edit: " + edit.changes().size() + " changes, " + touched.size()
+                    + " touched nodes, " + changed.length + " changed rows");
+        }
+        return new GraphDelta(previous, patched, changed, tracks, switches, next.writes());
+    }
+
+    /**
+     * Make a prepared delta current. Fails if another delta was committed since it was prepared.
+     */
+    public synchronized void commit(GraphDelta delta) {
+        if (delta.previous() != topology) {
+            throw new IllegalStateException("Delta was prepared against a different topology");
+        }
+        config.setTracks(delta.tracks());
+        config.setSwitches(delta.switches());
+        index.replay(delta.writes());
+        topology = delta.topology();
+    }
+
+    private void requireGeometry(String id, LayoutGeometry geometry) {
+        if (id == null) {
+            throw new IllegalArgumentException("Layout elements need an id");
+        }
+        if (geometry != config.getGeometry()) {
+            throw new IllegalArgumentException(id + " does not use the layout's geometry");
+        }
+    }
+
+    private static void touch(Set<String> touched, String first, String second) {
+        if (first != null) touched.add(first);
+        if (second != null) touched.add(second);
+    }
+
+    // Links of one node, null if it has none
+    private static List<TrackLink> links(String nodeId, Index index, List<Track> tracks, List<Switch> switches) {
+        Integer s = index.switchByP1.get(nodeId);
+        if (s != null && index.exitCount.containsKey(nodeId)) {
+            Switch sw = switches.get(s);
+            List<TrackLink> links = new ArrayList<>(2);
+            if (sw.p2MainConnectionId() != null) {
+                links.add(new TrackLink(sw.p2MainConnectionId(), sw.id(), "MAIN"));
+            }
+            if (sw.p2SideConnectionId() != null) {
+                links.add(new TrackLink(sw.p2SideConnectionId(), sw.id(), "SIDE"));
+            }
+            return links;
+        }
+        Integer t = index.trackByEntry.get(nodeId);
+        if (t == null) return null;
+        List<TrackLink> links = new ArrayList<>(1);
+        links.add(new TrackLink(tracks.get(t).exitNodeId()));
+        return links;
+    }
+
+    /**
+     * Edge lengths of the patched topology. Rows that were rebuilt, rows of nodes that moved and rows leading
+     * into nodes that moved are measured again (and added to {@code candidates}); every other row keeps the
+     * lengths of the previous topology.
+     */
+    private static double[] patchEdgeLengths(CompiledTopology previous, CompiledTopology patched,
+                                             Set<Integer> rebuilt, Set<Integer> candidates, Index index,
+                                             List<Track> tracks, List<Switch> switches) {
+        boolean[] moved = new boolean[patched.nodeCount()];
+        for (int n = 0; n < moved.length; n++) {
+            moved[n] = n >= previous.nodeCount()
+                    || Double.compare(previous.nodeX(n), patched.nodeX(n)) != 0
+                    || Double.compare(previous.nodeY(n), patched.nodeY(n)) != 0;
+        }
+
+        double[] lengths = new double[patched.edgeCount()];
+        for (int n = 0; n < patched.nodeCount(); n++) {
+            boolean measure = rebuilt.contains(n) || moved[n];
+            for (int edge = patched.firstEdge(n); !measure && edge < patched.endEdge(n); edge++) {
+                measure = moved[patched.edgeTarget(edge)];
+            }
+
+            if (!measure) {
+                int from = previous.firstEdge(n);
+                for (int edge = patched.firstEdge(n); edge < patched.endEdge(n); edge++) {
+                    lengths[edge] = previous.edgeWeight(from++);
+                }
+                continue;
+            }
+
+            candidates.add(n);
+            Integer t = index.trackByEntry.get(patched.nodeId(n));
+            Track track = t != null ? tracks.get(t) : null;
+            for (int edge = patched.firstEdge(n); edge < patched.endEdge(n); edge++) {
+                int s = patched.edgeSwitch(edge);
+                lengths[edge] = LogicalGraphBuilder.edgeLength(patched, n, edge, track,
+                        s == CompiledTopology.NONE ? null : switches.get(s));
+            }
+        }
+        return lengths;
+    }
+
+    private static boolean rowDiffers(CompiledTopology previous, CompiledTopology next, int node) {
+        if (node >= previous.nodeCount()) {
+            return next.firstEdge(node) != next.endEdge(node);
+        }
+        int count = previous.endEdge(node) - previous.firstEdge(node);
+        if (count != next.endEdge(node) - next.firstEdge(node)) return true;
+        for (int i = 0; i < count; i++) {
+            int a = previous.firstEdge(node) + i;
+            int b = next.firstEdge(node) + i;
+            if (previous.edgeTarget(a) != next.edgeTarget(b)
+                    || previous.edgeSwitch(a) != next.edgeSwitch(b)
+                    || previous.edgeSwitchState(a) != next.edgeSwitchState(b)
+                    || Double.compare(previous.edgeWeight(a), next.edgeWeight(b)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** One change to an {@link Index} map; {@code before}/{@code after} are null for an absent key. */
+    record Write(Map<String, Integer> map, String key, Integer before, Integer after) {
+    }
+
+    /**
+     * String-keyed lookups the link rules need: the track entered at a node, how many tracks exit into it and
+     * the switch whose P1 it is. Values are indices into the track and switch lists.
+     * <p>
+     * Between {@link #begin} and {@link #rollback} every change is logged, so {@link #prepare} can work on the
+     * live maps instead of copies and {@link #commit} replays the log.
+     */
+    static final class Index {
+        private final Map<String, Integer> trackByEntry = new HashMap<>();
+        private final Map<String, Integer> exitCount = new HashMap<>();
+        private final Map<String, Integer> switchByP1 = new HashMap<>();
+        private List<Write> log;
+
+        void begin() {
+            log = new ArrayList<>();
+        }
+
+        List<Write> writes() {
+            return log;
+        }
+
+        void rollback() {
+            for (int i = log.size() - 1; i >= 0; i--) {
+                Write write = log.get(i);
+                set(write.map(), write.key(), write.before());
+            }
+            log = null;
+        }
+
+        void replay(List<Write> writes) {
+            for (Write write : writes) {
+                set(write.map(), write.key(), write.after());
+            }
+        }
+
+        void addTrack(Track track, int t) {
+            if (track.entryNodeId() != null && track.exitNodeId() != null) {
+                write(trackByEntry, track.entryNodeId(), t);
+            }
+            if (track.exitNodeId() != null) {
+                write(exitCount, track.exitNodeId(), exitCount.getOrDefault(track.exitNodeId(), 0) + 1);
+            }
+        }
+
+        void removeTrack(Track track, int t) {
+            if (track.entryNodeId() != null && Objects.equals(trackByEntry.get(track.entryNodeId()), t)) {
+                write(trackByEntry, track.entryNodeId(), null);
+            }
+            Integer exits = track.exitNodeId() == null ? null : exitCount.get(track.exitNodeId());
+            if (exits != null) {
+                write(exitCount, track.exitNodeId(), exits > 1 ? exits - 1 : null);
+            }
+        }
+
+        void addSwitch(Switch sw, int s) {
+            if (sw.p1ConnectionId() != null) {
+                write(switchByP1, sw.p1ConnectionId(), s);
+            }
+        }
+
+        void removeSwitch(Switch sw, int s) {
+            if (sw.p1ConnectionId() != null && Objects.equals(switchByP1.get(sw.p1ConnectionId()), s)) {
+                write(switchByP1, sw.p1ConnectionId(), null);
+            }
+        }
+
+        private void write(Map<String, Integer> map, String key, Integer value) {
+            Integer before = set(map, key, value);
+            if (log != null) {
+                log.add(new Write(map, key, before, value));
+            }
+        }
+
+        private static Integer set(Map<String, Integer> map, String key, Integer value) {
+            return value == null ? map.remove(key) : map.put(key, value);
+        }
+    }
+
+    // Ids of the previous topology followed by the ones the edit adds
+    private static final class Interner {
+        private final List<String> ids;
+        private final Map<String, Integer> added = new HashMap<>();
+        private final ToIntFunction<String> existing;
+
+        Interner(int count, IntFunction<String> idAt, ToIntFunction<String> existing) {
+            this.ids = new ArrayList<>(count + 16);
+            for (int i = 0; i < count; i++) {
+                ids.add(idAt.apply(i));
+            }
+            this.existing = existing;
+        }
+
+        int indexOf(String id) {
+            if (id == null) return CompiledTopology.NONE;
+            int index = existing.applyAsInt(id);
+            if (index != CompiledTopology.NONE) return index;
+            return added.getOrDefault(id, CompiledTopology.NONE);
+        }
+
+        int intern(String id) {
+            int index = indexOf(id);
+            if (index != CompiledTopology.NONE || id == null) return index;
+            ids.add(id);
+            added.put(id, ids.size() - 1);
+            return ids.size() - 1;
+        }
+
+        String[] toArray() { return ids.toArray(new String[0]); }
+    }
+}
@@ -0,0 +1,576 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.StationConfig;
+import com.jas777.railops.model.Track;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Every entry→platform route of a station, computed once from the {@link CompiledTopology} and patched by
+ * {@link #update} after a layout edit.
+ * <p>
+ * A route stores its nodes, the switches it needs and their positions, and the set of routes it conflicts with,
+ * all as bitsets. Routes conflict when they share a node or a switch. The table is immutable and can back any
+ * number of simulations; which routes are locked is kept per simulation in {@link RouteLocks}.
+ * <p>
+ * Entries are track entry nodes with no incoming edge, i.e. where trains come in from outside the station.
+ * Each route is the shortest path regardless of the current switch positions, by hops or, when the topology
+ * carries edge weights, by length, as {@link PathFinder} would find it with every switch set right; a path that
+ * would need the same switch in both positions is not a route.
+ */
+public final class InterlockingTable {
+
+    public static final int NONE = -1;
+
+    private final CompiledTopology topology;
+    private final int routeCount;
+    private final int routeWords;
+
+    // Per route
+    private final int[] entryNode;
+    private final int[] platformTrack;
+    private final int[][] nodes;
+    private final long[][] nodeBits;
+    private final long[][] switchMask;
+    private final long[][] switchSide;
+    private final long[][] conflicts;
+    private final Map<Long, Integer> routeByPair;
+
+    /**
+     * Node bitsets that are null, or all of them if {@code nodeBits} is null, are built from the paths.
+     * {@code conflicts} is computed when null; otherwise only the rows and columns of {@code staleRoutes} are.
+     * A route with no nodes is a removed one and is left out of {@link #routeFor}.
+     */
+    private InterlockingTable(CompiledTopology topology, int[][] nodes, long[][] nodeBits, long[][] switchMask,
+                              long[][] switchSide, long[][] conflicts, int[] staleRoutes, int[] entryNode,
+                              int[] platformTrack) {
+        this.topology = topology;
+        this.routeCount = nodes.length;
+        this.routeWords = words(routeCount);
+        this.entryNode = entryNode;
+        this.platformTrack = platformTrack;
+        this.nodes = nodes;
+        this.switchMask = switchMask;
+        this.switchSide = switchSide;
+        if (nodeBits == null) {
+            nodeBits = new long[routeCount][];
+        }
+        this.nodeBits = nodeBits;
+        this.routeByPair = new HashMap<>();
+
+        for (int r = 0; r < routeCount; r++) {
+            if (nodeBits[r] == null) {
+                nodeBits[r] = new long[words(topology.nodeCount())];
+                for (int node : nodes[r]) {
+                    nodeBits[r][node >>> 6] |= 1L << node;
+                }
+            }
+            if (nodes[r].length > 0) {
+                routeByPair.put(pairKey(entryNode[r], platformTrack[r]), r);
+            }
+        }
+
+        if (conflicts == null) {
+            conflicts = new long[routeCount][routeWords];
+            for (int a = 0; a < routeCount; a++) {
+                for (int b = a; b < routeCount; b++) {
+                    if (intersects(nodeBits[a], nodeBits[b]) || intersects(switchMask[a], switchMask[b])) {
+                        conflicts[a][b >>> 6] |= 1L << b;
+                        conflicts[b][a >>> 6] |= 1L << a;
+                    }
+                }
+            }
+        } else {
+            for (int a : staleRoutes) {
+                Arrays.fill(conflicts[a], 0L);
+                for (int b = 0; b < routeCount; b++) {
+                    conflicts[b][a >>> 6] &= ~(1L << a);
+                }
+            }
+            for (int a : staleRoutes) {
+                for (int b = 0; b < routeCount; b++) {
+                    if (intersects(nodeBits[a], nodeBits[b]) || intersects(switchMask[a], switchMask[b])) {
+                        conflicts[a][b >>> 6] |= 1L << b;
+                        conflicts[b][a >>> 6] |= 1L << a;
+                    }
+                }
+            }
+        }
+        this.conflicts = conflicts;
+    }
+
+    /**
+     * Enumerate every entry→platform route. Platforms are the PLATFORM_TRACK tracks; a route ends on the
+     * platform's entry node.
+     */
+    public static InterlockingTable compile(StationConfig config, CompiledTopology topology) {
+        List<Integer> entries = new ArrayList<>();
+        List<Integer> platforms = new ArrayList<>();
+        findEntriesAndPlatforms(config.getTracks(), topology, entries, platforms);
+
+        List<int[]> paths = new ArrayList<>();
+        List<long[]> masks = new ArrayList<>();
+        List<long[]> sides = new ArrayList<>();
+        List<Integer> routeEntries = new ArrayList<>();
+        List<Integer> routePlatforms = new ArrayList<>();
+
+        Search search = new Search(topology);
+        for (int entry : entries) {
+            search.from(entry);
+            for (int platform : platforms) {
+                long[] mask = new long[words(topology.switchCount())];
+                long[] side = new long[mask.length];
+                int[] path = search.pathTo(platform, mask, side);
+                if (path != null) {
+                    paths.add(path);
+                    masks.add(mask);
+                    sides.add(side);
+                    routeEntries.add(entry);
+                    routePlatforms.add(platform);
+                }
+            }
+        }
+
+        return new InterlockingTable(topology, paths.toArray(new int[0][]), null, masks.toArray(new long[0][]),
+                sides.toArray(new long[0][]), null, null, routeEntries.stream().mapToInt(Integer::intValue).toArray(),
+                routePlatforms.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Route tables for a topology patched by {@link IncrementalGraph}. Route indices are stable, so the
+     * {@link RouteLocks} of a simulation carry over through {@link RouteLocks#moveTo}.
+     * <p>
+     * Only entries that can reach a changed node, and entries that are new, are searched again; the routes of
+     * all other entries cannot have changed. Routes keep their index: a route whose path changed is replaced
+     * in place, one that no longer exists is left empty and new routes are appended. Conflict sets are only
+     * recomputed for those routes.
+     *
+     * @throws IllegalStateException if a route locked in {@code locks} would change or disappear
+     */
+    public InterlockingTable update(GraphDelta delta, RouteLocks locks) {
+        if (delta.previous() != topology) {
+            throw new IllegalArgumentException("Delta was not made against this table's topology");
+        }
+        CompiledTopology next = delta.topology();
+
+        List<Integer> entries = new ArrayList<>();
+        List<Integer> platforms = new ArrayList<>();
+        findEntriesAndPlatforms(delta.tracks(), next, entries, platforms);
+
+        // Entries whose search tree may differ: everything that reaches a changed node on the old graph
+        boolean[] affected = reachesAny(topology, delta.changedNodes());
+        boolean platformsMoved = false;
+        for (int platform : platforms) {
+            platformsMoved |= platform >= topology.trackCount()
+                    || topology.trackEntryNode(platform) != next.trackEntryNode(platform);
+        }
+        Set<Integer> isEntry = new HashSet<>(entries);
+        Set<Integer> isPlatform = new HashSet<>(platforms);
+        Set<Integer> oldEntries = new HashSet<>();
+        for (int r = 0; r < routeCount; r++) {
+            if (nodes[r].length > 0) oldEntries.add(entryNode[r]);
+        }
+
+        List<int[]> paths = new ArrayList<>(Arrays.asList(nodes));
+        List<long[]> masks = new ArrayList<>(routeCount);
+        List<long[]> sides = new ArrayList<>(routeCount);
+        List<Integer> routeEntries = new ArrayList<>(routeCount);
+        List<Integer> routePlatforms = new ArrayList<>(routeCount);
+        int switchWords = words(next.switchCount());
+        for (int r = 0; r < routeCount; r++) {
+            masks.add(Arrays.copyOf(switchMask[r], switchWords));
+            sides.add(Arrays.copyOf(switchSide[r], switchWords));
+            routeEntries.add(entryNode[r]);
+            routePlatforms.add(platformTrack[r]);
+        }
+        Set<Integer> stale = new TreeSet<>();
+
+        // Routes from entries or to platforms that are gone
+        for (int r = 0; r < routeCount; r++) {
+            if (nodes[r].length > 0 && (!isEntry.contains(entryNode[r]) || !isPlatform.contains(platformTrack[r]))) {
+                tombstone(r, paths, masks, sides, routeEntries, routePlatforms, switchWords);
+                stale.add(r);
+            }
+        }
+
+        Search search = new Search(next);
+        for (int entry : entries) {
+            if (!platformsMoved && oldEntries.contains(entry) && !affected[entry]) continue;
+            search.from(entry);
+            for (int platform : platforms) {
+                long[] mask = new long[switchWords];
+                long[] side = new long[switchWords];
+                int[] path = search.pathTo(platform, mask, side);
+                int r = routeFor(entry, platform);
+                if (r == NONE) {
+                    if (path == null) continue;
+                    stale.add(paths.size());
+                    paths.add(path);
+                    masks.add(mask);
+                    sides.add(side);
+                    routeEntries.add(entry);
+                    routePlatforms.add(platform);
+                } else if (path == null) {
+                    tombstone(r, paths, masks, sides, routeEntries, routePlatforms, switchWords);
+                    stale.add(r);
+                } else if (!Arrays.equals(path, nodes[r]) || !Arrays.equals(mask, masks.get(r))
+                        || !Arrays.equals(side, sides.get(r))) {
+                    paths.set(r, path);
+                    masks.set(r, mask);
+                    sides.set(r, side);
+                    stale.add(r);
+                }
+            }
+        }
+
+        for (int r : stale) {
+            if (r < routeCount && locks.isLocked(r)) {
+                throw new IllegalStateException("Route " + topology.nodeId(entryNode[r]) + " -> "
+                        + topology.trackId(platformTrack[r]) + " is locked");
+            }
+        }
+
+        int routes = paths.size();
+        long[][] conflictRows = new long[routes][];
+        long[][] bits = new long[routes][];
+        int nodeWords = words(next.nodeCount());
+        for (int r = 0; r < routes; r++) {
+            conflictRows[r] = r < routeCount ? Arrays.copyOf(conflicts[r], words(routes)) : new long[words(routes)];
+            if (r < routeCount && !stale.contains(r)) {
+                bits[r] = nodeBits[r].length == nodeWords ? nodeBits[r] : Arrays.copyOf(nodeBits[r], nodeWords);
+            }
+        }
+
+        return new InterlockingTable(next, paths.toArray(new int[0][]), bits,
+                masks.toArray(new long[0][]), sides.toArray(new long[0][]), conflictRows,
+                stale.stream().mapToInt(Integer::intValue).toArray(),
+                routeEntries.stream().mapToInt(Integer::intValue).toArray(),
+                routePlatforms.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static void tombstone(int r, List<int[]> paths, List<long[]> masks, List<long[]> sides,
+                                  List<Integer> routeEntries, List<Integer> routePlatforms, int switchWords) {
+        paths.set(r, new int[0]);
+        masks.set(r, new long[switchWords]);
+        sides.set(r, new long[switchWords]);
+        routeEntries.set(r, NONE);
+        routePlatforms.set(r, NONE);
+    }
+
+    /**
+     * Entries are track entry nodes with no incoming edge, platforms the PLATFORM_TRACK tracks, both in track
+     * order.
+     */
+    private static void findEntriesAndPlatforms(List<Track> tracks, CompiledTopology topology,
+                                                List<Integer> entries, List<Integer> platforms) {
+        boolean[] hasIncoming = new boolean[topology.nodeCount()];
+        for (int edge = 0; edge < topology.edgeCount(); edge++) {
+            hasIncoming[topology.edgeTarget(edge)] = true;
+        }
+
+        Set<Integer> seen = new HashSet<>();
+        for (Track track : tracks) {
+            int trackIndex = topology.trackIndex(track.id());
+            if (trackIndex == CompiledTopology.NONE) continue;
+            int entry = topology.trackEntryNode(trackIndex);
+            if (entry == CompiledTopology.NONE) continue;
+            if (!hasIncoming[entry] && seen.add(entry)) {
+                entries.add(entry);
+            }
+            if ("PLATFORM_TRACK".equals(track.type())) {
+                platforms.add(trackIndex);
+            }
+        }
+    }
+
+    // Nodes from which one of the given nodes can be reached, themselves included
+    static boolean[] reachesAny(CompiledTopology topology, int[] targets) {
+        int nodeCount = topology.nodeCount();
+        int[] reverseOffsets = new int[nodeCount + 1];
+        int[] reverseSources = new int[topology.edgeCount()];
+        for (int edge = 0; edge < topology.edgeCount(); edge++) {
+            reverseOffsets[topology.edgeTarget(edge) + 1]++;
+        }
+        for (int n = 0; n < nodeCount; n++) {
+            reverseOffsets[n + 1] += reverseOffsets[n];
+        }
+        int[] fill = Arrays.copyOf(reverseOffsets, nodeCount);
+        for (int n = 0; n < nodeCount; n++) {
+            for (int edge = topology.firstEdge(n); edge < topology.endEdge(n); edge++) {
+                reverseSources[fill[topology.edgeTarget(edge)]++] = n;
+            }
+        }
+
+        boolean[] seen = new boolean[nodeCount];
+        int[] stack = new int[nodeCount];
+        int size = 0;
+        for (int node : targets) {
+            if (node < nodeCount && !seen[node]) {
+                seen[node] = true;
+                stack[size++] = node;
+            }
+        }
+        while (size > 0) {
+            int node = stack[--size];
+            for (int i = reverseOffsets[node]; i < reverseOffsets[node + 1]; i++) {
+                if (!seen[reverseSources[i]]) {
+                    seen[reverseSources[i]] = true;
+                    stack[size++] = reverseSources[i];
+                }
+            }
+        }
+        return seen;
+    }
+
+    /**
+     * Write the route tables, conflict sets included, for {@link TopologyCache}.
+     */
+    void write(SnapshotCodec.Output out) {
+        out.putInts(entryNode, routeCount);
+        out.putInts(platformTrack, routeCount);
+        for (int r = 0; r < routeCount; r++) {
+            out.putInts(nodes[r], nodes[r].length);
+            out.putLongs(switchMask[r]);
+            out.putLongs(switchSide[r]);
+            out.putLongs(conflicts[r]);
+        }
+    }
+
+    /**
+     * Read route tables written by {@link #write} for the same topology.
+     */
+    static InterlockingTable read(SnapshotCodec.Input in, CompiledTopology topology) {
+        int[] entryNode = in.getInts();
+        int[] platformTrack = in.getInts();
+        int routeCount = entryNode.length;
+        int[][] nodes = new int[routeCount][];
+        long[][] masks = new long[routeCount][];
+        long[][] sides = new long[routeCount][];
+        long[][] conflicts = new long[routeCount][];
+        for (int r = 0; r < routeCount; r++) {
+            nodes[r] = in.getInts();
+            masks[r] = in.getLongs();
+            sides[r] = in.getLongs();
+            conflicts[r] = in.getLongs();
+        }
+        return new InterlockingTable(topology, nodes, null, masks, sides, conflicts, new int[0], entryNode,
+                platformTrack);
+    }
+
+    /** Topology the routes were computed on. */
+    public CompiledTopology topology() { return topology; }
+
+    /**
+     * Shortest-path tree from one entry, regardless of switch positions: breadth-first when every edge costs 1.0,
+     * Dijkstra over the edge weights otherwise. Scratch arrays are reused across entries.
+     */
+    private static final class Search {
+        private final CompiledTopology topology;
+        private final int[] predecessor;
+        private final int[] predecessorEdge;
+        private final int[] queue;
+        private final double[] distance;
+        private final boolean[] closed;
+
+        // Binary min-heap of (node, distance); stale duplicates are skipped when popped
+        private final int[] heapNodes;
+        private final double[] heapKeys;
+        private int heapSize;
+        private int entry;
+
+        Search(CompiledTopology topology) {
+            int nodeCount = topology.nodeCount();
+            this.topology = topology;
+            this.predecessor = new int[nodeCount];
+            this.predecessorEdge = new int[nodeCount];
+            this.queue = new int[nodeCount];
+            boolean weighted = topology.hasEdgeWeights();
+            this.distance = weighted ? new double[nodeCount] : null;
+            this.closed = weighted ? new boolean[nodeCount] : null;
+            this.heapNodes = weighted ? new int[topology.edgeCount() + 1] : null;
+            this.heapKeys = weighted ? new double[topology.edgeCount() + 1] : null;
+        }
+
+        void from(int entry) {
+            this.entry = entry;
+            Arrays.fill(predecessorEdge, -2);
+            predecessorEdge[entry] = -1;
+            if (distance != null) {
+                shortestByLength(entry);
+                return;
+            }
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = entry;
+            while (head < tail) {
+                int node = queue[head++];
+                for (int edge = topology.firstEdge(node); edge < topology.endEdge(node); edge++) {
+                    int target = topology.edgeTarget(edge);
+                    if (predecessorEdge[target] == -2) {
+                        predecessor[target] = node;
+                        predecessorEdge[target] = edge;
+                        queue[tail++] = target;
+                    }
+                }
+            }
+        }
+
+        private void shortestByLength(int entry) {
+            Arrays.fill(closed, false);
+            distance[entry] = 0.0;
+            heapSize = 0;
+            push(entry, 0.0);
+            while (heapSize > 0) {
+                int node = pop();
+                if (closed[node]) continue;
+                closed[node] = true;
+                for (int edge = topology.firstEdge(node); edge < topology.endEdge(node); edge++) {
+                    int target = topology.edgeTarget(edge);
+                    double newDistance = distance[node] + topology.edgeWeight(edge);
+                    if (predecessorEdge[target] == -2 || newDistance < distance[target]) {
+                        distance[target] = newDistance;
+                        predecessor[target] = node;
+                        predecessorEdge[target] = edge;
+                        push(target, newDistance);
+                    }
+                }
+            }
+        }
+
+        private void push(int node, double key) {
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapKeys[parent] <= key) break;
+                heapNodes[i] = heapNodes[parent];
+                heapKeys[i] = heapKeys[parent];
+                i = parent;
+            }
+            heapNodes[i] = node;
+            heapKeys[i] = key;
+        }
+
+        private int pop() {
+            int top = heapNodes[0];
+            int lastNode = heapNodes[--heapSize];
+            double lastKey = heapKeys[heapSize];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) break;
+                if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) child++;
+                if (heapKeys[child] >= lastKey) break;
+                heapNodes[i] = heapNodes[child];
+                heapKeys[i] = heapKeys[child];
+                i = child;
+            }
+            heapNodes[i] = lastNode;
+            heapKeys[i] = lastKey;
+            return top;
+        }
+
+        /**
+         * Walk the tree back from the platform's entry node, collecting switch requirements. Null if the
+         * platform is not reached, or a switch is needed in both positions.
+         */
+        int[] pathTo(int platform, long[] mask, long[] side) {
+            int target = topology.trackEntryNode(platform);
+            if (target == entry || predecessorEdge[target] == -2) return null;
+
+            int[] reversed = queue;
+            int length = 0;
+            int node = target;
+            reversed[length++] = node;
+            while (node != entry) {
+                int edge = predecessorEdge[node];
+                int sw = topology.edgeSwitch(edge);
+                if (sw != CompiledTopology.NONE) {
+                    long bit = 1L << sw;
+                    boolean wantSide = topology.edgeSwitchState(edge) == CompiledTopology.STATE_SIDE;
+                    if ((mask[sw >>> 6] & bit) != 0 && ((side[sw >>> 6] & bit) != 0) != wantSide) {
+                        return null;
+                    }
+                    mask[sw >>> 6] |= bit;
+                    if (wantSide) side[sw >>> 6] |= bit;
+                }
+                node = predecessor[node];
+                reversed[length++] = node;
+            }
+
+            int[] path = new int[length];
+            for (int i = 0; i < length; i++) {
+                path[i] = reversed[length - 1 - i];
+            }
+            return path;
+        }
+    }
+
+    private static boolean intersects(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if ((a[i] & b[i]) != 0) return true;
+        }
+        return false;
+    }
+
+    static int words(int bits) {
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+
+    private static long pairKey(int entry, int platform) {
+        return ((long) entry << 32) | (platform & 0xffffffffL);
+    }
+
+    public int routeCount() { return routeCount; }
+
+    /** Route from an entry node to a platform track, or {@link #NONE}. */
+    public int routeFor(int entry, int platform) {
+        Integer route = routeByPair.get(pairKey(entry, platform));
+        return route == null ? NONE : route;
+    }
+
+    public int entryNode(int route) { return entryNode[route]; }
+    public int platformTrack(int route) { return platformTrack[route]; }
+
+    /** Node sequence of the route, shared; do not modify. */
+    public int[] nodes(int route) { return nodes[route]; }
+
+    public boolean containsNode(int route, int node) {
+        return (nodeBits[route][node >>> 6] & (1L << node)) != 0;
+    }
+
+    public boolean requiresSwitch(int route, int sw) {
+        return (switchMask[route][sw >>> 6] & (1L << sw)) != 0;
+    }
+
+    /** Position a switch must be in for the route, only meaningful if {@link #requiresSwitch}. */
+    public byte requiredState(int route, int sw) {
+        return (switchSide[route][sw >>> 6] & (1L << sw)) != 0
+                ? CompiledTopology.STATE_SIDE : CompiledTopology.STATE_MAIN;
+    }
+
+    public boolean conflictsWith(int route, int other) {
+        return (conflicts[route][other >>> 6] & (1L << other)) != 0;
+    }
+
+    // Raw rows for RouteLocks; shared, do not modify
+    long[] conflictWords(int route) { return conflicts[route]; }
+    long[] switchMaskWords(int route) { return switchMask[route]; }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (int r = 0; r < routeCount; r++) {
+            if (nodes[r].length == 0) continue;
+            out.append(topology.nodeId(entryNode[r])).append(" -> ").append(topology.trackId(platformTrack[r]))
+                    .append('\n');
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.Switch;
+import com.jas777.railops.model.Track;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A batch of changes to a station layout, applied together by {@link IncrementalGraph} or
+ * {@link SimulationController#applyLayoutEdit}.
+ * <p>
+ * Putting a track or switch whose id already exists modifies it, otherwise it is added. Points of new or
+ * modified elements must be added to the layout's own {@link com.jas777.railops.model.LayoutGeometry}.
+ * Changes are applied in the order they were made.
+ */
+public final class LayoutEdit {
+
+    record Change(Track track, Switch sw, String removedTrack, String removedSwitch) {
+    }
+
+    private final List<Change> changes = new ArrayList<>();
+
+    public LayoutEdit putTrack(Track track) {
+        changes.add(new Change(track, null, null, null));
+        return this;
+    }
+
+    public LayoutEdit removeTrack(String trackId) {
+        changes.add(new Change(null, null, trackId, null));
+        return this;
+    }
+
+    public LayoutEdit putSwitch(Switch sw) {
+        changes.add(new Change(null, sw, null, null));
+        return this;
+    }
+
+    public LayoutEdit removeSwitch(String switchId) {
+        changes.add(new Change(null, null, null, switchId));
+        return this;
+    }
+
+    public boolean isEmpty() { return changes.isEmpty(); }
+
+    List<Change> changes() { return changes; }
+}
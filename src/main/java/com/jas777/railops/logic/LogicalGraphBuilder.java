@@ -1,5 +1,8 @@
 package com.jas777.railops.logic;
 
+import com.jas777.railops.log.Log;
+import com.jas777.railops.log.Logger;
+import com.jas777.railops.log.Subsystem;
 import com.jas777.railops.model.StationConfig;
 import com.jas777.railops.model.Track;
 import com.jas777.railops.model.Switch;
@@ -12,6 +15,102 @@ import java.util.Map;
 
 public class LogicalGraphBuilder {
 
+    private static final Logger LOG = Log.get(Subsystem.GRAPH);
+
+    /**
+     * Build the logical graph and compile it into its integer-indexed form.
+     */
+    public CompiledTopology compile(StationConfig config) {
+        return compile(config, false);
+    }
+
+    /**
+     * Build and compile the logical graph. With {@code useTrackLengths} every edge is weighted by the physical
+     * length of the track or switch leg it represents, so routing returns the physically shortest route.
+     */
+    public CompiledTopology compile(StationConfig config, boolean useTrackLengths) {
+        CompiledTopology topology = CompiledTopology.compile(config, buildLogicalGraph(config));
+        return useTrackLengths ? topology.withEdgeWeights(computeEdgeLengths(config, topology)) : topology;
+    }
+
+    /**
+     * Length of every edge slot of the topology: polyline length for track edges, leg length for switch edges.
+     * Never shorter than the straight line between the two nodes, which keeps the A* heuristic admissible.
+     */
+    public double[] computeEdgeLengths(StationConfig config, CompiledTopology topology) {
+        Map<String, Track> trackByEntry = new HashMap<>();
+        for (Track track : config.getTracks()) {
+            if (track.entryNodeId() != null) {
+                trackByEntry.put(track.entryNodeId(), track);
+            }
+        }
+        Map<String, Switch> switchById = new HashMap<>();
+        for (Switch sw : config.getSwitches()) {
+            switchById.put(sw.id(), sw);
+        }
+
+        double[] lengths = new double[topology.edgeCount()];
+        for (int node = 0; node < topology.nodeCount(); node++) {
+            Track track = trackByEntry.get(topology.nodeId(node));
+            for (int edge = topology.firstEdge(node); edge < topology.endEdge(node); edge++) {
+                int sw = topology.edgeSwitch(edge);
+                lengths[edge] = edgeLength(topology, node, edge, track,
+                        sw == CompiledTopology.NONE ? null : switchById.get(topology.switchId(sw)));
+            }
+        }
+        return lengths;
+    }
+
+    /**
+     * Length of one edge slot. {@code entryTrack} is the track entered at {@code node} and {@code sw} the switch
+     * the edge needs, either may be null.
+     */
+    static double edgeLength(CompiledTopology topology, int node, int edge, Track entryTrack, Switch sw) {
+        int target = topology.edgeTarget(edge);
+        double length = Double.NaN;
+
+        if (topology.edgeSwitch(edge) != CompiledTopology.NONE) {
+            if (sw != null) {
+                length = topology.edgeSwitchState(edge) == CompiledTopology.STATE_SIDE
+                        ? distance(sw.p1X(), sw.p1Y(), sw.p2SideX(), sw.p2SideY())
+                        : distance(sw.p1X(), sw.p1Y(), sw.p2MainX(), sw.p2MainY());
+            }
+        } else if (entryTrack != null && topology.nodeId(target).equals(entryTrack.exitNodeId())) {
+            length = polylineLength(entryTrack);
+        }
+
+        double chord = chord(topology, node, target);
+        if (Double.isNaN(length)) {
+            length = Double.isNaN(chord) ? 1.0 : chord;
+        }
+        return Double.isNaN(chord) ? length : Math.max(length, chord);
+    }
+
+    public static double polylineLength(Track track) {
+        double length = 0.0;
+        for (int i = 0; i < track.pointCount() - 1; i++) {
+            double d = distance(track.x(i), track.y(i), track.x(i + 1), track.y(i + 1));
+            if (!Double.isNaN(d)) {
+                length += d;
+            }
+        }
+        return length;
+    }
+
+    // NaN if either point is missing
+    private static double distance(double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static double chord(CompiledTopology topology, int from, int to) {
+        if (!topology.hasCoordinates(from) || !topology.hasCoordinates(to)) return Double.NaN;
+        double dx = topology.nodeX(to) - topology.nodeX(from);
+        double dy = topology.nodeY(to) - topology.nodeY(from);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
     public Map<String, List<TrackLink>> buildLogicalGraph(StationConfig config) {
 
         Map<String, List<TrackLink>> logicalGraphMap = new HashMap<>();
@@ -24,7 +123,8 @@ public class LogicalGraphBuilder {
             }
         }
 
-        System.out.println("\n=== Building Logical Graph ===");
+        boolean debug = LOG.isDebugEnabled();
+        LOG.debug("=== Building Logical Graph ===");
 
         // STEP 1: For each track, create link FROM entryNodeId TO exitNodeId
         for (Track track : config.getTracks()) {
@@ -34,7 +134,9 @@ public class LogicalGraphBuilder {
             links.add(new TrackLink(track.exitNodeId()));
             logicalGraphMap.put(track.entryNodeId(), links);
 
-            System.out.println("Track " + track.id() + ": " + track.entryNodeId() + " -> " + track.exitNodeId());
+            if (debug) {
+                LOG.debug("Track " + track.id() + ": " + track.entryNodeId() + " -> " + track.exitNodeId());
+            }
         }
 
         // STEP 2: For each track exit that connects to a switch P1, add switch routing
@@ -48,17 +150,23 @@ public class LogicalGraphBuilder {
                 Switch sw = p1ConnectionToSwitchMap.get(exitId);
                 List<TrackLink> switchLinks = new ArrayList<>();
 
-                System.out.println("Track " + track.id() + " exits to switch " + sw.id() + " P1");
+                if (debug) {
+                    LOG.debug("Track " + track.id() + " exits to switch " + sw.id() + " P1");
+                }
 
                 // Add conditional links based on switch state
                 if (sw.p2MainConnectionId() != null) {
                     switchLinks.add(new TrackLink(sw.p2MainConnectionId(), sw.id(), "MAIN"));
-                    System.out.println("  Switch " + sw.id() + " P1 -> P2Main: " + sw.p2MainConnectionId() + " (when MAIN)");
+                    if (debug) {
+                        LOG.debug("  Switch " + sw.id() + " P1 -> P2Main: " + sw.p2MainConnectionId() + " (when MAIN)");
+                    }
                 }
 
                 if (sw.p2SideConnectionId() != null) {
                     switchLinks.add(new TrackLink(sw.p2SideConnectionId(), sw.id(), "SIDE"));
-                    System.out.println("  Switch " + sw.id() + " P1 -> P2Side: " + sw.p2SideConnectionId() + " (when SIDE)");
+                    if (debug) {
+                        LOG.debug("  Switch " + sw.id() + " P1 -> P2Side: " + sw.p2SideConnectionId() + " (when SIDE)");
+                    }
                 }
 
                 // Store using switch P1 connection as the key
@@ -66,17 +174,20 @@ public class LogicalGraphBuilder {
             }
         }
 
-        System.out.println("\n=== Final Logical Graph ===");
-        for (Map.Entry<String, List<TrackLink>> entry : logicalGraphMap.entrySet()) {
-            System.out.print(entry.getKey() + " -> ");
-            for (TrackLink link : entry.getValue()) {
-                if (link.isConditional()) {
-                    System.out.print(link.targetTrackId() + " (if " + link.requiredSwitchId() + "=" + link.requiredSwitchState() + ") ");
-                } else {
-                    System.out.print(link.targetTrackId() + " ");
+        if (debug) {
+            LOG.debug("=== Final Logical Graph ===");
+            for (Map.Entry<String, List<TrackLink>> entry : logicalGraphMap.entrySet()) {
+                StringBuilder line = new StringBuilder(entry.getKey()).append(" -> ");
+                for (TrackLink link : entry.getValue()) {
+                    if (link.isConditional()) {
+                        line.append(link.targetTrackId()).append(" (if ").append(link.requiredSwitchId())
+                                .append('=').append(link.requiredSwitchState()).append(") ");
+                    } else {
+                        line.append(link.targetTrackId()).append(' ');
+                    }
                 }
+                LOG.debug(line.toString());
             }
-            System.out.println();
         }
 
         return logicalGraphMap;
@@ -0,0 +1,29 @@
+package com.jas777.railops.logic;
+
+import java.util.List;
+
+/**
+ * Aggregated result of a {@link MonteCarloRunner} batch.
+ */
+public record MonteCarloReport(int replications, long seed, List<DelayStats> trains, List<DelayStats> platforms) {
+
+    /**
+     * Plain-text table of both breakdowns, delays in seconds.
+     */
+    public String format() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Monte Carlo report: %d replications, seed %d%n", replications, seed));
+        appendTable(out, "Train", trains);
+        appendTable(out, "Platform", platforms);
+        return out.toString();
+    }
+
+    private static void appendTable(StringBuilder out, String title, List<DelayStats> rows) {
+        out.append(String.format("%n%-16s %8s %7s %9s %7s %7s %7s %7s %7s%n",
+                title, "samples", "missed", "mean", "p50", "p90", "p95", "p99", "max"));
+        for (DelayStats s : rows) {
+            out.append(String.format("%-16s %8d %7d %9.1f %7d %7d %7d %7d %7d%n",
+                    s.key(), s.samples(), s.missed(), s.mean(), s.p50(), s.p90(), s.p95(), s.p99(), s.max()));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.log.Log;
+import com.jas777.railops.log.Logger;
+import com.jas777.railops.log.Subsystem;
+import com.jas777.railops.model.TimetableEntry;
+import com.jas777.railops.model.Track;
+import com.jas777.railops.model.Train;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Runs many headless replications of one station, each with randomly perturbed arrivals, and aggregates the
+ * resulting arrival delays per train and per platform.
+ * <p>
+ * Replications share one read-only {@link CompiledStation}, compiled once by the caller; only the mutable
+ * simulation state is built per replication, so they scale across cores.
+ * Replication {@code i} draws from its own random stream derived from the base seed and {@code i}, which makes
+ * a report reproducible regardless of thread count or scheduling. Only arrivals are perturbed; scheduled
+ * departures stay as they are.
+ */
+public class MonteCarloRunner {
+
+    private static final Logger LOG = Log.get(Subsystem.ENGINE);
+
+    private static final long SEED_STRIDE = 0x9E3779B97F4A7C15L;
+    private static final long SECONDS_PER_DAY = 24 * 3600;
+    private static final int NOT_ARRIVED = -1;
+
+    private final CompiledStation station;
+    private final List<TimetableEntry> timetable;
+    private final ArrivalPerturbation perturbation;
+    private final Map<String, Integer> trainIndex = new HashMap<>();
+    private final List<String> platformIds = new ArrayList<>();
+    private final Map<String, Integer> platformIndex = new HashMap<>();
+    private long horizonSeconds = 2 * SECONDS_PER_DAY;
+
+    public MonteCarloRunner(CompiledStation station, List<TimetableEntry> timetable,
+                            ArrivalPerturbation perturbation) {
+        this.station = station;
+        this.timetable = List.copyOf(timetable);
+        this.perturbation = perturbation;
+
+        for (int i = 0; i < this.timetable.size(); i++) {
+            if (trainIndex.putIfAbsent(this.timetable.get(i).trainNumber(), i) != null) {
+                throw new IllegalArgumentException("Duplicate train number: " + this.timetable.get(i).trainNumber());
+            }
+        }
+        for (Track track : station.getConfig().getTracks()) {
+            if ("PLATFORM_TRACK".equals(track.type())) {
+                platformIndex.put(track.id(), platformIds.size());
+                platformIds.add(track.id());
+            }
+        }
+    }
+
+    /** Simulated time each replication may run for before unfinished trains count as missed. */
+    public void setHorizonSeconds(long horizonSeconds) { this.horizonSeconds = horizonSeconds; }
+
+    /**
+     * Run the replications on the given pool and aggregate them.
+     */
+    public MonteCarloReport run(int replications, long seed, ForkJoinPool pool) throws InterruptedException {
+        int trains = timetable.size();
+        long[][] delays = new long[trains][replications];
+        int[][] platforms = new int[trains][replications];
+
+        long start = System.nanoTime();
+        try {
+            // Each replication only writes its own column, so no further synchronisation is needed
+            pool.submit(() -> IntStream.range(0, replications).parallel()
+                    .forEach(r -> replicate(r, seed, delays, platforms))).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Replication failed", e.getCause());
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("%d replications on %d threads in %.2f s", replications, pool.getParallelism(),
+                    (System.nanoTime() - start) / 1e9));
+        }
+
+        return aggregate(replications, seed, delays, platforms);
+    }
+
+    private void replicate(int replication, long seed, long[][] delays, int[][] platforms) {
+        SplittableRandom random = new SplittableRandom(seed + replication * SEED_STRIDE);
+        List<TimetableEntry> perturbed = new ArrayList<>(timetable.size());
+        for (TimetableEntry entry : timetable) {
+            long delay = perturbation.delaySeconds(entry, random);
+            perturbed.add(new TimetableEntry(entry.trainNumber(), entry.fromStation(), entry.toStation(),
+                    entry.scheduledArrival().plusSeconds(delay), entry.scheduledDeparture(),
+                    entry.designatedPlatform(), entry.entryNodeId()));
+        }
+
+        for (int t = 0; t < timetable.size(); t++) {
+            platforms[t][replication] = NOT_ARRIVED;
+        }
+
+        SimulationController controller = new SimulationController(station,
+                StationConfigLoader.createSwitchStates(station.getConfig()), perturbed);
+        controller.addExitListener((entry, train, exitTime) -> record(train, replication, delays, platforms));
+
+        long end = controller.getSimClock() + horizonSeconds;
+        long next;
+        while ((next = controller.nextEventTime()) <= end) {
+            controller.advanceTo(next);
+        }
+    }
+
+    private void record(Train train, int replication, long[][] delays, int[][] platforms) {
+        Integer t = trainIndex.get(train.getTrainNumber());
+        if (t == null || train.getActualArrival() == null) return;
+
+        LocalTime scheduled = timetable.get(t).scheduledArrival();
+        long delay = train.getActualArrival().toSecondOfDay() - scheduled.toSecondOfDay();
+        // Fold into (-12h, 12h] so trains arriving across midnight are not a day early or late
+        delay = Math.floorMod(delay + SECONDS_PER_DAY / 2, SECONDS_PER_DAY) - SECONDS_PER_DAY / 2;
+
+        delays[t][replication] = delay;
+        Integer platform = platformIndex.get(train.getCurrentPlatform());
+        platforms[t][replication] = platform == null ? platformIds.size() : platform;
+    }
+
+    private MonteCarloReport aggregate(int replications, long seed, long[][] delays, int[][] platforms) {
+        List<DelayStats> perTrain = new ArrayList<>(timetable.size());
+        long[] buffer = new long[replications];
+        for (int t = 0; t < timetable.size(); t++) {
+            int count = 0;
+            for (int r = 0; r < replications; r++) {
+                if (platforms[t][r] != NOT_ARRIVED) {
+                    buffer[count++] = delays[t][r];
+                }
+            }
+            perTrain.add(DelayStats.of(timetable.get(t).trainNumber(), buffer, count, replications - count));
+        }
+
+        // Last bucket collects arrivals on tracks that are not platforms
+        int buckets = platformIds.size() + 1;
+        int[] counts = new int[buckets];
+        long[][] samples = new long[buckets][];
+        for (int t = 0; t < timetable.size(); t++) {
+            for (int r = 0; r < replications; r++) {
+                int p = platforms[t][r];
+                if (p == NOT_ARRIVED) continue;
+                if (samples[p] == null) {
+                    samples[p] = new long[Math.max(16, replications)];
+                } else if (counts[p] == samples[p].length) {
+                    samples[p] = Arrays.copyOf(samples[p], counts[p] * 2);
+                }
+                samples[p][counts[p]++] = delays[t][r];
+            }
+        }
+
+        List<DelayStats> perPlatform = new ArrayList<>(buckets);
+        for (int p = 0; p < buckets; p++) {
+            if (p == platformIds.size() && counts[p] == 0) break;
+            String key = p < platformIds.size() ? platformIds.get(p) : "(other)";
+            perPlatform.add(DelayStats.of(key, samples[p] == null ? new long[0] : samples[p], counts[p], 0));
+        }
+
+        return new MonteCarloReport(replications, seed, perTrain, perPlatform);
+    }
+}
@@ -0,0 +1,205 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.Signal;
+import com.jas777.railops.model.SignalState;
+import com.jas777.railops.model.Train;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Resolves all MOVE events that fall on the same simulated second as one batch.
+ * <p>
+ * Every phase only reads state from before the batch or writes the columns of its own train, so the phases can
+ * be spread over a fork-join pool. Contested nodes are claimed with a CAS-min on {@link #claims}: the train with
+ * the lowest position in the batch wins, which is the order the events were scheduled in; every other train
+ * heading for that node waits. Without a pool, or for small batches, the same phases run inline, so sequential
+ * and parallel runs produce identical results.
+ * <p>
+ * This differs from moving trains one at a time, where a train could take a node released by one moved earlier in
+ * the same second and ties went to whichever event happened to run first. Here there is no train priority: ties go
+ * to the position in the batch, and a node released during a batch only becomes available to other trains in the
+ * next one, one movement interval later. Both follow from every train deciding against the state from before the
+ * batch, which is what lets the phases run in parallel with the same result on any number of threads.
+ */
+final class MovementBatch {
+
+    static final byte SKIP = 0;         // Train has no route
+    static final byte ARRIVE = 1;       // Reached the end of its route
+    static final byte SIGNAL_WAIT = 2;  // Next node protected by a RED signal
+    static final byte NODE_WAIT = 3;    // Next node held by another train
+    static final byte MOVE = 4;         // Advanced one node
+
+    private static final int UNCLAIMED = Integer.MAX_VALUE;
+    private static final int DEFAULT_THRESHOLD = 1024;
+
+    private final TrainStore trains;
+    private final OccupancyMap occupancy;
+    private SignalState[] signalByNode;
+    private AtomicIntegerArray claims;
+
+    private int[] slots = new int[64];
+    private byte[] outcome = new byte[64];
+    private int[] from = new int[64];
+    private int[] to = new int[64];
+    private int size = 0;
+
+    private ForkJoinPool pool;
+    private int threshold = DEFAULT_THRESHOLD;
+
+    MovementBatch(TrainStore trains, OccupancyMap occupancy, SignalState[] signalByNode, int nodeCount) {
+        this.trains = trains;
+        this.occupancy = occupancy;
+        resize(signalByNode, nodeCount);
+    }
+
+    /** Size the claims for a topology with more nodes. Only call between batches. */
+    void resize(SignalState[] signalByNode, int nodeCount) {
+        this.signalByNode = signalByNode;
+        this.claims = new AtomicIntegerArray(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            claims.set(i, UNCLAIMED);
+        }
+    }
+
+    /**
+     * Run the phases on the given pool, or inline when it is null. Batches smaller than {@code threshold}
+     * always run inline, as forking costs more than it saves there.
+     */
+    void setPool(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.threshold = Math.max(1, threshold);
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    void add(int train) {
+        if (size == slots.length) {
+            int capacity = size * 2;
+            slots = Arrays.copyOf(slots, capacity);
+            outcome = Arrays.copyOf(outcome, capacity);
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+        }
+        slots[size++] = train;
+    }
+
+    int size() { return size; }
+    int train(int i) { return slots[i]; }
+    byte outcome(int i) { return outcome[i]; }
+    int from(int i) { return from[i]; }
+    int to(int i) { return to[i]; }
+
+    /**
+     * Decide and apply the movement of every train in the batch. Afterwards {@link #outcome}, {@link #from} and
+     * {@link #to} describe what happened to each; scheduling follow-up events is left to the caller.
+     */
+    void resolve(long now) {
+        forEach(this::decide);
+        forEach(i -> settle(i, now));
+        forEach(i -> {
+            if (outcome[i] == MOVE) occupancy.release(from[i]);
+        });
+        forEach(i -> {
+            if (outcome[i] == MOVE) occupancy.occupy(to[i]);
+        });
+        for (int i = 0; i < size; i++) {
+            if (outcome[i] == MOVE || outcome[i] == NODE_WAIT) {
+                claims.set(to[i], UNCLAIMED);
+            }
+        }
+    }
+
+    private void decide(int i) {
+        int train = slots[i];
+        from[i] = trains.node(train);
+        to[i] = CompiledTopology.NONE;
+
+        if (trains.routeId(train) == TrainStore.NONE) {
+            outcome[i] = SKIP;
+            return;
+        }
+        if (trains.isAtRouteEnd(train)) {
+            outcome[i] = ARRIVE;
+            return;
+        }
+
+        int next = trains.peekNextNode(train);
+        to[i] = next;
+        SignalState signal = signalByNode[next];
+        if (signal != null && signal.getAspect() == Signal.SignalAspect.RED) {
+            outcome[i] = SIGNAL_WAIT;
+            return;
+        }
+
+        outcome[i] = MOVE;
+        int claimant;
+        while (i < (claimant = claims.get(next)) && !claims.compareAndSet(next, claimant, i)) {
+            // Lost a race with another worker; retry against the new claimant
+        }
+    }
+
+    private void settle(int i, long now) {
+        int train = slots[i];
+        if (outcome[i] == ARRIVE) {
+            trains.setStatus(train, Train.TrainStatus.AT_PLATFORM);
+            trains.setActualArrival(train, now);
+            return;
+        }
+        if (outcome[i] != MOVE) return;
+
+        int next = to[i];
+        if (occupancy.isNodeOccupied(next) || claims.get(next) < i) {
+            outcome[i] = NODE_WAIT;
+            return;
+        }
+
+        trains.advance(train);
+        if (trains.remainingNodes(train) <= 1) {
+            trains.setStatus(train, Train.TrainStatus.ARRIVING);
+        }
+    }
+
+    private void forEach(IntConsumer action) {
+        if (pool == null || size < threshold) {
+            for (int i = 0; i < size; i++) {
+                action.accept(i);
+            }
+        } else {
+            pool.invoke(new RangeTask(action, 0, size, Math.max(threshold / 4, size / (pool.getParallelism() * 4))));
+        }
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient IntConsumer action;
+        private final int start;
+        private final int end;
+        private final int grain;
+
+        RangeTask(IntConsumer action, int start, int end, int grain) {
+            this.action = action;
+            this.start = start;
+            this.end = end;
+            this.grain = Math.max(1, grain);
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= grain) {
+                for (int i = start; i < end; i++) {
+                    action.accept(i);
+                }
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(new RangeTask(action, start, mid, grain), new RangeTask(action, mid, end, grain));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.log.Log;
+import com.jas777.railops.log.Logger;
+import com.jas777.railops.log.Subsystem;
+import com.jas777.railops.model.NetworkConfig;
+import com.jas777.railops.model.NetworkStation;
+import com.jas777.railops.model.StationConfig;
+import com.jas777.railops.model.TimetableEntry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Many stations linked into a network, each simulated by its own {@link StationShard} on its own thread.
+ * <p>
+ * Shards advance in lockstep. Every step has two phases separated by a barrier: all shards simulate up to the
+ * step's end, handing departing trains to their neighbours' lock-free inboxes, then all shards drain their
+ * inboxes. A train handed over in one step therefore reaches the next station at the earliest in the next step,
+ * and runs are deterministic as long as no inbox overflows.
+ * <p>
+ * The demo timetable is loaded at the first station only; the others receive their trains through handoffs.
+ */
+public class NetworkSimulation {
+
+    private static final Logger LOG = Log.get(Subsystem.ENGINE);
+
+    private static final int INBOX_CAPACITY = 4096;
+
+    private final Map<String, StationShard> shards = new LinkedHashMap<>();
+
+    public NetworkSimulation(NetworkConfig network, boolean useTrackLengths) throws IOException {
+        Map<String, StationConfig> configs = new HashMap<>();
+        Map<String, CompiledStation> stations = new HashMap<>();
+        LogicalGraphBuilder builder = new LogicalGraphBuilder();
+
+        for (NetworkStation station : network.getStations()) {
+            if (shards.containsKey(station.name())) {
+                throw new IllegalArgumentException("Duplicate station in network: " + station.name());
+            }
+            // Stations sharing a layout share its parsed config, topology and interlocking; all are read-only
+            StationConfig config = configs.get(station.config());
+            if (config == null) {
+                config = StationConfigLoader.load(station.config());
+                configs.put(station.config(), config);
+            }
+            CompiledStation compiled = stations.get(station.config());
+            if (compiled == null) {
+                compiled = CompiledStation.of(config, builder.compile(config, useTrackLengths));
+                stations.put(station.config(), compiled);
+            }
+
+            List<TimetableEntry> timetable = shards.isEmpty()
+                    ? SimulationController.createDefaultTimetable(config) : List.of();
+            SimulationController controller = new SimulationController(compiled,
+                    StationConfigLoader.createSwitchStates(config), timetable);
+            shards.put(station.name(), new StationShard(station.name(), controller, INBOX_CAPACITY));
+        }
+
+        Map<String, StationShard> view = Collections.unmodifiableMap(shards);
+        for (StationShard shard : shards.values()) {
+            shard.connect(view, network.getLinks());
+        }
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Network " + network.getNetworkName() + ": " + shards.size() + " stations, "
+                    + network.getLinks().size() + " links");
+        }
+    }
+
+    public static NetworkSimulation load(String resourceName, boolean useTrackLengths) throws IOException {
+        return new NetworkSimulation(StationConfigLoader.loadNetwork(resourceName), useTrackLengths);
+    }
+
+    /**
+     * Simulate the given number of seconds in steps of {@code stepSeconds}, one thread per station.
+     * Returns when every shard has finished; an exception in any shard is rethrown after the others stop.
+     */
+    public long run(long seconds, long stepSeconds) throws InterruptedException {
+        if (shards.isEmpty()) return 0;
+        if (stepSeconds <= 0) {
+            throw new IllegalArgumentException("Step must be positive: " + stepSeconds);
+        }
+
+        long start = shards.values().iterator().next().getController().getSimClock();
+        long end = start + seconds;
+        Phaser barrier = new Phaser(shards.size());
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>(shards.size());
+
+        for (StationShard shard : shards.values()) {
+            Thread worker = new Thread(() -> {
+                try {
+                    long target = start;
+                    do {
+                        target = Math.min(target + stepSeconds, end);
+                        shard.flushOverflow();
+                        shard.getController().advanceTo(target);
+                        barrier.arriveAndAwaitAdvance();
+                        shard.drainInbox();
+                        barrier.arriveAndAwaitAdvance();
+                    } while (target < end && failure.get() == null);
+                } catch (RuntimeException e) {
+                    LOG.error("Station " + shard.getName() + " failed", e);
+                    failure.compareAndSet(null, e);
+                } finally {
+                    barrier.arriveAndDeregister();
+                }
+            }, "railops-shard-" + shard.getName());
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return end - start;
+    }
+
+    public StationShard getShard(String name) { return shards.get(name); }
+    public List<StationShard> getShards() { return new ArrayList<>(shards.values()); }
+}
@@ -0,0 +1,127 @@
+package com.jas777.railops.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Occupancy stored as a bitset over the interned node IDs of a {@link CompiledTopology}.
+ * The word array is only replaced, never resized, so renderers can read it through {@link OccupancyView} while
+ * the simulation thread updates it; a reader may see a slightly stale frame but never a half-grown array.
+ * Bits are set and cleared with CAS, so the parallel movement phase can claim nodes from several workers.
+ */
+public final class OccupancyMap implements OccupancyView {
+
+    private volatile CompiledTopology topology;
+    private volatile AtomicLongArray words;
+    private final AtomicInteger occupiedCount = new AtomicInteger();
+
+    public OccupancyMap(CompiledTopology topology) {
+        this.topology = topology;
+        this.words = new AtomicLongArray((topology.nodeCount() + 63) >>> 6);
+    }
+
+    /**
+     * Mark a node as occupied. Returns false if it already was, or if the node is not part of the topology.
+     */
+    public boolean occupy(int node) {
+        if (node == CompiledTopology.NONE) return false;
+        long mask = 1L << node;
+        int index = node >>> 6;
+        long word;
+        do {
+            word = words.get(index);
+            if ((word & mask) != 0) return false;
+        } while (!words.compareAndSet(index, word, word | mask));
+        occupiedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Clear a node. Returns true if it was occupied.
+     */
+    public boolean release(int node) {
+        if (node == CompiledTopology.NONE) return false;
+        long mask = 1L << node;
+        int index = node >>> 6;
+        long word;
+        do {
+            word = words.get(index);
+            if ((word & mask) == 0) return false;
+        } while (!words.compareAndSet(index, word, word & ~mask));
+        occupiedCount.decrementAndGet();
+        return true;
+    }
+
+    public void clear() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0L);
+        }
+        occupiedCount.set(0);
+    }
+
+    /**
+     * Move onto a topology whose node indices extend the current ones, e.g. after a layout edit. Every bit is
+     * kept. Not safe against concurrent updates.
+     */
+    public void extend(CompiledTopology next) {
+        AtomicLongArray grown = new AtomicLongArray((next.nodeCount() + 63) >>> 6);
+        for (int i = 0; i < words.length(); i++) {
+            grown.set(i, words.get(i));
+        }
+        words = grown;
+        topology = next;
+    }
+
+    /** Copy of the occupancy words, e.g. for a snapshot. */
+    public long[] toWords() {
+        long[] copy = new long[words.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = words.get(i);
+        }
+        return copy;
+    }
+
+    /** Replace the occupancy with words taken by {@link #toWords()}. Not safe against concurrent updates. */
+    public void restore(long[] source) {
+        int count = 0;
+        for (int i = 0; i < words.length(); i++) {
+            long word = i < source.length ? source[i] : 0L;
+            words.set(i, word);
+            count += Long.bitCount(word);
+        }
+        occupiedCount.set(count);
+    }
+
+    @Override
+    public boolean isNodeOccupied(int node) {
+        AtomicLongArray words = this.words;
+        int index = node >>> 6;
+        return node != CompiledTopology.NONE && index < words.length() && (words.get(index) & (1L << node)) != 0;
+    }
+
+    @Override
+    public boolean isTrackOccupied(int track) {
+        return isNodeOccupied(topology.trackEntryNode(track)) || isNodeOccupied(topology.trackExitNode(track));
+    }
+
+    @Override
+    public int occupiedCount() {
+        return occupiedCount.get();
+    }
+
+    /** IDs of the occupied nodes, in index order. */
+    public List<String> occupiedNodeIds() {
+        List<String> ids = new ArrayList<>(occupiedCount.get());
+        for (int w = 0; w < words.length(); w++) {
+            long word = words.get(w);
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                ids.add(topology.nodeId((w << 6) + bit));
+                word &= word - 1;
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,14 @@
+package com.jas777.railops.logic;
+
+/**
+ * Read-only view of track occupancy for renderers. Backed by the live simulation state, nothing is copied.
+ */
+public interface OccupancyView {
+
+    boolean isNodeOccupied(int node);
+
+    /** True if the entry or exit node of the track is occupied. O(1). */
+    boolean isTrackOccupied(int track);
+
+    int occupiedCount();
+}
@@ -1,118 +1,315 @@
 package com.jas777.railops.logic;
 
-import com.jas777.railops.model.TrackLink;
+import com.jas777.railops.log.Log;
+import com.jas777.railops.log.Logger;
+import com.jas777.railops.log.Subsystem;
 
 import java.util.*;
 
 public class PathFinder {
 
-    private final Map<String, List<TrackLink>> logicalGraph;
+    private static final Logger LOG = Log.get(Subsystem.PATHFINDER);
 
-    public PathFinder(Map<String, List<TrackLink>> logicalGraph) {
-        this.logicalGraph = logicalGraph;
+    private CompiledTopology topology;
+    private final RouteCache routeCache;
+
+    public PathFinder(CompiledTopology topology) {
+        this.topology = topology;
+        this.routeCache = new RouteCache(topology);
     }
 
     /**
      * Find a path from start node to target node considering switch states.
-     * Uses Dijkstra's algorithm.
+     * String facade over {@link #findPath(int, int, SwitchPositions)}.
      */
     public List<String> findPath(String startNodeId, String targetNodeId,
                                  Map<String, String> switchStates) {
 
-        System.out.println("\n=== PathFinder Debug ===");
-        System.out.println("Start: " + startNodeId);
-        System.out.println("Target: " + targetNodeId);
-        System.out.println("Available nodes in graph: " + logicalGraph.keySet());
+        SwitchPositions switchPositions = new SwitchPositions(topology.switchCount());
+        for (int sw = 0; sw < topology.switchCount(); sw++) {
+            String state = switchStates.get(topology.switchId(sw));
+            if (state != null) {
+                switchPositions.set(sw, CompiledTopology.parseSwitchState(state));
+            }
+        }
+
+        int[] path = findPath(topology.nodeIndex(startNodeId), topology.nodeIndex(targetNodeId), switchPositions);
+        if (path == null) return null;
+
+        List<String> result = new ArrayList<>(path.length);
+        for (int node : path) {
+            result.add(topology.nodeId(node));
+        }
+        return result;
+    }
+
+    /**
+     * Find a path between two interned nodes, reading switch positions directly from the live vector.
+     * Results are memoized in the {@link RouteCache}; the returned array is shared and must not be modified.
+     */
+    public int[] findPath(int startNode, int targetNode, SwitchPositions switchPositions) {
+        if (startNode == CompiledTopology.NONE || targetNode == CompiledTopology.NONE) {
+            LOG.warn("Start node not in graph: " + nodeName(startNode));
+            return null;
+        }
+
+        int[] cached = routeCache.get(startNode, targetNode, switchPositions);
+        if (cached != null) {
+            return cached == RouteCache.NO_ROUTE ? null : cached;
+        }
+
+        int[] path = computePath(startNode, targetNode, switchPositions);
+        routeCache.put(startNode, targetNode, switchPositions, path);
+        return path;
+    }
+
+    /**
+     * Breadth-first search when every edge costs 1.0, A* with a straight-line heuristic when the topology
+     * carries track lengths as edge weights. Works entirely in the thread's reusable scratch buffers.
+     */
+    private int[] computePath(int startNode, int targetNode, SwitchPositions switchPositions) {
 
-        if (!logicalGraph.containsKey(startNodeId)) {
-            System.out.println("ERROR: Start node not in graph!");
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("PathFinder: " + nodeName(startNode) + " -> " + nodeName(targetNode));
+        }
+
+        if (topology.firstEdge(startNode) == topology.endEdge(startNode)) {
+            LOG.warn("Start node not in graph: " + nodeName(startNode));
             return null;
         }
 
-        Map<String, String> previous = new HashMap<>();
-        Map<String, Double> distances = new HashMap<>();
-        PriorityQueue<NodeDistance> queue = new PriorityQueue<>(
-                Comparator.comparingDouble(nd -> nd.distance)
-        );
-        Set<String> visited = new HashSet<>();
+        SearchScratch scratch = SCRATCH.get();
+        scratch.ensureCapacity(topology.nodeCount(), topology.edgeCount());
+        int epoch = scratch.nextEpoch();
 
-        distances.put(startNodeId, 0.0);
-        queue.offer(new NodeDistance(startNodeId, 0.0));
+        boolean found = topology.hasEdgeWeights()
+                ? searchAStar(startNode, targetNode, switchPositions, scratch, epoch)
+                : searchBreadthFirst(startNode, targetNode, switchPositions, scratch, epoch);
 
-        while (!queue.isEmpty()) {
-            NodeDistance current = queue.poll();
-            String currentNode = current.nodeId;
+        if (!found) {
+            LOG.debug("No path found - exhausted all possibilities");
+            return null;
+        }
+
+        int[] path = reconstructPath(scratch.predecessor, startNode, targetNode);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Path found: " + path.length + " nodes");
+        }
+        return path;
+    }
 
-            if (visited.contains(currentNode)) continue;
-            visited.add(currentNode);
+    private boolean searchBreadthFirst(int startNode, int targetNode, SwitchPositions switchPositions,
+                                       SearchScratch scratch, int epoch) {
+        int[] seen = scratch.seenEpoch;
+        int[] predecessor = scratch.predecessor;
+        int[] queue = scratch.queue;
+        boolean trace = LOG.isTraceEnabled();
+        int head = 0;
+        int tail = 0;
 
-            System.out.println("Visiting: " + currentNode);
+        seen[startNode] = epoch;
+        predecessor[startNode] = CompiledTopology.NONE;
+        queue[tail++] = startNode;
 
-            if (currentNode.equals(targetNodeId)) {
-                List<String> path = reconstructPath(previous, startNodeId, targetNodeId);
-                System.out.println("Path found: " + path);
-                return path;
+        while (head < tail) {
+            int node = queue[head++];
+            if (trace) {
+                LOG.trace("Visiting: " + nodeName(node));
+            }
+            if (node == targetNode) {
+                return true;
             }
 
-            List<TrackLink> neighbors = logicalGraph.getOrDefault(currentNode, new ArrayList<>());
-            System.out.println("  Neighbors: " + neighbors.size());
-
-            for (TrackLink link : neighbors) {
-                System.out.println("    Checking link to: " + link.targetTrackId());
-
-                // Check if this link is traversable given current switch states
-                if (link.isConditional()) {
-                    String requiredState = link.requiredSwitchState();
-                    String actualState = switchStates.get(link.requiredSwitchId());
-                    System.out.println("      Conditional: needs " + link.requiredSwitchId() + "=" + requiredState +
-                            ", actual=" + actualState);
-                    if (actualState == null || !requiredState.equals(actualState)) {
-                        System.out.println("      BLOCKED - switch in wrong position");
-                        continue;
+            for (int edge = topology.firstEdge(node), end = topology.endEdge(node); edge < end; edge++) {
+                int sw = topology.edgeSwitch(edge);
+                if (sw != CompiledTopology.NONE && !switchPositions.matches(sw, topology.edgeSwitchState(edge))) {
+                    if (trace) {
+                        LOG.trace("  Blocked: " + topology.switchId(sw) + " in wrong position for "
+                                + nodeName(topology.edgeTarget(edge)));
                     }
+                    continue;
                 }
 
-                String neighbor = link.targetTrackId();
-                double newDist = distances.get(currentNode) + 1.0;
+                int neighbor = topology.edgeTarget(edge);
+                if (seen[neighbor] != epoch) {
+                    seen[neighbor] = epoch;
+                    predecessor[neighbor] = node;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean searchAStar(int startNode, int targetNode, SwitchPositions switchPositions,
+                                SearchScratch scratch, int epoch) {
+        int[] seen = scratch.seenEpoch;
+        int[] closed = scratch.closedEpoch;
+        int[] predecessor = scratch.predecessor;
+        double[] distance = scratch.distance;
+
+        boolean trace = LOG.isTraceEnabled();
+        scratch.heapSize = 0;
+        seen[startNode] = epoch;
+        distance[startNode] = 0.0;
+        predecessor[startNode] = CompiledTopology.NONE;
+        scratch.push(startNode, heuristic(startNode, targetNode));
+
+        while (scratch.heapSize > 0) {
+            int node = scratch.pop();
+            if (closed[node] == epoch) continue;
+            closed[node] = epoch;
 
-                if (newDist < distances.getOrDefault(neighbor, Double.MAX_VALUE)) {
-                    distances.put(neighbor, newDist);
-                    previous.put(neighbor, currentNode);
-                    queue.offer(new NodeDistance(neighbor, newDist));
-                    System.out.println("      Added to queue");
+            if (trace) {
+                LOG.trace("Visiting: " + nodeName(node));
+            }
+            if (node == targetNode) {
+                return true;
+            }
+
+            for (int edge = topology.firstEdge(node), end = topology.endEdge(node); edge < end; edge++) {
+                int sw = topology.edgeSwitch(edge);
+                if (sw != CompiledTopology.NONE && !switchPositions.matches(sw, topology.edgeSwitchState(edge))) {
+                    if (trace) {
+                        LOG.trace("  Blocked: " + topology.switchId(sw) + " in wrong position for "
+                                + nodeName(topology.edgeTarget(edge)));
+                    }
+                    continue;
+                }
+
+                int neighbor = topology.edgeTarget(edge);
+                double newDist = distance[node] + topology.edgeWeight(edge);
+                if (seen[neighbor] != epoch || newDist < distance[neighbor]) {
+                    seen[neighbor] = epoch;
+                    distance[neighbor] = newDist;
+                    predecessor[neighbor] = node;
+                    scratch.push(neighbor, newDist + heuristic(neighbor, targetNode));
                 }
             }
         }
+        return false;
+    }
+
+    /**
+     * Straight-line distance to the target. Admissible because a track is never shorter than the chord
+     * between its end points; nodes without coordinates fall back to 0 (plain Dijkstra).
+     */
+    private double heuristic(int node, int targetNode) {
+        if (!topology.hasCoordinates(node) || !topology.hasCoordinates(targetNode)) {
+            return 0.0;
+        }
+        double dx = topology.nodeX(targetNode) - topology.nodeX(node);
+        double dy = topology.nodeY(targetNode) - topology.nodeY(node);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
 
-        System.out.println("No path found - exhausted all possibilities");
-        System.out.println("Visited nodes: " + visited);
-        return null;
+    /**
+     * Switch to a patched topology, keeping every cached route the change cannot affect. Returns the number of
+     * cached pairs dropped.
+     */
+    public int updateTopology(CompiledTopology next, int[] changedNodes) {
+        int dropped = routeCache.update(next, changedNodes);
+        this.topology = next;
+        return dropped;
     }
 
-    private List<String> reconstructPath(Map<String, String> previous,
-                                         String start, String target) {
-        List<String> path = new ArrayList<>();
-        String current = target;
-
-        while (current != null) {
-            path.add(0, current);
-            current = previous.get(current);
-            if (current != null && current.equals(start)) {
-                path.add(0, start);
-                break;
-            }
+    public RouteCache getRouteCache() {
+        return routeCache;
+    }
+
+    private int[] reconstructPath(int[] predecessor, int start, int target) {
+        int length = 1;
+        for (int node = target; node != start; node = predecessor[node]) {
+            length++;
         }
 
+        int[] path = new int[length];
+        int node = target;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = node;
+            node = predecessor[node];
+        }
         return path;
     }
 
-    private static class NodeDistance {
-        String nodeId;
-        double distance;
+    private String nodeName(int node) {
+        return node == CompiledTopology.NONE ? "<unknown>" : topology.nodeId(node);
+    }
+
+    private static final ThreadLocal<SearchScratch> SCRATCH = ThreadLocal.withInitial(SearchScratch::new);
+
+    /**
+     * Per-thread search buffers, reused across calls. Instead of clearing arrays between searches every
+     * search gets a new epoch; a node counts as seen/closed only if its stamp equals the current epoch.
+     */
+    private static final class SearchScratch {
+        int epoch = 0;
+        int[] seenEpoch = new int[0];
+        int[] closedEpoch = new int[0];
+        int[] predecessor = new int[0];
+        int[] queue = new int[0];
+        double[] distance = new double[0];
+
+        // Binary min-heap of (node, priority) for A*; stale duplicates are skipped when popped
+        int[] heapNodes = new int[0];
+        double[] heapKeys = new double[0];
+        int heapSize = 0;
+
+        void ensureCapacity(int nodeCount, int edgeCount) {
+            if (seenEpoch.length < nodeCount) {
+                seenEpoch = new int[nodeCount];
+                closedEpoch = new int[nodeCount];
+                predecessor = new int[nodeCount];
+                queue = new int[nodeCount];
+                distance = new double[nodeCount];
+                epoch = 0;
+            }
+            if (heapNodes.length < edgeCount + 1) {
+                heapNodes = new int[edgeCount + 1];
+                heapKeys = new double[edgeCount + 1];
+            }
+        }
 
-        NodeDistance(String nodeId, double distance) {
-            this.nodeId = nodeId;
-            this.distance = distance;
+        int nextEpoch() {
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(seenEpoch, 0);
+                Arrays.fill(closedEpoch, 0);
+                epoch = 1;
+            }
+            return epoch;
+        }
+
+        void push(int node, double key) {
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapKeys[parent] <= key) break;
+                heapNodes[i] = heapNodes[parent];
+                heapKeys[i] = heapKeys[parent];
+                i = parent;
+            }
+            heapNodes[i] = node;
+            heapKeys[i] = key;
+        }
+
+        int pop() {
+            int top = heapNodes[0];
+            int lastNode = heapNodes[--heapSize];
+            double lastKey = heapKeys[heapSize];
+
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) break;
+                if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) child++;
+                if (heapKeys[child] >= lastKey) break;
+                heapNodes[i] = heapNodes[child];
+                heapKeys[i] = heapKeys[child];
+                i = child;
+            }
+            heapNodes[i] = lastNode;
+            heapKeys[i] = lastKey;
+            return top;
         }
     }
-}
\ No newline at end of file
+}
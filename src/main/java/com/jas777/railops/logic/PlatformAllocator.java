@@ -0,0 +1,411 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.StationConfig;
+import com.jas777.railops.model.Track;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Assigns platforms to trains, both ahead of time and at the moment they spawn.
+ * <p>
+ * The plan books every train's platform occupancy interval (simulated seconds, end exclusive) on one platform.
+ * Bookings are made greedily in start order, which is optimal interval partitioning when trains have no
+ * preference. A train's designated platform is tried first, then the best fit: the platform that became free
+ * closest to the train's start. When nothing fits, an augmenting chain is searched breadth-first: the train
+ * takes a platform where it overlaps exactly one movable booking, that booking moves on the same way, and so on
+ * until one lands in a free slot. Each platform appears at most once in a chain, so the chain is at most as long
+ * as there are platforms. Trains that still do not fit stay unplanned and take whatever is free when they spawn.
+ * <p>
+ * When a train turns out to be late or lands on another platform, {@link #repair} moves its booking and
+ * re-places only the bookings it now overlaps, each starting from its own designated platform.
+ * <p>
+ * Which platforms are physically held right now is tracked separately in a bitset of free platforms.
+ */
+public final class PlatformAllocator {
+
+    public static final int NONE = -1;
+
+    private final int[] platformTrack;
+    private final String[] platformIds;
+    private final Map<Integer, Integer> platformByTrack = new HashMap<>();
+    private final Map<String, Integer> platformByDesignation = new HashMap<>();
+
+    // Plan
+    private final List<TreeMap<Long, Booking>> schedule;
+    private final Map<String, Booking> bookings = new HashMap<>();
+
+    // Runtime state
+    private final long[] free;
+    private final String[] heldBy;
+
+    /** One move of an augmenting chain: {@code booking} goes to {@code platform}, evicting {@code evicted}. */
+    private record Step(Booking booking, int platform, Booking evicted, Step previous) {
+
+        boolean uses(int p) {
+            for (Step step = this; step != null; step = step.previous) {
+                if (step.platform == p) return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class Booking {
+        final String trainNumber;
+        final int designated;
+        long start;
+        long end;
+        int platform = NONE;
+        boolean fixed; // Train is already on this platform; repairs must not move it
+
+        Booking(String trainNumber, int designated, long start, long end) {
+            this.trainNumber = trainNumber;
+            this.designated = designated;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    public PlatformAllocator(StationConfig config, CompiledTopology topology) {
+        List<Integer> tracks = new ArrayList<>();
+        for (Track track : config.getTracks()) {
+            int index = topology.trackIndex(track.id());
+            if ("PLATFORM_TRACK".equals(track.type()) && index != CompiledTopology.NONE) {
+                tracks.add(index);
+            }
+        }
+
+        int count = tracks.size();
+        this.platformTrack = new int[count];
+        this.platformIds = new String[count];
+        this.schedule = new ArrayList<>(count);
+        this.free = new long[Math.max(1, (count + 63) >>> 6)];
+        this.heldBy = new String[count];
+        for (int p = 0; p < count; p++) {
+            platformTrack[p] = tracks.get(p);
+            platformIds[p] = topology.trackId(platformTrack[p]);
+            platformByTrack.put(platformTrack[p], p);
+            schedule.add(new TreeMap<>());
+            free[p >>> 6] |= 1L << p;
+        }
+
+        // Designations such as "1" match the track id itself or a track id ending in "_1"
+        for (int p = 0; p < count; p++) {
+            platformByDesignation.put(platformIds[p], p);
+            int separator = platformIds[p].lastIndexOf('_');
+            if (separator >= 0) {
+                platformByDesignation.putIfAbsent(platformIds[p].substring(separator + 1), p);
+            }
+        }
+    }
+
+    private PlatformAllocator(PlatformAllocator source, boolean copyState) {
+        this.platformTrack = source.platformTrack;
+        this.platformIds = source.platformIds;
+        this.schedule = new ArrayList<>(platformTrack.length);
+        for (int p = 0; p < platformTrack.length; p++) {
+            schedule.add(new TreeMap<>());
+        }
+        this.free = new long[source.free.length];
+        this.heldBy = new String[platformTrack.length];
+        platformByTrack.putAll(source.platformByTrack);
+        platformByDesignation.putAll(source.platformByDesignation);
+        if (copyState) {
+            copyFrom(source);
+        } else {
+            for (int p = 0; p < platformTrack.length; p++) {
+                free[p >>> 6] |= 1L << p;
+            }
+        }
+    }
+
+    /** Detached copy of the plan and the runtime state, e.g. for a snapshot. */
+    public PlatformAllocator copy() {
+        return new PlatformAllocator(this, true);
+    }
+
+    /** Allocator for the same platforms with an empty plan and every platform free. */
+    public PlatformAllocator copyLayout() {
+        return new PlatformAllocator(this, false);
+    }
+
+    /**
+     * Replace the plan and the runtime state with a copy of another allocator's. Both must be built for the same
+     * station.
+     */
+    public void copyFrom(PlatformAllocator source) {
+        if (source.platformTrack.length != platformTrack.length) {
+            throw new IllegalArgumentException("Allocator is for a different station");
+        }
+        bookings.clear();
+        for (TreeMap<Long, Booking> bookedOn : schedule) {
+            bookedOn.clear();
+        }
+        for (Booking original : source.bookings.values()) {
+            Booking booking = new Booking(original.trainNumber, original.designated, original.start, original.end);
+            booking.fixed = original.fixed;
+            bookings.put(booking.trainNumber, booking);
+            if (original.platform != NONE) {
+                put(booking, original.platform);
+            }
+        }
+        System.arraycopy(source.free, 0, free, 0, free.length);
+        System.arraycopy(source.heldBy, 0, heldBy, 0, heldBy.length);
+    }
+
+    /** Write the plan and the runtime state to a checkpoint. */
+    void write(SnapshotCodec.Output out) {
+        out.putInt(platformTrack.length);
+        out.putInt(bookings.size());
+        for (Booking booking : bookings.values()) {
+            out.putString(booking.trainNumber);
+            out.putInt(booking.designated);
+            out.putLong(booking.start);
+            out.putLong(booking.end);
+            out.putInt(booking.platform);
+            out.putByte((byte) (booking.fixed ? 1 : 0));
+        }
+        out.putLongs(free);
+        for (String holder : heldBy) {
+            out.putString(holder);
+        }
+    }
+
+    /** Replace the plan and the runtime state with what {@link #write} wrote. */
+    void read(SnapshotCodec.Input in) {
+        if (in.getInt() != platformTrack.length) {
+            throw new IllegalArgumentException("Checkpoint is for a different station");
+        }
+        bookings.clear();
+        for (TreeMap<Long, Booking> bookedOn : schedule) {
+            bookedOn.clear();
+        }
+        for (int i = in.getInt(); i > 0; i--) {
+            Booking booking = new Booking(in.getString(), in.getInt(), in.getLong(), in.getLong());
+            int platform = in.getInt();
+            booking.fixed = in.getByte() != 0;
+            bookings.put(booking.trainNumber, booking);
+            if (platform != NONE) {
+                put(booking, platform);
+            }
+        }
+        long[] words = in.getLongs();
+        System.arraycopy(words, 0, free, 0, Math.min(words.length, free.length));
+        for (int p = 0; p < heldBy.length; p++) {
+            heldBy[p] = in.getString();
+        }
+    }
+
+    public int platformCount() { return platformTrack.length; }
+    public int platformTrack(int platform) { return platformTrack[platform]; }
+    public String platformId(int platform) { return platformIds[platform]; }
+
+    public int platformOfTrack(int track) {
+        Integer platform = platformByTrack.get(track);
+        return platform == null ? NONE : platform;
+    }
+
+    /** Platform a timetable designation refers to, or {@link #NONE}. */
+    public int resolveDesignation(String designation) {
+        Integer platform = designation == null ? null : platformByDesignation.get(designation);
+        return platform == null ? NONE : platform;
+    }
+
+    // Plan
+
+    /**
+     * Book a train into the plan. Returns the planned platform, or {@link #NONE} if no platform is free for the
+     * whole interval.
+     */
+    public int book(String trainNumber, String designation, long start, long end) {
+        cancel(trainNumber);
+        Booking booking = new Booking(trainNumber, resolveDesignation(designation), start, Math.max(end, start + 1));
+        bookings.put(trainNumber, booking);
+        return place(booking);
+    }
+
+    public int plannedPlatform(String trainNumber) {
+        Booking booking = bookings.get(trainNumber);
+        return booking == null ? NONE : booking.platform;
+    }
+
+    /** Planned end of a train's occupancy, or {@link Long#MIN_VALUE} if it is not booked. */
+    public long plannedEnd(String trainNumber) {
+        Booking booking = bookings.get(trainNumber);
+        return booking == null ? Long.MIN_VALUE : booking.end;
+    }
+
+    public void cancel(String trainNumber) {
+        Booking booking = bookings.remove(trainNumber);
+        if (booking != null) {
+            unplace(booking);
+        }
+    }
+
+    /**
+     * Pin a train to the platform it actually uses, for its actual interval, and re-place the bookings that
+     * now overlap it. Returns the number of bookings that had to move.
+     */
+    public int repair(String trainNumber, int platform, long start, long end) {
+        Booking booking = bookings.get(trainNumber);
+        if (booking == null) {
+            booking = new Booking(trainNumber, platform, start, end);
+            bookings.put(trainNumber, booking);
+        } else {
+            unplace(booking);
+        }
+        booking.start = start;
+        booking.end = Math.max(end, start + 1);
+        booking.fixed = true;
+
+        List<Booking> displaced = conflicts(platform, booking.start, booking.end);
+        for (Booking other : displaced) {
+            unplace(other);
+        }
+        put(booking, platform);
+        for (Booking other : displaced) {
+            place(other);
+        }
+        return displaced.size();
+    }
+
+    private int place(Booking booking) {
+        int designated = booking.designated;
+        if (designated != NONE && fits(designated, booking.start, booking.end)) {
+            return put(booking, designated);
+        }
+
+        int best = NONE;
+        long bestPreviousEnd = Long.MIN_VALUE;
+        for (int p = 0; p < platformTrack.length; p++) {
+            if (!fits(p, booking.start, booking.end)) continue;
+            Map.Entry<Long, Booking> previous = schedule.get(p).lowerEntry(booking.start);
+            long previousEnd = previous == null ? Long.MIN_VALUE + 1 : previous.getValue().end;
+            if (best == NONE || previousEnd > bestPreviousEnd) {
+                best = p;
+                bestPreviousEnd = previousEnd;
+            }
+        }
+        if (best != NONE) {
+            return put(booking, best);
+        }
+
+        Step last = augmentingChain(booking);
+        if (last == null) {
+            return NONE;
+        }
+        // Apply from the free end back, so every booking moves into the slot the previous move vacated
+        for (Step step = last; step != null; step = step.previous) {
+            unplace(step.booking);
+            put(step.booking, step.platform);
+        }
+        return booking.platform;
+    }
+
+    /**
+     * Shortest chain of moves that makes room for an unplaced booking, or null. Conflicts are read from the
+     * current plan; that is sound because a chain changes each of its platforms only once.
+     */
+    private Step augmentingChain(Booking booking) {
+        ArrayDeque<Step> queue = new ArrayDeque<>();
+        Set<Booking> visited = new HashSet<>();
+        visited.add(booking);
+        Step found = extend(booking, null, queue, visited);
+        while (found == null && !queue.isEmpty()) {
+            Step step = queue.poll();
+            found = extend(step.evicted(), step, queue, visited);
+        }
+        return found;
+    }
+
+    // A move of the booking into a free slot, or null after queueing every move that evicts one movable booking
+    private Step extend(Booking moving, Step previous, ArrayDeque<Step> queue, Set<Booking> visited) {
+        for (int i = -1; i < platformTrack.length; i++) {
+            int p = i < 0 ? moving.designated : i;
+            if (p == NONE || p == moving.platform || (i >= 0 && p == moving.designated)) continue;
+            if (previous != null && previous.uses(p)) continue;
+
+            if (fits(p, moving.start, moving.end)) {
+                return new Step(moving, p, null, previous);
+            }
+            List<Booking> conflicts = conflicts(p, moving.start, moving.end);
+            if (conflicts.size() == 1 && !conflicts.get(0).fixed && visited.add(conflicts.get(0))) {
+                queue.add(new Step(moving, p, conflicts.get(0), previous));
+            }
+        }
+        return null;
+    }
+
+    private boolean fits(int platform, long start, long end) {
+        TreeMap<Long, Booking> bookedOn = schedule.get(platform);
+        Map.Entry<Long, Booking> before = bookedOn.floorEntry(start);
+        if (before != null && before.getValue().end > start) return false;
+        Long after = bookedOn.higherKey(start);
+        return after == null || after >= end;
+    }
+
+    private List<Booking> conflicts(int platform, long start, long end) {
+        TreeMap<Long, Booking> bookedOn = schedule.get(platform);
+        Long from = bookedOn.floorKey(start);
+        List<Booking> result = new ArrayList<>();
+        for (Booking other : bookedOn.subMap(from == null ? start : from, true, end, false).values()) {
+            if (other.end > start) {
+                result.add(other);
+            }
+        }
+        return result;
+    }
+
+    private int put(Booking booking, int platform) {
+        booking.platform = platform;
+        schedule.get(platform).put(booking.start, booking);
+        return platform;
+    }
+
+    private void unplace(Booking booking) {
+        if (booking.platform != NONE) {
+            schedule.get(booking.platform).remove(booking.start, booking);
+            booking.platform = NONE;
+        }
+    }
+
+    // Runtime state
+
+    public boolean isFree(int platform) {
+        return (free[platform >>> 6] & (1L << platform)) != 0;
+    }
+
+    /** First free platform at or after {@code from}, or {@link #NONE}. */
+    public int nextFree(int from) {
+        if (from >= platformTrack.length) return NONE;
+        int w = from >>> 6;
+        long word = free[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int platform = (w << 6) + Long.numberOfTrailingZeros(word);
+                return platform < platformTrack.length ? platform : NONE;
+            }
+            if (++w == free.length) return NONE;
+            word = free[w];
+        }
+    }
+
+    public void hold(int platform, String trainNumber) {
+        free[platform >>> 6] &= ~(1L << platform);
+        heldBy[platform] = trainNumber;
+    }
+
+    public void release(int platform) {
+        free[platform >>> 6] |= 1L << platform;
+        heldBy[platform] = null;
+    }
+
+    /** Train currently holding the platform, or null. */
+    public String heldBy(int platform) { return heldBy[platform]; }
+}
@@ -0,0 +1,198 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.journal.JournalReader;
+import com.jas777.railops.journal.JournalRecord;
+import com.jas777.railops.journal.JournalType;
+import com.jas777.railops.log.Log;
+import com.jas777.railops.log.Logger;
+import com.jas777.railops.log.Subsystem;
+import com.jas777.railops.model.Signal;
+import com.jas777.railops.model.TimetableEntry;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reconstructs the state of a recorded run at any simulated time from its event journal.
+ * <p>
+ * The simulation is deterministic, so only the inputs that came from outside it are taken from the journal:
+ * switches thrown by the operator, signal changes and trains injected at runtime. They are fed back through the
+ * controller's public API at the second they were recorded, and everything else is recomputed by the same code
+ * that produced the original run.
+ * <p>
+ * On the way forward a {@link SimulationSnapshot} is kept every {@code snapshotInterval} simulated seconds.
+ * Seeking restores the latest snapshot at or before the target and replays only the tail, so scrubbing back and
+ * forth over a part of the day that has been visited once costs at most one interval of simulation.
+ * <p>
+ * Only the latest run in the journal directory is replayed. The timetable comes from the journal itself; the
+ * controller must be freshly built for the same station with the run's starting timetable (see
+ * {@link #readTimetable}), must not be running on its own timer, and should have no journal attached. Runs with
+ * layout edits cannot be replayed, since the edits themselves are not journaled. Not thread-safe.
+ */
+public class ReplayEngine {
+
+    private static final Logger LOG = Log.get(Subsystem.SIMULATION);
+
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 15 * 60;
+
+    private final SimulationController controller;
+    private final CompiledTopology topology;
+    private final List<TimetableEntry> timetable;
+    private final List<JournalRecord> inputs = new ArrayList<>();
+    private final TreeMap<Long, SimulationSnapshot> snapshots = new TreeMap<>();
+    private final long snapshotInterval;
+    private final long startTime;
+    private final long endTime;
+    private long position;
+    private int nextInput = 0;
+
+    public ReplayEngine(SimulationController controller, Path journalDirectory) throws IOException {
+        this(controller, journalDirectory, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the controller's timetable is not the one the run started with
+     * @throws IllegalStateException    if the run cannot be replayed, e.g. because it contains layout edits
+     */
+    public ReplayEngine(SimulationController controller, Path journalDirectory, long snapshotInterval)
+            throws IOException {
+        if (snapshotInterval <= 0) {
+            throw new IllegalArgumentException("Snapshot interval must be positive: " + snapshotInterval);
+        }
+        JournalReader reader = new JournalReader(journalDirectory);
+        List<TimetableEntry> recorded = reader.readTimetable();
+        if (!controller.getTimetable().equals(recorded.subList(0, reader.initialTimetableSize()))) {
+            throw new IllegalArgumentException("Controller was not built with the timetable of the recorded run");
+        }
+        this.controller = controller;
+        this.topology = controller.getTopology();
+        this.timetable = List.copyOf(recorded);
+        this.snapshotInterval = snapshotInterval;
+        this.startTime = controller.getSimClock();
+        this.position = startTime;
+
+        long[] last = {startTime, -1};
+        reader.forEach(record -> {
+            if (record.sequence() != last[1] + 1) {
+                throw new IllegalStateException("Journal is not a single run: sequence " + record.sequence()
+                        + " follows " + last[1]);
+            }
+            if (record.type() == JournalType.LAYOUT_EDIT) {
+                throw new IllegalStateException("Journal has a layout edit at "
+                        + SimulationController.toLocalTime(record.time())
+                        + "; runs with layout edits cannot be replayed");
+            }
+            last[1] = record.sequence();
+            last[0] = Math.max(last[0], record.time());
+            if (isInput(record)) {
+                inputs.add(record);
+            }
+        });
+        this.endTime = last[0];
+
+        applyInputsAt(startTime);
+        snapshots.put(startTime, controller.snapshot());
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Replay loaded: " + (last[1] + 1) + " records, " + inputs.size() + " inputs, "
+                    + SimulationController.toLocalTime(startTime) + " - " + SimulationController.toLocalTime(endTime));
+        }
+    }
+
+    /** Records that came from outside the simulation; everything else is recomputed. */
+    private static boolean isInput(JournalRecord record) {
+        return switch (record.type()) {
+            case SWITCH -> record.a() == 1;
+            case SIGNAL, INJECT -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Bring the controller to the state it had at the given simulated time, after every input recorded at that
+     * second. Times before the start of the journal seek to the start.
+     */
+    public void seek(long time) {
+        long target = Math.max(time, startTime);
+        Map.Entry<Long, SimulationSnapshot> floor = snapshots.floorEntry(target);
+        if (target < position || floor.getKey() > position) {
+            controller.restore(floor.getValue());
+            position = floor.getKey();
+            nextInput = firstInputAfter(position);
+        }
+        rollForward(target);
+    }
+
+    private void rollForward(long target) {
+        while (position < target) {
+            long nextInputTime = nextInput < inputs.size() ? inputs.get(nextInput).time() : Long.MAX_VALUE;
+            long checkpoint = startTime + ((position - startTime) / snapshotInterval + 1) * snapshotInterval;
+            long stop = Math.min(target, Math.min(nextInputTime, checkpoint));
+            controller.advanceTo(stop);
+            position = stop;
+            applyInputsAt(position);
+            if (position == checkpoint && !snapshots.containsKey(checkpoint)) {
+                snapshots.put(checkpoint, controller.snapshot());
+            }
+        }
+    }
+
+    private void applyInputsAt(long time) {
+        while (nextInput < inputs.size() && inputs.get(nextInput).time() <= time) {
+            apply(inputs.get(nextInput++));
+        }
+    }
+
+    private void apply(JournalRecord record) {
+        switch (record.type()) {
+            case SWITCH -> controller.setSwitchState(topology.switchId(record.subject()),
+                    record.aux() == CompiledTopology.STATE_SIDE ? "SIDE" : "MAIN");
+            case SIGNAL -> {
+                Signal.SignalAspect aspect = Signal.SignalAspect.fromCode(record.aux());
+                if (record.subject() != CompiledTopology.NONE && aspect != null) {
+                    controller.setSignalAspect(topology.nodeId(record.subject()), aspect);
+                }
+            }
+            case INJECT -> {
+                if (record.a() < 0 || record.a() >= timetable.size()) {
+                    throw new IllegalStateException("Journal injects timetable entry " + record.a()
+                            + ", but the timetable has " + timetable.size());
+                }
+                controller.injectTrain(timetable.get(record.a()), record.b());
+            }
+            default -> throw new IllegalArgumentException("Not an input record: " + record.type());
+        }
+    }
+
+    /**
+     * The timetable the latest run in a journal directory started with, to build the controller for replay.
+     */
+    public static List<TimetableEntry> readTimetable(Path journalDirectory) throws IOException {
+        JournalReader reader = new JournalReader(journalDirectory);
+        return List.copyOf(reader.readTimetable().subList(0, reader.initialTimetableSize()));
+    }
+
+    private int firstInputAfter(long time) {
+        int low = 0;
+        int high = inputs.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (inputs.get(mid).time() <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public SimulationController getController() { return controller; }
+    public long getStartTime() { return startTime; }
+    public long getEndTime() { return endTime; }
+    public long getPosition() { return position; }
+    public int getInputCount() { return inputs.size(); }
+    public int getSnapshotCount() { return snapshots.size(); }
+}
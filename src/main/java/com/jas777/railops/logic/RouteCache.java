@@ -0,0 +1,190 @@
+package com.jas777.railops.logic;
+
+import java.util.*;
+
+/**
+ * Memoizes routes per (start, target) pair. Entries are keyed by the positions of only those switches that lie
+ * on a candidate route between the two nodes, so throwing an unrelated switch never causes a miss. Since the
+ * positions are part of the key, a thrown switch never makes an entry stale and nothing is dropped: throwing a
+ * switch back and forth between two routes hits the entries cached for both positions.
+ * Not thread-safe; every {@link PathFinder} owns its own cache.
+ */
+public class RouteCache {
+
+    /** Cached marker for "no route exists for these switch positions". */
+    static final int[] NO_ROUTE = new int[0];
+
+    private CompiledTopology topology;
+    private int[] reverseOffsets;
+    private int[] reverseSources;
+    private final Map<Long, PairEntry> pairs = new HashMap<>();
+
+    private long hits = 0;
+    private long misses = 0;
+
+    public RouteCache(CompiledTopology topology) {
+        this.topology = topology;
+        buildReverseAdjacency();
+    }
+
+    // Reverse adjacency, used to find which nodes can still reach the target
+    private void buildReverseAdjacency() {
+        int nodeCount = topology.nodeCount();
+        this.reverseOffsets = new int[nodeCount + 1];
+        this.reverseSources = new int[topology.edgeCount()];
+        for (int edge = 0; edge < topology.edgeCount(); edge++) {
+            reverseOffsets[topology.edgeTarget(edge) + 1]++;
+        }
+        for (int n = 0; n < nodeCount; n++) {
+            reverseOffsets[n + 1] += reverseOffsets[n];
+        }
+        int[] fill = Arrays.copyOf(reverseOffsets, nodeCount);
+        for (int n = 0; n < nodeCount; n++) {
+            for (int edge = topology.firstEdge(n); edge < topology.endEdge(n); edge++) {
+                reverseSources[fill[topology.edgeTarget(edge)]++] = n;
+            }
+        }
+    }
+
+    /**
+     * Cached route for the current switch positions, {@link #NO_ROUTE} if it is known that none exists,
+     * or null on a miss.
+     */
+    int[] get(int startNode, int targetNode, SwitchPositions positions) {
+        PairEntry pair = pairs.get(pairKey(startNode, targetNode));
+        int[] route = pair == null ? null : pair.routes.get(pair.signature(positions));
+        if (route == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return route;
+    }
+
+    void put(int startNode, int targetNode, SwitchPositions positions, int[] route) {
+        PairEntry pair = pairs.computeIfAbsent(pairKey(startNode, targetNode), k -> createPair(startNode, targetNode));
+        pair.routes.put(pair.signature(positions), route == null ? NO_ROUTE : route);
+    }
+
+    /**
+     * Move the cache onto a patched topology whose indices extend the current ones. A cached route can only
+     * change if its start node reaches one of the changed nodes, so only pairs starting at such a node are
+     * dropped; the rest stay valid as they are.
+     *
+     * @return number of pairs dropped
+     */
+    public int update(CompiledTopology next, int[] changedNodes) {
+        int[] sources = Arrays.stream(changedNodes).filter(n -> n < topology.nodeCount()).toArray();
+        boolean[] affected = reachable(sources, topology.nodeCount(), true);
+
+        int dropped = 0;
+        for (Iterator<Long> it = pairs.keySet().iterator(); it.hasNext(); ) {
+            if (affected[(int) (it.next() >>> 32)]) {
+                it.remove();
+                dropped++;
+            }
+        }
+
+        this.topology = next;
+        buildReverseAdjacency();
+        return dropped;
+    }
+
+    public void clear() {
+        pairs.clear();
+    }
+
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public void resetCounters() {
+        hits = 0;
+        misses = 0;
+    }
+
+    private PairEntry createPair(int startNode, int targetNode) {
+        int nodeCount = topology.nodeCount();
+        boolean[] fromStart = reachable(new int[]{startNode}, nodeCount, false);
+        boolean[] toTarget = reachable(new int[]{targetNode}, nodeCount, true);
+
+        // A switch matters if one of its conditional edges can sit on a start -> target route
+        BitSet relevant = new BitSet(topology.switchCount());
+        for (int n = 0; n < nodeCount; n++) {
+            if (!fromStart[n]) continue;
+            for (int edge = topology.firstEdge(n); edge < topology.endEdge(n); edge++) {
+                int sw = topology.edgeSwitch(edge);
+                if (sw != CompiledTopology.NONE && toTarget[topology.edgeTarget(edge)]) {
+                    relevant.set(sw);
+                }
+            }
+        }
+
+        return new PairEntry(relevant.stream().toArray());
+    }
+
+    private boolean[] reachable(int[] from, int nodeCount, boolean reverse) {
+        boolean[] seen = new boolean[nodeCount];
+        int[] stack = new int[nodeCount];
+        int size = 0;
+        for (int node : from) {
+            if (!seen[node]) {
+                seen[node] = true;
+                stack[size++] = node;
+            }
+        }
+
+        while (size > 0) {
+            int node = stack[--size];
+            int first = reverse ? reverseOffsets[node] : topology.firstEdge(node);
+            int end = reverse ? reverseOffsets[node + 1] : topology.endEdge(node);
+            for (int i = first; i < end; i++) {
+                int next = reverse ? reverseSources[i] : topology.edgeTarget(i);
+                if (!seen[next]) {
+                    seen[next] = true;
+                    stack[size++] = next;
+                }
+            }
+        }
+        return seen;
+    }
+
+    private static long pairKey(int startNode, int targetNode) {
+        return ((long) startNode << 32) | (targetNode & 0xFFFFFFFFL);
+    }
+
+    private static final class PairEntry {
+        final int[] switches;
+        final Map<Signature, int[]> routes = new HashMap<>();
+
+        PairEntry(int[] switches) {
+            this.switches = switches;
+        }
+
+        Signature signature(SwitchPositions positions) {
+            long[] bits = new long[(switches.length + 63) >>> 6];
+            for (int i = 0; i < switches.length; i++) {
+                if (positions.isSide(switches[i])) {
+                    bits[i >>> 6] |= 1L << i;
+                }
+            }
+            return new Signature(bits);
+        }
+    }
+
+    private record Signature(long[] bits) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Signature other && Arrays.equals(bits, other.bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bits);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.jas777.railops.logic;
+
+import java.util.Arrays;
+
+/**
+ * The routes of an {@link InterlockingTable} one simulation has locked, and the switches they hold. The table
+ * itself is shared; every simulation keeps its own locks.
+ * <p>
+ * Locking a route is a single pass over the words of its conflict set against the locked routes, and either
+ * reserves the whole route or nothing.
+ */
+public final class RouteLocks {
+
+    private InterlockingTable table;
+    private long[] lockedRoutes;
+    private long[] lockedSwitches;
+
+    public RouteLocks(InterlockingTable table) {
+        this.table = table;
+        this.lockedRoutes = new long[InterlockingTable.words(table.routeCount())];
+        this.lockedSwitches = new long[InterlockingTable.words(table.topology().switchCount())];
+    }
+
+    public InterlockingTable table() { return table; }
+
+    /** True if no locked route conflicts with this one. */
+    public boolean isAvailable(int route) {
+        long[] conflict = table.conflictWords(route);
+        for (int w = 0; w < lockedRoutes.length; w++) {
+            if ((conflict[w] & lockedRoutes[w]) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reserve a route and its switches if nothing conflicting is locked. All or nothing. Throwing the switches
+     * into position is up to the caller.
+     */
+    public boolean lock(int route) {
+        if (!isAvailable(route)) return false;
+        lockedRoutes[route >>> 6] |= 1L << route;
+        long[] mask = table.switchMaskWords(route);
+        for (int w = 0; w < mask.length; w++) {
+            lockedSwitches[w] |= mask[w];
+        }
+        return true;
+    }
+
+    public void release(int route) {
+        if (!isLocked(route)) return;
+        lockedRoutes[route >>> 6] &= ~(1L << route);
+        long[] mask = table.switchMaskWords(route);
+        for (int w = 0; w < mask.length; w++) {
+            lockedSwitches[w] &= ~mask[w];
+        }
+    }
+
+    public boolean isLocked(int route) {
+        return (lockedRoutes[route >>> 6] & (1L << route)) != 0;
+    }
+
+    /** A switch held by a locked route may not be thrown. */
+    public boolean isSwitchLocked(int sw) {
+        return (lockedSwitches[sw >>> 6] & (1L << sw)) != 0;
+    }
+
+    public void releaseAll() {
+        Arrays.fill(lockedRoutes, 0L);
+        Arrays.fill(lockedSwitches, 0L);
+    }
+
+    /** Copy of the locked-route bitset, e.g. for a snapshot. */
+    public long[] lockedRouteWords() {
+        return lockedRoutes.clone();
+    }
+
+    /** Lock exactly the routes in a bitset taken by {@link #lockedRouteWords()}, along with their switches. */
+    public void restore(long[] routes) {
+        releaseAll();
+        int routeCount = table.routeCount();
+        for (int w = 0; w < lockedRoutes.length && w < routes.length; w++) {
+            long word = routes[w];
+            while (word != 0) {
+                int route = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                if (route >= routeCount) break;
+                lockedRoutes[route >>> 6] |= 1L << route;
+                long[] mask = table.switchMaskWords(route);
+                for (int i = 0; i < mask.length; i++) {
+                    lockedSwitches[i] |= mask[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Follow the table to one made from it by {@link InterlockingTable#update}. Route indices are stable, so
+     * every lock carries over.
+     */
+    void moveTo(InterlockingTable next) {
+        long[] routes = lockedRoutes;
+        table = next;
+        lockedRoutes = new long[InterlockingTable.words(next.routeCount())];
+        lockedSwitches = new long[InterlockingTable.words(next.topology().switchCount())];
+        restore(routes);
+    }
+}
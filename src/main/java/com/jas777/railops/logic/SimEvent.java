@@ -0,0 +1,44 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.TimetableEntry;
+
+/**
+ * A timestamped state transition processed by the {@link SimulationController} event loop.
+ * Time is in simulated seconds since midnight of the first simulated day.
+ * {@code train} is a {@link TrainStore} slot, or {@link TrainStore#NONE} for events that are not about a train.
+ */
+public record SimEvent(long time, long sequence, Type type, int train, String nodeId, TimetableEntry entry) {
+
+    /** The code is what checkpoints write to disk, so existing codes must never change. */
+    public enum Type {
+        SPAWN(1),           // Next entries of the spawn index are due
+        RETRY_SPAWNS(2),    // Something was released, retry spawns that could not be placed
+        ENTER(3),           // Waiting train checks the entry signal
+        MOVE(4),            // Train advances to the next node of its path
+        DEPART(5),          // Train leaves the platform
+        CLEAR(6),           // Departed train releases its nodes and platform
+        SIGNAL_CLEAR(7),    // Signal protecting nodeId no longer shows RED
+        INJECT(8);          // Train handed over from another station becomes due to spawn
+
+        private static final Type[] BY_CODE = new Type[16];
+
+        static {
+            for (Type type : values()) {
+                BY_CODE[type.code] = type;
+            }
+        }
+
+        private final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        public byte code() { return code; }
+
+        /** Type for a code read from disk, or null for unknown codes. */
+        public static Type fromCode(byte code) {
+            return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        }
+    }
+}
@@ -1,46 +1,104 @@
 package com.jas777.railops.logic;
 
+import com.jas777.railops.journal.EventJournal;
+import com.jas777.railops.journal.JournalType;
 import com.jas777.railops.model.*;
-import javafx.animation.AnimationTimer;
-import javafx.beans.property.ObjectProperty;
-import javafx.beans.property.SimpleObjectProperty;
+import com.jas777.railops.log.Log;
+import com.jas777.railops.log.Logger;
+import com.jas777.railops.log.Subsystem;
+import com.jas777.railops.util.IntList;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 public class SimulationController {
 
-    private final ObjectProperty<LocalTime> currentTime = new SimpleObjectProperty<>(LocalTime.of(6, 0));
+    private static final Logger LOG = Log.get(Subsystem.SIMULATION);
+
+    static final long START_OF_DAY = LocalTime.of(6, 0).toSecondOfDay();
+    private static final long SECONDS_PER_DAY = 24 * 3600;
+
+    // Read by views through getCurrentTime(); the simulation can be stepped from any thread
+    private volatile long simClock = START_OF_DAY;
+    private final List<SimulationListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<TrainExitListener> exitListeners = new CopyOnWriteArrayList<>();
     private final List<TimetableEntry> timetable;
-    private final List<Train> activeTrains;
-    private final Set<String> occupiedNodes;
-    private final Map<String, String> platformAssignments;
-    private final StationConfig config;
-    private final Map<String, List<TrackLink>> logicalGraph;
+    private final Map<TimetableEntry, Integer> timetableIndex = new IdentityHashMap<>();
+    private final Map<Integer, Long> injectedArrivals = new HashMap<>(); // By timetable index, in sim seconds
+    private final TrainStore trains;
+    private final Map<String, Integer> slotByTrainNumber = new HashMap<>();
+    private final OccupancyMap occupancy;
+    private final PlatformAllocator platforms;
+    private StationConfig config; // The shared station layout until the first layout edit
+    private volatile CompiledTopology topology;
     private final PathFinder pathFinder;
     private final Map<String, SwitchState> switchStates;
+    private final SwitchPositions switchPositions;
+    private final RouteLocks routeLocks;
     private final Map<String, SignalState> signalStates;
-
-    private AnimationTimer simulationTimer;
-    private long lastUpdate = 0;
-    private double timeAcceleration = 60.0;
-    private double accumulatedTime = 0.0;
+    private SignalState[] signalByNode;
+    private IncrementalGraph layout; // Created on the first layout edit
+
+    // Discrete-event core: the clock jumps from one event to the next
+    private final EventQueue events = new EventQueue();
+    private final SpawnIndex spawnIndex;
+    private final Set<String> spawnedTrains = new HashSet<>();
+    private final List<TimetableEntry> pendingSpawns = new ArrayList<>();
+    private final Map<Integer, IntList> signalWaiters = new HashMap<>();
+    private final Map<Integer, IntList> nodeWaiters = new HashMap<>();
+    private final MovementBatch movement;
+    private boolean spawnRetryScheduled = false;
+    private EventJournal journal; // Null unless state changes are being journaled
 
     // Movement simulation
-    private static final double MOVEMENT_INTERVAL = 2.0; // seconds between movements
-    private double movementTimer = 0.0;
-
+    private static final long MOVEMENT_INTERVAL = 2; // seconds between movements
+    private static final long SPAWN_LEAD = 5 * 60;    // spawn window opens this long before arrival
+    private static final long SPAWN_GRACE = 10 * 60;  // and closes this long after it
+    private static final long CLEARANCE = 2 * MOVEMENT_INTERVAL + 1; // departure until the platform is clear
+
+    /**
+     * Compile a station for this controller alone. Controllers that run the same layout should share one
+     * {@link CompiledStation} instead.
+     */
     public SimulationController(StationConfig config, Map<String, List<TrackLink>> logicalGraph,
                                 Map<String, SwitchState> switchStates) {
+        this(CompiledStation.of(config, CompiledTopology.compile(config, logicalGraph)), switchStates);
+    }
+
+    public SimulationController(CompiledStation station, Map<String, SwitchState> switchStates) {
+        this(station, switchStates, createDefaultTimetable(station.getConfig()));
+    }
+
+    /**
+     * Run the given timetable instead of the built-in one. The list is copied. The station is only read, so it
+     * can be shared with other controllers.
+     */
+    public SimulationController(CompiledStation station, Map<String, SwitchState> switchStates,
+                                List<TimetableEntry> timetable) {
+        StationConfig config = station.getConfig();
+        CompiledTopology topology = station.getTopology();
+        InterlockingTable interlocking = station.getInterlocking();
+        if (interlocking.topology() != topology) {
+            throw new IllegalArgumentException("Interlocking was compiled for a different topology");
+        }
         this.config = config;
-        this.logicalGraph = logicalGraph;
+        this.topology = topology;
         this.switchStates = switchStates;
-        this.timetable = new ArrayList<>();
-        this.activeTrains = new ArrayList<>();
-        this.occupiedNodes = new HashSet<>();
-        this.platformAssignments = new HashMap<>();
-        this.pathFinder = new PathFinder(logicalGraph);
+        this.timetable = new ArrayList<>(timetable);
+        for (int i = 0; i < this.timetable.size(); i++) {
+            timetableIndex.putIfAbsent(this.timetable.get(i), i);
+        }
+        this.trains = new TrainStore();
+        this.platforms = station.newPlatformAllocator();
+        this.occupancy = new OccupancyMap(topology);
+        this.pathFinder = new PathFinder(topology);
+        this.switchPositions = SwitchPositions.of(topology, switchStates);
+        this.routeLocks = new RouteLocks(interlocking);
         this.signalStates = new HashMap<>();
 
         // Initialize signal states
@@ -49,11 +107,38 @@ public class SimulationController {
                 signalStates.put(signal.protectedNodeId(), new SignalState(signal.id(), signal.currentAspect()));
             }
         }
+        this.signalByNode = indexSignals(topology);
+
+        this.movement = new MovementBatch(trains, occupancy, signalByNode, topology.nodeCount());
+
+        // Spawn attempts start one second after the window opens, as with the old per-second polling
+        this.spawnIndex = new SpawnIndex(timetable, e -> toSimSeconds(e.scheduledArrival()) - SPAWN_LEAD + 1);
+        scheduleNextSpawn();
+
+        // Plan platforms for the whole horizon, in start order
+        List<TimetableEntry> byStart = new ArrayList<>(this.timetable);
+        byStart.sort(Comparator.comparingLong(e -> toSimSeconds(e.scheduledArrival())));
+        for (TimetableEntry entry : byStart) {
+            bookPlatform(entry);
+        }
+    }
 
-        loadTimetable();
+    private SignalState[] indexSignals(CompiledTopology topology) {
+        SignalState[] byNode = new SignalState[topology.nodeCount()];
+        for (Map.Entry<String, SignalState> e : signalStates.entrySet()) {
+            int node = topology.nodeIndex(e.getKey());
+            if (node != CompiledTopology.NONE) {
+                byNode[node] = e.getValue();
+            }
+        }
+        return byNode;
     }
 
-    private void loadTimetable() {
+    /**
+     * The demo timetable: two trains entering at the first entrance track.
+     */
+    public static List<TimetableEntry> createDefaultTimetable(StationConfig config) {
+        List<TimetableEntry> timetable = new ArrayList<>();
         List<Track> entranceTracks = config.getTracks().stream()
                 .filter(t -> t.entryNodeId() != null)
                 .filter(t -> "MAIN_LINE".equals(t.type()) || "PLATFORM_TRACK".equals(t.type()))
@@ -63,9 +148,11 @@ public class SimulationController {
                 .filter(t -> "PLATFORM_TRACK".equals(t.type()))
                 .collect(Collectors.toList());
 
-        System.out.println("=== Timetable Setup ===");
-        System.out.println("Entrance tracks: " + entranceTracks.stream().map(Track::id).collect(Collectors.joining(", ")));
-        System.out.println("Platform tracks: " + platformTracks.stream().map(Track::id).collect(Collectors.joining(", ")));
+        if (LOG.isInfoEnabled()) {
+            LOG.info("=== Timetable Setup ===");
+            LOG.info("Entrance tracks: " + entranceTracks.stream().map(Track::id).collect(Collectors.joining(", ")));
+            LOG.info("Platform tracks: " + platformTracks.stream().map(Track::id).collect(Collectors.joining(", ")));
+        }
 
         if (!entranceTracks.isEmpty() && !platformTracks.isEmpty()) {
             String firstEntrance = entranceTracks.get(0).entryNodeId();
@@ -75,244 +162,821 @@ public class SimulationController {
             timetable.add(new TimetableEntry("IC 1002", "Gdansk", "Wroclaw",
                     LocalTime.of(6, 30), LocalTime.of(6, 40), "2", firstEntrance));
 
-            System.out.println("Created timetable with " + timetable.size() + " trains");
+            if (LOG.isInfoEnabled()) {
+                LOG.info("Created timetable with " + timetable.size() + " trains");
+            }
         }
+        return timetable;
     }
 
-    public void start() {
-        simulationTimer = new AnimationTimer() {
-            @Override
-            public void handle(long now) {
-                if (lastUpdate == 0) {
-                    lastUpdate = now;
-                    return;
-                }
-
-                long elapsed = now - lastUpdate;
-                double elapsedSeconds = elapsed / 1_000_000_000.0;
+    /**
+     * Only the head of the spawn index is ever in the event queue; it is rescheduled as the cursor moves.
+     */
+    private void scheduleNextSpawn() {
+        long next = spawnIndex.nextSpawnTime();
+        if (next != Long.MAX_VALUE) {
+            events.schedule(next, SimEvent.Type.SPAWN);
+        }
+    }
 
-                accumulatedTime += elapsedSeconds * timeAcceleration;
+    /**
+     * Map a time of day onto the simulated timeline. Times before the start of the simulated day belong to the next day.
+     */
+    static long toSimSeconds(LocalTime time) {
+        long secondOfDay = time.toSecondOfDay();
+        return secondOfDay < START_OF_DAY ? secondOfDay + SECONDS_PER_DAY : secondOfDay;
+    }
 
-                while (accumulatedTime >= 1.0) {
-                    updateSimulation();
-                    accumulatedTime -= 1.0;
-                }
+    static LocalTime toLocalTime(long simSeconds) {
+        return LocalTime.ofSecondOfDay(simSeconds % SECONDS_PER_DAY);
+    }
 
-                lastUpdate = now;
-            }
-        };
-        simulationTimer.start();
+    /**
+     * Simulated arrival time of an entry. Injected trains carry their own, which may lie on a later day;
+     * timetabled ones map their time of day through {@link #toSimSeconds}.
+     */
+    private long arrivalSeconds(TimetableEntry entry) {
+        Long injected = injectedArrival(entry);
+        return injected != null ? injected : toSimSeconds(entry.scheduledArrival());
     }
 
-    public void stop() {
-        if (simulationTimer != null) {
-            simulationTimer.stop();
+    private long departureSeconds(TimetableEntry entry) {
+        Long injected = injectedArrival(entry);
+        if (injected == null) {
+            return toSimSeconds(entry.scheduledDeparture());
         }
+        long dwell = entry.scheduledDeparture().toSecondOfDay() - entry.scheduledArrival().toSecondOfDay();
+        return injected + Math.floorMod(dwell, SECONDS_PER_DAY);
     }
 
-    private void updateSimulation() {
-        currentTime.set(currentTime.get().plusSeconds(1));
-        spawnScheduledTrains();
+    private Long injectedArrival(TimetableEntry entry) {
+        if (injectedArrivals.isEmpty()) return null;
+        Integer index = timetableIndex.get(entry);
+        return index == null ? null : injectedArrivals.get(index);
+    }
 
-        movementTimer += 1.0;
-        if (movementTimer >= MOVEMENT_INTERVAL) {
-            updateActiveTrains();
-            movementTimer = 0.0;
-        }
+    /**
+     * Advance the simulation by one simulated second.
+     * Safe to call from any thread.
+     */
+    public void step() {
+        advanceTo(simClock + 1);
     }
 
-    private void spawnScheduledTrains() {
-        LocalTime now = currentTime.get();
+    /**
+     * Process every event up to and including the given simulated time, then set the clock to it.
+     * Work done is proportional to the number of events, not to the length of the interval.
+     */
+    public void advanceTo(long targetTime) {
+        synchronized (this) {
+            while (events.peekTime() <= targetTime) {
+                SimEvent event = events.poll();
+                simClock = Math.max(simClock, event.time());
+                dispatch(event);
+            }
+            simClock = Math.max(simClock, targetTime);
+        }
+        LocalTime time = getCurrentTime();
+        for (SimulationListener listener : listeners) {
+            listener.onStep(time);
+        }
+    }
 
-        for (TimetableEntry entry : timetable) {
-            LocalTime spawnTime = entry.scheduledArrival().minusMinutes(5);
+    /**
+     * Simulated time of the next pending event, or {@link Long#MAX_VALUE} if nothing is scheduled.
+     */
+    public synchronized long nextEventTime() {
+        return events.peekTime();
+    }
 
-            if (now.isAfter(spawnTime) && now.isBefore(entry.scheduledArrival().plusMinutes(10))) {
-                boolean alreadySpawned = activeTrains.stream()
-                        .anyMatch(t -> t.getTrainNumber().equals(entry.trainNumber()));
+    public long getSimClock() {
+        return simClock;
+    }
 
-                if (!alreadySpawned) {
-                    attemptSpawnTrain(entry);
+    private void dispatch(SimEvent event) {
+        switch (event.type()) {
+            case SPAWN -> spawnDueTrains();
+            case RETRY_SPAWNS -> retryPendingSpawns();
+            case ENTER -> enterTrain(event.train());
+            case MOVE -> moveTrains(event);
+            case DEPART -> departTrain(event.train());
+            case CLEAR -> clearTrain(event.train());
+            case SIGNAL_CLEAR -> wakeAll(signalWaiters.remove(topology.nodeIndex(event.nodeId())));
+            case INJECT -> {
+                if (!trySpawn(event.entry())) {
+                    pendingSpawns.add(event.entry());
                 }
             }
         }
     }
 
-    private void attemptSpawnTrain(TimetableEntry entry) {
+    private void spawnDueTrains() {
+        TimetableEntry entry;
+        while ((entry = spawnIndex.pollDue(simClock)) != null) {
+            if (!trySpawn(entry)) {
+                pendingSpawns.add(entry);
+            }
+        }
+        scheduleNextSpawn();
+    }
+
+    /**
+     * Attempt to spawn an entry if it is still inside its spawn window.
+     * Returns true when the entry needs no further attempts.
+     */
+    private boolean trySpawn(TimetableEntry entry) {
+        if (simClock >= arrivalSeconds(entry) + SPAWN_GRACE) {
+            if (!spawnedTrains.contains(entry.trainNumber())) {
+                platforms.cancel(entry.trainNumber());
+            }
+            return true;
+        }
+
+        return spawnedTrains.contains(entry.trainNumber()) || attemptSpawnTrain(entry);
+    }
+
+    private void retryPendingSpawns() {
+        spawnRetryScheduled = false;
+        pendingSpawns.removeIf(this::trySpawn);
+    }
+
+    /**
+     * Something was released (node, platform, signal, switch); give blocked spawns another chance.
+     */
+    private void scheduleSpawnRetry() {
+        if (!pendingSpawns.isEmpty() && !spawnRetryScheduled) {
+            spawnRetryScheduled = true;
+            events.schedule(simClock, SimEvent.Type.RETRY_SPAWNS);
+        }
+    }
+
+    private boolean attemptSpawnTrain(TimetableEntry entry) {
         String entryNode = entry.entryNodeId();
 
-        System.out.println("\n=== Attempting to spawn train " + entry.trainNumber() + " ===");
-        System.out.println("Entry node: " + entryNode);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Attempting to spawn train " + entry.trainNumber() + " at " + entryNode);
+        }
 
-        if (occupiedNodes.contains(entryNode)) {
-            System.out.println("  Entry node occupied, delaying spawn");
-            return;
+        if (occupancy.isNodeOccupied(topology.nodeIndex(entryNode))) {
+            LOG.debug("  Entry node occupied, delaying spawn");
+            return false;
         }
 
         // Check signal at entry
-        SignalState entrySignal = signalStates.get(entryNode);
+        SignalState entrySignal = signalAt(topology.nodeIndex(entryNode));
         if (entrySignal != null && entrySignal.getAspect() == Signal.SignalAspect.RED) {
-            System.out.println("  Entry signal is RED, waiting");
-            return;
+            LOG.debug("  Entry signal is RED, waiting");
+            return false;
         }
 
-        List<Track> platformTracks = config.getTracks().stream()
-                .filter(t -> "PLATFORM_TRACK".equals(t.type()))
-                .collect(Collectors.toList());
+        if (platforms.platformCount() == 0) {
+            LOG.debug("  No platform tracks found");
+            return false;
+        }
 
-        if (platformTracks.isEmpty()) {
-            System.out.println("  No platform tracks found");
-            return;
+        // Planned platform first, then the designated one, then any free platform whose interlocking route can be
+        // set. Platforms the table has no route for fall back to the pathfinder over the current switch positions.
+        int entryIndex = topology.nodeIndex(entryNode);
+        int platform = PlatformAllocator.NONE;
+        int planned = platforms.plannedPlatform(entry.trainNumber());
+        int designated = platforms.resolveDesignation(entry.designatedPlatform());
+        if (planned != PlatformAllocator.NONE && isPlatformUsable(planned, entryIndex)) {
+            platform = planned;
+        } else if (designated != PlatformAllocator.NONE && isPlatformUsable(designated, entryIndex)) {
+            platform = designated;
+        } else {
+            for (int p = platforms.nextFree(0); p != PlatformAllocator.NONE; p = platforms.nextFree(p + 1)) {
+                if (isPlatformUsable(p, entryIndex)) {
+                    platform = p;
+                    break;
+                }
+            }
+        }
+
+        if (platform == PlatformAllocator.NONE) {
+            LOG.debug("  No available platforms or routes");
+            return false;
+        }
+        int platformTrack = platforms.platformTrack(platform);
+        int lockedRoute = routeLocks.table().routeFor(entryIndex, platformTrack);
+
+        int[] route;
+        if (lockedRoute != InterlockingTable.NONE) {
+            routeLocks.lock(lockedRoute);
+            setRouteSwitches(lockedRoute);
+            route = routeLocks.table().nodes(lockedRoute);
+        } else {
+            route = pathFinder.findPath(entryIndex, topology.trackEntryNode(platformTrack), switchPositions);
         }
 
-        Track targetPlatform = null;
-        for (Track track : platformTracks) {
-            String platformNode = track.entryNodeId();
-            if (!occupiedNodes.contains(platformNode) &&
-                    !platformAssignments.containsValue(track.id())) {
-                targetPlatform = track;
-                break;
+        if (route != null && route.length > 0) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("✓ Path found: " + toNodeIds(route));
+            }
+            int train = trains.allocate(entry, platformTrack, trains.internRoute(route),
+                    departureSeconds(entry));
+            trains.setStatus(train, Train.TrainStatus.WAITING_ENTRY);
+            trains.setLockedRoute(train, lockedRoute);
+            platforms.hold(platform, entry.trainNumber());
+            // Pin the booking to where and when the train actually is; bookings it now overlaps move
+            platforms.repair(entry.trainNumber(), platform, simClock, platformEnd(entry));
+            slotByTrainNumber.put(entry.trainNumber(), train);
+            spawnedTrains.add(entry.trainNumber());
+            if (journal != null) {
+                journal.append(simClock, JournalType.SPAWN, train, timetableIndex.getOrDefault(entry, -1),
+                        platformTrack);
+                if (lockedRoute != InterlockingTable.NONE) {
+                    journal.append(simClock, JournalType.ROUTE_LOCK, lockedRoute, train, 0);
+                }
+            }
+            LOG.debug("✓ Train ready to enter!");
+            events.schedule(simClock + MOVEMENT_INTERVAL, SimEvent.Type.ENTER, train);
+            return true;
+        } else {
+            LOG.debug("✗ No path found to platform");
+            if (lockedRoute != InterlockingTable.NONE) {
+                routeLocks.release(lockedRoute);
             }
+            return false;
         }
+    }
 
-        if (targetPlatform == null) {
-            System.out.println("  No available platforms");
-            return;
+    private boolean isPlatformUsable(int platform, int entryIndex) {
+        int track = platforms.platformTrack(platform);
+        if (!platforms.isFree(platform) || occupancy.isNodeOccupied(topology.trackEntryNode(track))) {
+            return false;
         }
+        int route = routeLocks.table().routeFor(entryIndex, track);
+        return route == InterlockingTable.NONE || routeLocks.isAvailable(route);
+    }
 
-        Train train = new Train(
-                entry.trainNumber(),
-                entry.fromStation(),
-                entry.toStation(),
-                entry.scheduledArrival(),
-                entry.scheduledDeparture(),
-                targetPlatform.id()
-        );
+    private void bookPlatform(TimetableEntry entry) {
+        platforms.book(entry.trainNumber(), entry.designatedPlatform(),
+                arrivalSeconds(entry) - SPAWN_LEAD, platformEnd(entry));
+    }
+
+    /** When the platform is expected to be clear again after a train's scheduled departure. */
+    private long platformEnd(TimetableEntry entry) {
+        return Math.max(arrivalSeconds(entry), departureSeconds(entry)) + 1
+                + CLEARANCE;
+    }
 
-        train.setStatus(Train.TrainStatus.WAITING_ENTRY);
-        train.setCurrentNodeId(entryNode);
+    /**
+     * Throw the switches of a freshly locked route into position.
+     */
+    private void setRouteSwitches(int route) {
+        for (int sw = 0; sw < topology.switchCount(); sw++) {
+            if (routeLocks.table().requiresSwitch(route, sw)) {
+                throwSwitch(sw, routeLocks.table().requiredState(route, sw), false);
+            }
+        }
+    }
 
-        Map<String, String> currentSwitchStates = new HashMap<>();
-        for (Map.Entry<String, SwitchState> e : switchStates.entrySet()) {
-            currentSwitchStates.put(e.getKey(), e.getValue().getState());
+    private boolean throwSwitch(int sw, byte state, boolean byOperator) {
+        if (!switchPositions.set(sw, state)) {
+            return false;
         }
+        if (journal != null) {
+            journal.append(simClock, JournalType.SWITCH, state, sw, byOperator ? 1 : 0, 0);
+        }
+        SwitchState switchState = switchStates.get(topology.switchId(sw));
+        if (switchState != null) {
+            switchState.setState(state == CompiledTopology.STATE_SIDE ? "SIDE" : "MAIN");
+        }
+        return true;
+    }
 
-        String platformNodeId = targetPlatform.entryNodeId();
-        List<String> path = pathFinder.findPath(entryNode, platformNodeId, currentSwitchStates);
+    /**
+     * Give up the interlocking route a train holds, e.g. once it is at the platform.
+     */
+    private void releaseRoute(int train) {
+        int route = trains.lockedRoute(train);
+        if (route != InterlockingTable.NONE) {
+            routeLocks.release(route);
+            trains.setLockedRoute(train, InterlockingTable.NONE);
+            if (journal != null) {
+                journal.append(simClock, JournalType.ROUTE_RELEASE, route, train, 0);
+            }
+            scheduleSpawnRetry();
+        }
+    }
 
-        if (path != null && !path.isEmpty()) {
-            System.out.println("✓ Path found: " + path);
-            train.setCurrentPath(new ArrayList<>(path));
-            train.setCurrentNodeId(path.get(0));
-            platformAssignments.put(targetPlatform.id(), train.getTrainNumber());
-            activeTrains.add(train);
-            System.out.println("✓ Train ready to enter!");
+    private List<String> toNodeIds(int[] route) {
+        List<String> path = new ArrayList<>(route.length);
+        for (int node : route) {
+            path.add(topology.nodeId(node));
+        }
+        return path;
+    }
+
+    private void enterTrain(int train) {
+        // Check if signal permits entry
+        int currentNode = trains.node(train);
+        SignalState signal = signalAt(currentNode);
+
+        if (occupancy.isNodeOccupied(currentNode)) {
+            waitFor(nodeWaiters, currentNode, train);
+        } else if (signal == null || signal.getAspect() != Signal.SignalAspect.RED) {
+            // Signal permits, start moving
+            trains.setStatus(train, Train.TrainStatus.ENTERING);
+            occupancy.occupy(currentNode);
+            if (journal != null) {
+                journal.append(simClock, JournalType.ENTER, train, currentNode, 0);
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Train " + trains.trainNumber(train) + " entering at " + topology.nodeId(currentNode));
+            }
+            events.schedule(simClock + MOVEMENT_INTERVAL, SimEvent.Type.MOVE, train);
         } else {
-            System.out.println("✗ No path found to platform");
+            waitFor(signalWaiters, currentNode, train);
         }
     }
 
-    private void updateActiveTrains() {
-        LocalTime now = currentTime.get();
-        List<Train> trainsToRemove = new ArrayList<>();
+    private void departTrain(int train) {
+        trains.setActualDeparture(train, simClock);
+        trains.setStatus(train, Train.TrainStatus.DEPARTING);
+        if (journal != null) {
+            journal.append(simClock, JournalType.DEPART, train, trains.node(train), 0);
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Train " + trains.trainNumber(train) + " departing");
+        }
+        events.schedule(simClock + MOVEMENT_INTERVAL, SimEvent.Type.CLEAR, train);
+    }
 
-        for (Train train : activeTrains) {
-            switch (train.getStatus()) {
-                case WAITING_ENTRY -> {
-                    // Check if signal permits entry
-                    String currentNode = train.getCurrentNodeId();
-                    SignalState signal = signalStates.get(currentNode);
+    private void clearTrain(int train) {
+        // A train only holds the node it stands on; the rest of its route may already be taken by followers
+        releaseNode(trains.node(train));
+        releaseRoute(train);
+        TimetableEntry entry = trains.entry(train);
+        String trainNumber = entry.trainNumber();
+        int platform = platforms.platformOfTrack(trains.platform(train));
+        if (platform != PlatformAllocator.NONE) {
+            platforms.release(platform);
+        }
+        platforms.cancel(trainNumber);
+        trains.setStatus(train, Train.TrainStatus.DEPARTED);
+        Train view = exitListeners.isEmpty() ? null : trains.view(train, topology);
+        slotByTrainNumber.remove(trainNumber);
+        trains.free(train);
+        if (journal != null) {
+            journal.append(simClock, JournalType.CLEAR, train, 0, 0);
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Train " + trainNumber + " departed");
+        }
+        for (TrainExitListener listener : exitListeners) {
+            listener.onTrainExit(entry, view, simClock);
+        }
+        scheduleSpawnRetry();
+    }
+
+    /**
+     * Move every train whose MOVE event falls on this second. The batch is resolved by {@link MovementBatch},
+     * possibly in parallel; waits, wake-ups and follow-up events are then applied here in event order. Every
+     * wait is registered before any wake-up runs, so a train that found a node held by a train leaving it in the
+     * same batch is woken whatever their order in the batch.
+     */
+    private void moveTrains(SimEvent first) {
+        movement.clear();
+        movement.add(first.train());
+        SimEvent next;
+        while ((next = events.peek()) != null && next.time() == first.time() && next.type() == SimEvent.Type.MOVE) {
+            movement.add(events.poll().train());
+        }
+
+        movement.resolve(simClock);
 
-                    if (signal == null || signal.getAspect() != Signal.SignalAspect.RED) {
-                        // Signal permits, start moving
-                        train.setStatus(Train.TrainStatus.ENTERING);
-                        occupiedNodes.add(currentNode);
-                        System.out.println("Train " + train.getTrainNumber() + " entering at " + currentNode);
+        boolean debug = LOG.isDebugEnabled();
+        for (int i = 0; i < movement.size(); i++) {
+            int train = movement.train(i);
+            switch (movement.outcome(i)) {
+                case MovementBatch.SIGNAL_WAIT -> {
+                    if (debug) {
+                        LOG.debug("Train " + trains.trainNumber(train) + " stopped by signal at "
+                                + topology.nodeId(movement.to(i)));
+                    }
+                    waitFor(signalWaiters, movement.to(i), train);
+                }
+                case MovementBatch.NODE_WAIT -> {
+                    if (debug) {
+                        LOG.debug("Train " + trains.trainNumber(train) + " waiting, next node occupied");
                     }
+                    waitFor(nodeWaiters, movement.to(i), train);
                 }
-                case ENTERING, ARRIVING -> {
-                    // Move train along path
-                    moveTrain(train);
+                default -> {
+                    // Applied below, once every wait is known
                 }
-                case AT_PLATFORM -> {
-                    if (now.isAfter(train.getScheduledDeparture())) {
-                        train.setActualDeparture(now);
-                        train.setStatus(Train.TrainStatus.DEPARTING);
-                        System.out.println("Train " + train.getTrainNumber() + " departing");
+            }
+        }
+        for (int i = 0; i < movement.size(); i++) {
+            int train = movement.train(i);
+            switch (movement.outcome(i)) {
+                case MovementBatch.ARRIVE -> {
+                    if (journal != null) {
+                        journal.append(simClock, JournalType.ARRIVE, train, movement.from(i), 0);
                     }
+                    if (LOG.isInfoEnabled()) {
+                        LOG.info("Train " + trains.trainNumber(train) + " arrived at platform");
+                    }
+                    releaseRoute(train);
+                    scheduleDeparture(train);
+                    extendPlatformBooking(train);
                 }
-                case DEPARTING -> {
-                    // Clear all occupied nodes
-                    if (train.getCurrentPath() != null) {
-                        occupiedNodes.removeAll(train.getCurrentPath());
+                case MovementBatch.MOVE -> {
+                    int from = movement.from(i);
+                    if (journal != null) {
+                        journal.append(simClock, JournalType.MOVE, train, from, movement.to(i));
+                    }
+                    if (!occupancy.isNodeOccupied(from)) {
+                        wakeAll(nodeWaiters.remove(from));
+                    }
+                    if (debug) {
+                        LOG.debug("Train " + trains.trainNumber(train) + " moved: " + topology.nodeId(from)
+                                + " -> " + topology.nodeId(movement.to(i)));
                     }
-                    occupiedNodes.remove(train.getCurrentNodeId());
-                    platformAssignments.values().remove(train.getTrainNumber());
-                    train.setStatus(Train.TrainStatus.DEPARTED);
-                    trainsToRemove.add(train);
-                    System.out.println("Train " + train.getTrainNumber() + " departed");
+                    events.schedule(simClock + MOVEMENT_INTERVAL, SimEvent.Type.MOVE, train);
+                }
+                default -> {
+                    // Waiting, or no route: nothing more to do
                 }
             }
         }
+    }
 
-        activeTrains.removeAll(trainsToRemove);
+    /**
+     * A train that arrives too late to leave on time holds its platform longer than planned; repair the plan.
+     */
+    private void extendPlatformBooking(int train) {
+        String trainNumber = trains.trainNumber(train);
+        int platform = platforms.platformOfTrack(trains.platform(train));
+        long end = Math.max(simClock + MOVEMENT_INTERVAL, trains.scheduledDeparture(train) + 1) + CLEARANCE;
+        if (platform != PlatformAllocator.NONE && end > platforms.plannedEnd(trainNumber)) {
+            int moved = platforms.repair(trainNumber, platform, simClock, end);
+            if (moved > 0 && LOG.isDebugEnabled()) {
+                LOG.debug("Train " + trainNumber + " late, re-planned " + moved + " platform booking(s)");
+            }
+        }
     }
 
-    private void moveTrain(Train train) {
-        List<String> path = train.getCurrentPath();
-        if (path == null || path.isEmpty()) return;
+    private void scheduleDeparture(int train) {
+        // Trains leave on the first movement after the scheduled departure minute has passed
+        long departure = trains.scheduledDeparture(train) + 1;
+        events.schedule(Math.max(simClock + MOVEMENT_INTERVAL, departure), SimEvent.Type.DEPART, train);
+    }
 
-        String currentNode = train.getCurrentNodeId();
-        int currentIndex = path.indexOf(currentNode);
+    private SignalState signalAt(int node) {
+        return node == CompiledTopology.NONE ? null : signalByNode[node];
+    }
 
-        if (currentIndex < 0 || currentIndex >= path.size() - 1) {
-            // Reached destination
-            train.setStatus(Train.TrainStatus.AT_PLATFORM);
-            train.setActualArrival(currentTime.get());
-            System.out.println("Train " + train.getTrainNumber() + " arrived at platform");
-            return;
+    private void releaseNode(int node) {
+        if (occupancy.release(node)) {
+            wakeAll(nodeWaiters.remove(node));
         }
+    }
 
-        // Move to next node
-        String nextNode = path.get(currentIndex + 1);
+    private void waitFor(Map<Integer, IntList> waiters, int node, int train) {
+        waiters.computeIfAbsent(node, k -> new IntList()).add(train);
+    }
 
-        // Check signal at next node
-        SignalState signal = signalStates.get(nextNode);
-        if (signal != null && signal.getAspect() == Signal.SignalAspect.RED) {
-            System.out.println("Train " + train.getTrainNumber() + " stopped by signal at " + nextNode);
-            return;
+    /**
+     * Resume trains that were parked on a signal or node. They retry on the next movement interval.
+     */
+    private void wakeAll(IntList waiting) {
+        if (waiting == null) return;
+        for (int i = 0; i < waiting.size(); i++) {
+            int train = waiting.get(i);
+            SimEvent.Type type = trains.status(train) == Train.TrainStatus.WAITING_ENTRY
+                    ? SimEvent.Type.ENTER : SimEvent.Type.MOVE;
+            events.schedule(simClock + MOVEMENT_INTERVAL, type, train);
         }
+    }
 
-        // Check if next node is occupied
-        if (occupiedNodes.contains(nextNode) && !path.contains(nextNode)) {
-            System.out.println("Train " + train.getTrainNumber() + " waiting, next node occupied");
-            return;
+    public CompiledTopology getTopology() { return topology; }
+
+    /** The station layout, including any layout edits applied to this controller. */
+    public StationConfig getConfig() { return config; }
+    public LocalTime getCurrentTime() { return toLocalTime(simClock); }
+
+    /**
+     * Views of the trains currently in the simulation, built from the {@link TrainStore}. Meant for the UI;
+     * simulation code reads the store directly.
+     */
+    public synchronized List<Train> getActiveTrains() {
+        List<Train> views = new ArrayList<>(trains.activeCount());
+        for (int i = 0; i < trains.activeCount(); i++) {
+            views.add(trains.view(trains.activeSlot(i), topology));
         }
+        return views;
+    }
 
-        // Move train
-        occupiedNodes.remove(currentNode);
-        occupiedNodes.add(nextNode);
-        train.setCurrentNodeId(nextNode);
+    /** View of one train, or null if it is not in the simulation. */
+    public synchronized Train getTrain(String trainNumber) {
+        Integer slot = slotByTrainNumber.get(trainNumber);
+        return slot == null ? null : trains.view(slot, topology);
+    }
 
-        System.out.println("Train " + train.getTrainNumber() + " moved: " + currentNode + " -> " + nextNode);
+    public synchronized int getActiveTrainCount() { return trains.activeCount(); }
 
-        // Update status
-        if (currentIndex >= path.size() - 3) {
-            train.setStatus(Train.TrainStatus.ARRIVING);
-        }
+    public synchronized Set<String> getOccupiedNodes() { return new HashSet<>(occupancy.occupiedNodeIds()); }
+    /** Live, read-only occupancy for renderers; no copy is made. */
+    public OccupancyView getOccupancy() { return occupancy; }
+    public synchronized List<TimetableEntry> getTimetable() { return new ArrayList<>(timetable); }
+
+    public void addListener(SimulationListener listener) { listeners.add(listener); }
+    public void removeListener(SimulationListener listener) { listeners.remove(listener); }
+    public void addExitListener(TrainExitListener listener) { exitListeners.add(listener); }
+    public void removeExitListener(TrainExitListener listener) { exitListeners.remove(listener); }
+
+    /**
+     * Add a train that was not in the initial timetable, arriving at the time of day of its entry.
+     */
+    public synchronized void injectTrain(TimetableEntry entry) {
+        injectTrain(entry, toSimSeconds(entry.scheduledArrival()));
     }
 
-    public ObjectProperty<LocalTime> currentTimeProperty() { return currentTime; }
-    public LocalTime getCurrentTime() { return currentTime.get(); }
-    public List<Train> getActiveTrains() { return new ArrayList<>(activeTrains); }
-    public Set<String> getOccupiedNodes() { return new HashSet<>(occupiedNodes); }
-    public List<TimetableEntry> getTimetable() { return new ArrayList<>(timetable); }
-    public void setTimeAcceleration(double acceleration) { this.timeAcceleration = acceleration; }
+    /**
+     * Add a train that was not in the initial timetable, e.g. one handed over by a neighbouring station.
+     * {@code arrival} is in simulated seconds and may lie on any day; the entry's times of day are only shown.
+     * It spawns like a timetabled train, or right away if its spawn window is already open.
+     */
+    public synchronized void injectTrain(TimetableEntry entry, long arrival) {
+        timetable.add(entry);
+        timetableIndex.putIfAbsent(entry, timetable.size() - 1);
+        injectedArrivals.put(timetable.size() - 1, arrival);
+        bookPlatform(entry);
+        if (journal != null) {
+            journal.appendTimetableEntry(entry);
+            journal.append(simClock, JournalType.INJECT, 0, timetable.size() - 1, Math.toIntExact(arrival));
+        }
+        long spawnTime = arrival - SPAWN_LEAD + 1;
+        events.schedule(Math.max(simClock, spawnTime), SimEvent.Type.INJECT, entry);
+    }
 
-    public void setSignalAspect(String protectedNodeId, Signal.SignalAspect aspect) {
+    public synchronized void setSignalAspect(String protectedNodeId, Signal.SignalAspect aspect) {
         SignalState state = signalStates.get(protectedNodeId);
         if (state != null) {
             state.setAspect(aspect);
+            if (journal != null) {
+                journal.append(simClock, JournalType.SIGNAL, aspect.code(),
+                        topology.nodeIndex(protectedNodeId), 0, 0);
+            }
+            if (aspect != Signal.SignalAspect.RED) {
+                events.schedule(simClock, SimEvent.Type.SIGNAL_CLEAR, protectedNodeId);
+                scheduleSpawnRetry();
+            }
+        }
+    }
+
+    /**
+     * Throw a switch. Updates the shared {@link SwitchState} and the live position vector read by the
+     * pathfinder, then lets spawns that found no route try again. Switches held by a locked interlocking route
+     * cannot be thrown.
+     */
+    public synchronized void setSwitchState(String switchId, String newState) {
+        int sw = topology.switchIndex(switchId);
+        if (sw != CompiledTopology.NONE && routeLocks.isSwitchLocked(sw)) {
+            LOG.warn("Switch " + switchId + " is locked by a set route");
+            return;
+        }
+
+        SwitchState state = switchStates.get(switchId);
+        if (state != null) {
+            state.setState(newState);
+        }
+
+        if (sw != CompiledTopology.NONE && throwSwitch(sw, CompiledTopology.parseSwitchState(newState), true)) {
+            scheduleSpawnRetry();
+        }
+    }
+
+    /**
+     * Add, change or remove tracks and switches while the simulation runs. The topology is patched through an
+     * {@link IncrementalGraph}; only cached routes and interlocking routes that can reach a changed node are
+     * recomputed, and trains, bookings, locks and switch positions carry over. New switches start in their
+     * default position.
+     * <p>
+     * The edit is all or nothing. It is refused if it changes the links of an occupied node, cuts the rest of a
+     * train's route, changes a locked interlocking route, or adds, removes or moves a platform; platform changes
+     * need a restart. A journal only gets a {@link JournalType#LAYOUT_EDIT} marker, which {@link ReplayEngine}
+     * refuses: replay cannot reproduce layout edits.
+     *
+     * @throws IllegalStateException if the edit is refused
+     */
+    public synchronized GraphDelta applyLayoutEdit(LayoutEdit edit) {
+        if (layout == null) {
+            // The station may back other controllers too; edits go to a private copy of its layout
+            config = copyLayout(config);
+            layout = new IncrementalGraph(config, topology);
+        }
+        GraphDelta delta = layout.prepare(edit);
+        CompiledTopology next = delta.topology();
+
+        List<Track> before = config.getTracks();
+        for (int t = 0; t < delta.tracks().size(); t++) {
+            boolean wasPlatform = t < before.size() && "PLATFORM_TRACK".equals(before.get(t).type());
+            boolean isPlatform = "PLATFORM_TRACK".equals(delta.tracks().get(t).type());
+            if (wasPlatform != isPlatform
+                    || (isPlatform && topology.trackEntryNode(t) != next.trackEntryNode(t))) {
+                throw new IllegalStateException("Platform " + delta.tracks().get(t).id()
+                        + " cannot change while the simulation runs");
+            }
+        }
+        for (int node : delta.changedNodes()) {
+            if (occupancy.isNodeOccupied(node)) {
+                throw new IllegalStateException("Node " + next.nodeId(node) + " is occupied");
+            }
+        }
+        for (int i = 0; i < trains.activeCount(); i++) {
+            int train = trains.activeSlot(i);
+            if (trains.routeId(train) == TrainStore.NONE) continue;
+            Route route = trains.route(trains.routeId(train));
+            for (int step = trains.cursor(train); step < route.length() - 1; step++) {
+                if (!hasEdge(next, route.node(step), route.node(step + 1))) {
+                    throw new IllegalStateException("Edit cuts the route of train " + trains.trainNumber(train));
+                }
+            }
+        }
+        InterlockingTable nextInterlocking = routeLocks.table().update(delta, routeLocks);
+
+        layout.commit(delta);
+        int oldSwitchCount = topology.switchCount();
+        occupancy.extend(next);
+        switchPositions.grow(next.switchCount());
+        for (int sw = 0; sw < next.switchCount(); sw++) {
+            Switch layoutSwitch = delta.switches().get(sw);
+            if (layoutSwitch.p1ConnectionId() == null) {
+                switchStates.remove(layoutSwitch.id());
+            } else if (sw >= oldSwitchCount || !switchStates.containsKey(layoutSwitch.id())) {
+                String state = layoutSwitch.defaultState() != null ? layoutSwitch.defaultState() : "MAIN";
+                switchStates.put(layoutSwitch.id(), new SwitchState(layoutSwitch.id(), state));
+                switchPositions.set(sw, CompiledTopology.parseSwitchState(state));
+            }
+        }
+        int droppedPairs = pathFinder.updateTopology(next, delta.changedNodes());
+        signalByNode = indexSignals(next);
+        movement.resize(signalByNode, next.nodeCount());
+        routeLocks.moveTo(nextInterlocking);
+        topology = next;
+        if (journal != null) {
+            journal.append(simClock, JournalType.LAYOUT_EDIT, 0, delta.changedNodes().length, 0);
+        }
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Layout edit applied: " + delta.changedNodes().length + " changed nodes, "
+                    + delta.addedNodeCount() + " new nodes, " + droppedPairs + " cached route pairs dropped");
+        }
+        scheduleSpawnRetry();
+        return delta;
+    }
+
+    private static StationConfig copyLayout(StationConfig source) {
+        StationConfig copy = new StationConfig();
+        copy.setStationName(source.getStationName());
+        copy.setGeometry(source.getGeometry());
+        copy.setTracks(new ArrayList<>(source.getTracks()));
+        copy.setSwitches(new ArrayList<>(source.getSwitches()));
+        copy.setWaypoints(source.getWaypoints());
+        copy.setSignals(source.getSignals());
+        return copy;
+    }
+
+    private static boolean hasEdge(CompiledTopology topology, int from, int to) {
+        for (int edge = topology.firstEdge(from); edge < topology.endEdge(from); edge++) {
+            if (topology.edgeTarget(edge) == to) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Capture the complete simulation state at the current clock. See {@link SimulationSnapshot}.
+     */
+    public synchronized SimulationSnapshot snapshot() {
+        byte[] switches = new byte[topology.switchCount()];
+        for (int sw = 0; sw < switches.length; sw++) {
+            switches[sw] = switchPositions.state(sw);
+        }
+        Map<String, Signal.SignalAspect> aspects = new TreeMap<>();
+        for (Map.Entry<String, SignalState> e : signalStates.entrySet()) {
+            aspects.put(e.getKey(), e.getValue().getAspect());
+        }
+        return new SimulationSnapshot(simClock, List.copyOf(timetable), Map.copyOf(injectedArrivals), trains.copy(),
+                occupancy.toWords(),
+                platforms.copy(), routeLocks.lockedRouteWords(), switches, aspects, events.pending(),
+                events.nextSequence(), spawnIndex.getCursor(), List.copyOf(spawnedTrains),
+                List.copyOf(pendingSpawns), copyWaiters(signalWaiters), copyWaiters(nodeWaiters),
+                spawnRetryScheduled);
+    }
+
+    /**
+     * Put the simulation back into the state of a snapshot taken from a controller for the same station.
+     * The clock may move backwards and listeners are not notified. Switches are thrown without being journaled.
+     */
+    public synchronized void restore(SimulationSnapshot snapshot) {
+        simClock = snapshot.time;
+        timetable.clear();
+        timetable.addAll(snapshot.timetable);
+        timetableIndex.clear();
+        for (int i = 0; i < timetable.size(); i++) {
+            timetableIndex.putIfAbsent(timetable.get(i), i);
+        }
+        injectedArrivals.clear();
+        injectedArrivals.putAll(snapshot.injectedArrivals);
+
+        trains.copyFrom(snapshot.trains);
+        slotByTrainNumber.clear();
+        for (int i = 0; i < trains.activeCount(); i++) {
+            int train = trains.activeSlot(i);
+            slotByTrainNumber.put(trains.trainNumber(train), train);
+        }
+        occupancy.restore(snapshot.occupancy);
+        platforms.copyFrom(snapshot.platforms);
+        routeLocks.restore(snapshot.lockedRoutes);
+
+        EventJournal recording = journal;
+        journal = null;
+        for (int sw = 0; sw < snapshot.switchStates.length && sw < topology.switchCount(); sw++) {
+            throwSwitch(sw, snapshot.switchStates[sw], false);
+        }
+        journal = recording;
+        for (Map.Entry<String, Signal.SignalAspect> e : snapshot.signalAspects.entrySet()) {
+            SignalState state = signalStates.get(e.getKey());
+            if (state != null) {
+                state.setAspect(e.getValue());
+            }
+        }
+
+        events.restore(snapshot.events, snapshot.nextEventSequence);
+        spawnIndex.setCursor(snapshot.spawnCursor);
+        spawnedTrains.clear();
+        spawnedTrains.addAll(snapshot.spawnedTrains);
+        pendingSpawns.clear();
+        pendingSpawns.addAll(snapshot.pendingSpawns);
+        restoreWaiters(signalWaiters, snapshot.signalWaiters);
+        restoreWaiters(nodeWaiters, snapshot.nodeWaiters);
+        spawnRetryScheduled = snapshot.spawnRetryScheduled;
+    }
+
+    /**
+     * Save the current state as a binary checkpoint, see {@link SnapshotCodec}.
+     */
+    public void saveCheckpoint(Path file) throws IOException {
+        SnapshotCodec.write(snapshot(), topology, file);
+    }
+
+    /**
+     * Restore a checkpoint saved by a controller for the same station layout.
+     */
+    public void loadCheckpoint(Path file) throws IOException {
+        restore(SnapshotCodec.read(file, topology, platforms));
+    }
+
+    private static Map<Integer, int[]> copyWaiters(Map<Integer, IntList> waiters) {
+        Map<Integer, int[]> copy = new TreeMap<>();
+        for (Map.Entry<Integer, IntList> e : waiters.entrySet()) {
+            copy.put(e.getKey(), e.getValue().toArray());
+        }
+        return copy;
+    }
+
+    private static void restoreWaiters(Map<Integer, IntList> waiters, Map<Integer, int[]> source) {
+        waiters.clear();
+        for (Map.Entry<Integer, int[]> e : source.entrySet()) {
+            IntList list = new IntList(e.getValue().length);
+            for (int train : e.getValue()) {
+                list.add(train);
+            }
+            waiters.put(e.getKey(), list);
+        }
+    }
+
+    public SwitchPositions getSwitchPositions() { return switchPositions; }
+
+    /**
+     * Resolve movement batches on the given pool, or on the simulation thread when null. Results are identical
+     * either way; batches with fewer than {@code threshold} trains always run on the simulation thread.
+     */
+    public synchronized void setMovementPool(ForkJoinPool pool, int threshold) {
+        movement.setPool(pool, threshold);
+    }
+
+    /** The live train store. Only touch it from the simulation thread or while holding this controller's lock. */
+    public TrainStore getTrainStore() { return trains; }
+    public RouteCache getRouteCache() { return pathFinder.getRouteCache(); }
+    public InterlockingTable getInterlocking() { return routeLocks.table(); }
+    public RouteLocks getRouteLocks() { return routeLocks; }
+    public PlatformAllocator getPlatformAllocator() { return platforms; }
+
+    /**
+     * Record every state change to the given journal from now on, or stop recording with null. The current
+     * timetable is written to the journal as the run's starting timetable, so attach it before the run starts.
+     * The caller owns the journal and closes it.
+     */
+    public synchronized void setJournal(EventJournal journal) throws IOException {
+        if (journal != null) {
+            journal.writeTimetable(timetable);
         }
+        this.journal = journal;
     }
-}
\ No newline at end of file
+    public EventJournal getJournal() { return journal; }
+}
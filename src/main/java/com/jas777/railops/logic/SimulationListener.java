@@ -0,0 +1,11 @@
+package com.jas777.railops.logic;
+
+import java.time.LocalTime;
+
+/**
+ * Callback invoked after every simulation step, on the thread that drives the simulation.
+ */
+@FunctionalInterface
+public interface SimulationListener {
+    void onStep(LocalTime time);
+}
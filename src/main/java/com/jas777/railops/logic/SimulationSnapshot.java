@@ -0,0 +1,66 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.Signal;
+import com.jas777.railops.model.TimetableEntry;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Complete state of a {@link SimulationController} at one simulated second, taken by
+ * {@link SimulationController#snapshot()} and put back by {@link SimulationController#restore}.
+ * <p>
+ * A snapshot is detached: it shares nothing mutable with the controller, so it stays valid however far the
+ * simulation runs on. It only fits controllers built for the same station layout.
+ */
+public final class SimulationSnapshot {
+
+    final long time;
+    final List<TimetableEntry> timetable;
+    final Map<Integer, Long> injectedArrivals;
+    final TrainStore trains;
+    final long[] occupancy;
+    final PlatformAllocator platforms;
+    final long[] lockedRoutes;
+    final byte[] switchStates;
+    final Map<String, Signal.SignalAspect> signalAspects;
+    final List<SimEvent> events;
+    final long nextEventSequence;
+    final int spawnCursor;
+    final List<String> spawnedTrains;
+    final List<TimetableEntry> pendingSpawns;
+    final Map<Integer, int[]> signalWaiters;
+    final Map<Integer, int[]> nodeWaiters;
+    final boolean spawnRetryScheduled;
+
+    SimulationSnapshot(long time, List<TimetableEntry> timetable, Map<Integer, Long> injectedArrivals,
+                       TrainStore trains, long[] occupancy,
+                       PlatformAllocator platforms, long[] lockedRoutes, byte[] switchStates,
+                       Map<String, Signal.SignalAspect> signalAspects, List<SimEvent> events,
+                       long nextEventSequence, int spawnCursor, List<String> spawnedTrains,
+                       List<TimetableEntry> pendingSpawns, Map<Integer, int[]> signalWaiters,
+                       Map<Integer, int[]> nodeWaiters, boolean spawnRetryScheduled) {
+        this.time = time;
+        this.timetable = timetable;
+        this.injectedArrivals = injectedArrivals;
+        this.trains = trains;
+        this.occupancy = occupancy;
+        this.platforms = platforms;
+        this.lockedRoutes = lockedRoutes;
+        this.switchStates = switchStates;
+        this.signalAspects = signalAspects;
+        this.events = events;
+        this.nextEventSequence = nextEventSequence;
+        this.spawnCursor = spawnCursor;
+        this.spawnedTrains = spawnedTrains;
+        this.pendingSpawns = pendingSpawns;
+        this.signalWaiters = signalWaiters;
+        this.nodeWaiters = nodeWaiters;
+        this.spawnRetryScheduled = spawnRetryScheduled;
+    }
+
+    /** Simulated time of the snapshot, in the controller's seconds. */
+    public long getTime() { return time; }
+
+    public int getActiveTrainCount() { return trains.activeCount(); }
+}
@@ -0,0 +1,464 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.Signal;
+import com.jas777.railops.model.TimetableEntry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Binary checkpoint format for {@link SimulationSnapshot}s, so long scenarios can be warm-started from the middle
+ * of the day.
+ * <p>
+ * A checkpoint is a 32-byte little-endian header followed by the payload:
+ * <pre>
+ *  0  int   magic
+ *  4  short version
+ *  6  short reserved
+ *  8  long  layout hash of the station the snapshot was taken on
+ * 16  int   payload length
+ * 20  int   CRC32 of the payload
+ * 24  long  simulated time
+ * </pre>
+ * The payload starts with a pool of every distinct string, which the rest refers to by index. The timetable is
+ * stored once as a table of entries; trains, events and pending spawns refer to it by index. Per-train state is
+ * written as whole primitive columns, so saving and loading tens of thousands of trains is a few bulk copies.
+ * Enums are written as their stable {@code code()}, never their ordinal, so reordering a declaration cannot change
+ * what an existing checkpoint means. Files are written to a temporary name, forced to disk and moved into place,
+ * so a crash never leaves a half-written checkpoint behind.
+ */
+public final class SnapshotCodec {
+
+    public static final int MAGIC = 0x504E5352; // "RSNP"
+    public static final short VERSION = 3;
+    private static final int HEADER_SIZE = 32;
+
+    private SnapshotCodec() {
+    }
+
+    public static void write(SimulationSnapshot snapshot, CompiledTopology topology, Path file) throws IOException {
+        Output out = new Output(1 << 16);
+
+        // Entry table: the timetable first, then anything referenced that is not in it
+        List<TimetableEntry> table = new ArrayList<>(snapshot.timetable);
+        Map<TimetableEntry, Integer> index = new HashMap<>();
+        for (int i = 0; i < table.size(); i++) {
+            index.putIfAbsent(table.get(i), i);
+        }
+        for (int i = 0; i < snapshot.trains.capacityUsed(); i++) {
+            addEntry(snapshot.trains.entry(i), table, index);
+        }
+        for (SimEvent event : snapshot.events) {
+            addEntry(event.entry(), table, index);
+        }
+        for (TimetableEntry entry : snapshot.pendingSpawns) {
+            addEntry(entry, table, index);
+        }
+
+        out.putInt(table.size());
+        out.putInt(snapshot.timetable.size());
+        for (TimetableEntry entry : table) {
+            out.putString(entry.trainNumber());
+            out.putString(entry.fromStation());
+            out.putString(entry.toStation());
+            out.putInt(entry.scheduledArrival().toSecondOfDay());
+            out.putInt(entry.scheduledDeparture().toSecondOfDay());
+            out.putString(entry.designatedPlatform());
+            out.putString(entry.entryNodeId());
+        }
+        out.putInt(snapshot.injectedArrivals.size());
+        for (Map.Entry<Integer, Long> e : new TreeMap<>(snapshot.injectedArrivals).entrySet()) {
+            out.putInt(e.getKey());
+            out.putLong(e.getValue());
+        }
+
+        snapshot.trains.write(out, entry -> entry == null ? -1 : index.get(entry));
+        out.putLongs(snapshot.occupancy);
+        snapshot.platforms.write(out);
+        out.putLongs(snapshot.lockedRoutes);
+        out.putBytes(snapshot.switchStates);
+
+        out.putInt(snapshot.signalAspects.size());
+        for (Map.Entry<String, Signal.SignalAspect> e : snapshot.signalAspects.entrySet()) {
+            out.putString(e.getKey());
+            out.putByte(e.getValue().code());
+        }
+
+        out.putInt(snapshot.events.size());
+        for (SimEvent event : snapshot.events) {
+            out.putLong(event.time());
+            out.putLong(event.sequence());
+            out.putByte(event.type().code());
+            out.putInt(event.train());
+            out.putString(event.nodeId());
+            out.putInt(event.entry() == null ? -1 : index.get(event.entry()));
+        }
+        out.putLong(snapshot.nextEventSequence);
+        out.putInt(snapshot.spawnCursor);
+
+        out.putInt(snapshot.spawnedTrains.size());
+        for (String trainNumber : snapshot.spawnedTrains) {
+            out.putString(trainNumber);
+        }
+        out.putInt(snapshot.pendingSpawns.size());
+        for (TimetableEntry entry : snapshot.pendingSpawns) {
+            out.putInt(index.get(entry));
+        }
+        putWaiters(out, snapshot.signalWaiters);
+        putWaiters(out, snapshot.nodeWaiters);
+        out.putByte((byte) (snapshot.spawnRetryScheduled ? 1 : 0));
+
+        ByteBuffer pool = out.stringPool();
+        ByteBuffer body = out.flip();
+        CRC32 crc = new CRC32();
+        crc.update(pool.duplicate());
+        crc.update(body.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) 0)
+                .putLong(layoutHash(topology))
+                .putInt(pool.remaining() + body.remaining())
+                .putInt((int) crc.getValue())
+                .putLong(snapshot.time)
+                .flip();
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] parts = {header, pool, body};
+            while (body.hasRemaining()) {
+                channel.write(parts);
+            }
+            // On disk before the rename publishes it, so a crash cannot leave an empty file under the real name
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a checkpoint taken on the same station layout. The platform allocator of the controller that will
+     * restore it supplies the station's platform tables.
+     */
+    public static SimulationSnapshot read(Path file, CompiledTopology topology, PlatformAllocator template)
+            throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a simulation checkpoint: " + file);
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version + ": " + file);
+        }
+        buffer.getShort();
+        if (buffer.getLong() != layoutHash(topology)) {
+            throw new IOException("Checkpoint was taken on a different station layout: " + file);
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        long time = buffer.getLong();
+        if (buffer.remaining() < length) {
+            throw new IOException("Truncated checkpoint: " + file);
+        }
+        ByteBuffer payload = buffer.slice(HEADER_SIZE, length).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Checkpoint checksum mismatch: " + file);
+        }
+
+        Input in = new Input(payload);
+        int tableSize = in.getInt();
+        int timetableSize = in.getInt();
+        List<TimetableEntry> table = new ArrayList<>(tableSize);
+        for (int i = 0; i < tableSize; i++) {
+            table.add(new TimetableEntry(in.getString(), in.getString(), in.getString(),
+                    LocalTime.ofSecondOfDay(in.getInt()), LocalTime.ofSecondOfDay(in.getInt()),
+                    in.getString(), in.getString()));
+        }
+        Map<Integer, Long> injectedArrivals = new HashMap<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            injectedArrivals.put(in.getInt(), in.getLong());
+        }
+
+        TrainStore trains = new TrainStore(1);
+        try {
+            trains.read(in, i -> i < 0 ? null : table.get(i));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage() + ": " + file, e);
+        }
+        long[] occupancy = in.getLongs();
+        PlatformAllocator platforms = template.copyLayout();
+        platforms.read(in);
+        long[] lockedRoutes = in.getLongs();
+        byte[] switchStates = in.getBytes();
+
+        Map<String, Signal.SignalAspect> signalAspects = new TreeMap<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            String signal = in.getString();
+            byte code = in.getByte();
+            Signal.SignalAspect aspect = Signal.SignalAspect.fromCode(code);
+            if (aspect == null) {
+                throw new IOException("Unknown signal aspect code " + code + ": " + file);
+            }
+            signalAspects.put(signal, aspect);
+        }
+
+        int eventCount = in.getInt();
+        List<SimEvent> events = new ArrayList<>(eventCount);
+        for (int i = 0; i < eventCount; i++) {
+            long eventTime = in.getLong();
+            long sequence = in.getLong();
+            byte code = in.getByte();
+            SimEvent.Type type = SimEvent.Type.fromCode(code);
+            if (type == null) {
+                throw new IOException("Unknown event type code " + code + ": " + file);
+            }
+            int train = in.getInt();
+            String nodeId = in.getString();
+            int entry = in.getInt();
+            events.add(new SimEvent(eventTime, sequence, type, train, nodeId, entry < 0 ? null : table.get(entry)));
+        }
+        long nextEventSequence = in.getLong();
+        int spawnCursor = in.getInt();
+
+        int spawnedCount = in.getInt();
+        List<String> spawnedTrains = new ArrayList<>(spawnedCount);
+        for (int i = 0; i < spawnedCount; i++) {
+            spawnedTrains.add(in.getString());
+        }
+        int pendingCount = in.getInt();
+        List<TimetableEntry> pendingSpawns = new ArrayList<>(pendingCount);
+        for (int i = 0; i < pendingCount; i++) {
+            pendingSpawns.add(table.get(in.getInt()));
+        }
+        Map<Integer, int[]> signalWaiters = getWaiters(in);
+        Map<Integer, int[]> nodeWaiters = getWaiters(in);
+        boolean spawnRetryScheduled = in.getByte() != 0;
+
+        return new SimulationSnapshot(time, List.copyOf(table.subList(0, timetableSize)), injectedArrivals,
+                trains, occupancy,
+                platforms, lockedRoutes, switchStates, signalAspects, events, nextEventSequence, spawnCursor,
+                spawnedTrains, pendingSpawns, signalWaiters, nodeWaiters, spawnRetryScheduled);
+    }
+
+    /** Fingerprint of the interned node, track and switch ids; a checkpoint only restores onto the same layout. */
+    static long layoutHash(CompiledTopology topology) {
+        long hash = 1125899906842597L;
+        hash = 31 * hash + topology.nodeCount();
+        for (int i = 0; i < topology.nodeCount(); i++) {
+            hash = 31 * hash + topology.nodeId(i).hashCode();
+        }
+        hash = 31 * hash + topology.trackCount();
+        for (int i = 0; i < topology.trackCount(); i++) {
+            hash = 31 * hash + topology.trackId(i).hashCode();
+        }
+        hash = 31 * hash + topology.switchCount();
+        for (int i = 0; i < topology.switchCount(); i++) {
+            hash = 31 * hash + topology.switchId(i).hashCode();
+        }
+        return hash;
+    }
+
+    private static void addEntry(TimetableEntry entry, List<TimetableEntry> table, Map<TimetableEntry, Integer> index) {
+        if (entry != null && index.putIfAbsent(entry, table.size()) == null) {
+            table.add(entry);
+        }
+    }
+
+    private static void putWaiters(Output out, Map<Integer, int[]> waiters) {
+        out.putInt(waiters.size());
+        for (Map.Entry<Integer, int[]> e : waiters.entrySet()) {
+            out.putInt(e.getKey());
+            out.putInts(e.getValue(), e.getValue().length);
+        }
+    }
+
+    private static Map<Integer, int[]> getWaiters(Input in) {
+        Map<Integer, int[]> waiters = new LinkedHashMap<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            waiters.put(in.getInt(), in.getInts());
+        }
+        return waiters;
+    }
+
+    /**
+     * Growable little-endian buffer. Arrays are length-prefixed and copied in bulk; strings are written as an
+     * index into the string pool, -1 for null.
+     */
+    static final class Output {
+        private ByteBuffer buffer;
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        Output(int capacity) {
+            buffer = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+                ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+                grown.put(buffer.flip());
+                buffer = grown;
+            }
+        }
+
+        void putByte(byte value) {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        void putInt(int value) {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) {
+            ensure(8);
+            buffer.putDouble(value);
+        }
+
+        void putBytes(byte[] values) {
+            putBytes(values, values.length);
+        }
+
+        void putBytes(byte[] values, int length) {
+            putInt(length);
+            ensure(length);
+            buffer.put(values, 0, length);
+        }
+
+        void putInts(int[] values, int length) {
+            putInt(length);
+            ensure(length * 4);
+            buffer.asIntBuffer().put(values, 0, length);
+            buffer.position(buffer.position() + length * 4);
+        }
+
+        void putLongs(long[] values) {
+            putInt(values.length);
+            ensure(values.length * 8);
+            buffer.asLongBuffer().put(values);
+            buffer.position(buffer.position() + values.length * 8);
+        }
+
+        void putDoubles(double[] values) {
+            putInt(values.length);
+            ensure(values.length * 8);
+            buffer.asDoubleBuffer().put(values);
+            buffer.position(buffer.position() + values.length * 8);
+        }
+
+        void putString(String value) {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+            Integer id = stringIds.get(value);
+            if (id == null) {
+                id = strings.size();
+                stringIds.put(value, id);
+                strings.add(value);
+            }
+            putInt(id);
+        }
+
+        /** The pool of strings written so far: a count, then each as length-prefixed UTF-8. */
+        ByteBuffer stringPool() {
+            byte[][] encoded = new byte[strings.size()][];
+            int size = 4;
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                size += 4 + encoded[i].length;
+            }
+            ByteBuffer pool = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+            pool.putInt(encoded.length);
+            for (byte[] bytes : encoded) {
+                pool.putInt(bytes.length).put(bytes);
+            }
+            return pool.flip();
+        }
+
+        ByteBuffer flip() {
+            return buffer.flip();
+        }
+    }
+
+    static final class Input {
+        private final ByteBuffer buffer;
+        private final String[] strings;
+
+        /** Reads the string pool at the start of the buffer. */
+        Input(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+
+        byte getByte() { return buffer.get(); }
+        int getInt() { return buffer.getInt(); }
+        long getLong() { return buffer.getLong(); }
+        double getDouble() { return buffer.getDouble(); }
+
+        byte[] getBytes() {
+            byte[] values = new byte[buffer.getInt()];
+            buffer.get(values);
+            return values;
+        }
+
+        int[] getInts() {
+            int[] values = new int[buffer.getInt()];
+            buffer.asIntBuffer().get(values);
+            buffer.position(buffer.position() + values.length * 4);
+            return values;
+        }
+
+        long[] getLongs() {
+            long[] values = new long[buffer.getInt()];
+            buffer.asLongBuffer().get(values);
+            buffer.position(buffer.position() + values.length * 8);
+            return values;
+        }
+
+        double[] getDoubles() {
+            double[] values = new double[buffer.getInt()];
+            buffer.asDoubleBuffer().get(values);
+            buffer.position(buffer.position() + values.length * 8);
+            return values;
+        }
+
+        String getString() {
+            int id = buffer.getInt();
+            return id < 0 ? null : strings[id];
+        }
+    }
+}
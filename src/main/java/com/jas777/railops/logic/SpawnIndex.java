@@ -0,0 +1,53 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.TimetableEntry;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Timetable entries sorted by the time their spawn window opens, consumed through a moving cursor.
+ * Each entry is handed out exactly once, so the simulation only ever touches entries that are due.
+ */
+public class SpawnIndex {
+
+    private final TimetableEntry[] entries;
+    private final long[] spawnTimes;
+    private int cursor = 0;
+
+    public SpawnIndex(List<TimetableEntry> timetable, ToLongFunction<TimetableEntry> spawnTime) {
+        this.entries = timetable.toArray(new TimetableEntry[0]);
+        Arrays.sort(entries, Comparator.comparingLong(spawnTime));
+        this.spawnTimes = new long[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            spawnTimes[i] = spawnTime.applyAsLong(entries[i]);
+        }
+    }
+
+    /**
+     * Spawn time of the entry under the cursor, or {@link Long#MAX_VALUE} when the index is exhausted.
+     */
+    public long nextSpawnTime() {
+        return cursor < entries.length ? spawnTimes[cursor] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Return the entry under the cursor and advance it if that entry is due at the given time, otherwise null.
+     */
+    public TimetableEntry pollDue(long now) {
+        if (cursor < entries.length && spawnTimes[cursor] <= now) {
+            return entries[cursor++];
+        }
+        return null;
+    }
+
+    public int size() { return entries.length; }
+    public int getCursor() { return cursor; }
+
+    /** Move the cursor back or forth, e.g. when restoring a snapshot. */
+    public void setCursor(int cursor) {
+        this.cursor = Math.max(0, Math.min(cursor, entries.length));
+    }
+}
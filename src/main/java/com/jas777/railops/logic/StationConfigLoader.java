@@ -0,0 +1,69 @@
+package com.jas777.railops.logic;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jas777.railops.model.NetworkConfig;
+import com.jas777.railops.model.StationConfig;
+import com.jas777.railops.model.Switch;
+import com.jas777.railops.model.SwitchState;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads station layouts without touching the UI so they can be used by the headless runners as well.
+ */
+public class StationConfigLoader {
+
+    // Relative resource names resolve against the application package, where the layouts are shipped
+    private static final String RESOURCE_ROOT = "/com/jas777/railops/";
+
+    /**
+     * Load a station layout from the classpath. Layouts are read with the streaming {@link StationConfigReader},
+     * so their coordinates are packed rather than boxed.
+     */
+    public static StationConfig load(String resourceName) throws IOException {
+        try (InputStream is = open(resourceName)) {
+            return StationConfigReader.read(is);
+        }
+    }
+
+    /** Load a station layout from a file, e.g. an exported network too large to ship as a resource. */
+    public static StationConfig load(Path file) throws IOException {
+        return StationConfigReader.read(file);
+    }
+
+    /**
+     * Load a network description. The station layouts it names are loaded separately with {@link #load}.
+     */
+    public static NetworkConfig loadNetwork(String resourceName) throws IOException {
+        return read(resourceName, NetworkConfig.class);
+    }
+
+    private static <T> T read(String resourceName, Class<T> type) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        try (InputStream is = open(resourceName)) {
+            return mapper.readValue(is, type);
+        }
+    }
+
+    /** Open a layout resource, e.g. to digest it against {@link TopologyCache}. */
+    static InputStream open(String resourceName) throws IOException {
+        String path = resourceName.startsWith("/") ? resourceName : RESOURCE_ROOT + resourceName;
+        InputStream is = StationConfigLoader.class.getResourceAsStream(path);
+        if (is == null) {
+            throw new IOException("Resource file not found: " + resourceName);
+        }
+        return is;
+    }
+
+    public static Map<String, SwitchState> createSwitchStates(StationConfig config) {
+        Map<String, SwitchState> switchStates = new HashMap<>();
+        for (Switch sw : config.getSwitches()) {
+            switchStates.put(sw.id(), new SwitchState(sw.id(), sw.defaultState()));
+        }
+        return switchStates;
+    }
+}
@@ -0,0 +1,242 @@
+package com.jas777.railops.logic;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.jas777.railops.model.LayoutGeometry;
+import com.jas777.railops.model.Signal;
+import com.jas777.railops.model.StationConfig;
+import com.jas777.railops.model.Switch;
+import com.jas777.railops.model.Track;
+import com.jas777.railops.model.Waypoint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a {@link StationConfig} token by token with Jackson's streaming parser.
+ * <p>
+ * Nothing is buffered beyond the element being read: every coordinate goes straight into the layout's
+ * {@link LayoutGeometry} and the tracks, switches, signals and waypoints refer to it by point index, so there
+ * is no tree and no boxed {@code Double} per coordinate. Node and track ids are interned, since every node id
+ * appears on both a track and a switch. This keeps exports of several hundred MB within a modest heap.
+ * <p>
+ * Unknown fields are skipped.
+ */
+public final class StationConfigReader {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final JsonParser parser;
+    private final LayoutGeometry geometry = new LayoutGeometry();
+    private final Map<String, String> strings = new HashMap<>();
+
+    private StationConfigReader(JsonParser parser) {
+        this.parser = parser;
+    }
+
+    public static StationConfig read(InputStream in) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            return new StationConfigReader(parser).readConfig();
+        }
+    }
+
+    public static StationConfig read(Path file) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(file.toFile())) {
+            return new StationConfigReader(parser).readConfig();
+        }
+    }
+
+    private StationConfig readConfig() throws IOException {
+        parser.nextToken();
+        expect(JsonToken.START_OBJECT);
+        StationConfig config = new StationConfig();
+        config.setGeometry(geometry);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "stationName" -> config.setStationName(text());
+                case "tracks" -> config.setTracks(readArray(this::readTrack));
+                case "switches" -> config.setSwitches(readArray(this::readSwitch));
+                case "waypoints" -> config.setWaypoints(readArray(this::readWaypoint));
+                case "signals" -> config.setSignals(readArray(this::readSignal));
+                default -> parser.skipChildren();
+            }
+        }
+        expect(JsonToken.END_OBJECT);
+        geometry.trim();
+        return config;
+    }
+
+    private Track readTrack() throws IOException {
+        expect(JsonToken.START_OBJECT);
+        String id = null, type = null, color = null, entryNodeId = null, exitNodeId = null;
+        int firstPoint = geometry.pointCount();
+        int pointCount = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> id = text();
+                case "type" -> type = text();
+                case "points" -> {
+                    firstPoint = geometry.pointCount();
+                    pointCount = readPolyline();
+                }
+                case "color" -> color = text();
+                case "entryNodeId" -> entryNodeId = text();
+                case "exitNodeId" -> exitNodeId = text();
+                default -> parser.skipChildren();
+            }
+        }
+        return new Track(id, type, geometry, firstPoint, pointCount, color, entryNodeId, exitNodeId);
+    }
+
+    private Switch readSwitch() throws IOException {
+        expect(JsonToken.START_OBJECT);
+        String id = null, defaultState = null, p1ConnectionId = null, p2MainConnectionId = null,
+                p2SideConnectionId = null;
+        int p1 = LayoutGeometry.NONE, p2Main = LayoutGeometry.NONE, p2Side = LayoutGeometry.NONE;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> id = text();
+                case "p1" -> p1 = readPoint();
+                case "p2Main" -> p2Main = readPoint();
+                case "p2Side" -> p2Side = readPoint();
+                case "defaultState" -> defaultState = text();
+                case "p1ConnectionId" -> p1ConnectionId = text();
+                case "p2MainConnectionId" -> p2MainConnectionId = text();
+                case "p2SideConnectionId" -> p2SideConnectionId = text();
+                default -> parser.skipChildren();
+            }
+        }
+        return new Switch(id, geometry, p1, p2Main, p2Side, defaultState, p1ConnectionId, p2MainConnectionId,
+                p2SideConnectionId);
+    }
+
+    private Waypoint readWaypoint() throws IOException {
+        expect(JsonToken.START_OBJECT);
+        String id = null, name = null;
+        int position = LayoutGeometry.NONE;
+        Waypoint.WaypointType type = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> id = text();
+                case "name" -> name = text();
+                case "position" -> position = readPoint();
+                case "type" -> type = constant(Waypoint.WaypointType.class);
+                default -> parser.skipChildren();
+            }
+        }
+        return new Waypoint(id, name, geometry, position, type);
+    }
+
+    private Signal readSignal() throws IOException {
+        expect(JsonToken.START_OBJECT);
+        String id = null, name = null, protectedNodeId = null;
+        int position = LayoutGeometry.NONE;
+        Signal.SignalAspect aspect = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> id = text();
+                case "name" -> name = text();
+                case "position" -> position = readPoint();
+                case "currentAspect" -> aspect = constant(Signal.SignalAspect.class);
+                case "protectedNodeId" -> protectedNodeId = text();
+                default -> parser.skipChildren();
+            }
+        }
+        return new Signal(id, name, geometry, position, aspect, protectedNodeId);
+    }
+
+    /**
+     * Points of a polyline are appended back to back, so the track keeps only the first index and the count
+     * returned here. A null polyline has no points.
+     */
+    private int readPolyline() throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) return 0;
+        expect(JsonToken.START_ARRAY);
+        int first = geometry.pointCount();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (readPoint() == LayoutGeometry.NONE) {
+                geometry.addPoint(Double.NaN, Double.NaN);
+            }
+        }
+        return geometry.pointCount() - first;
+    }
+
+    /** Index of the point at the current token, or {@link LayoutGeometry#NONE} for null. */
+    private int readPoint() throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) return LayoutGeometry.NONE;
+        expect(JsonToken.START_ARRAY);
+        double x = Double.NaN;
+        double y = Double.NaN;
+        int coordinates = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (!parser.currentToken().isNumeric()) {
+                throw new JsonParseException(parser, "Expected a coordinate, got " + parser.currentToken());
+            }
+            if (coordinates == 0) {
+                x = parser.getDoubleValue();
+            } else if (coordinates == 1) {
+                y = parser.getDoubleValue();
+            }
+            coordinates++;
+        }
+        return coordinates < 2 ? geometry.addPoint(Double.NaN, Double.NaN) : geometry.addPoint(x, y);
+    }
+
+    private <T> List<T> readArray(ElementReader<T> reader) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) return null;
+        expect(JsonToken.START_ARRAY);
+        List<T> values = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            values.add(reader.read());
+        }
+        return values;
+    }
+
+    private String text() throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) return null;
+        if (!parser.currentToken().isScalarValue()) {
+            throw new JsonParseException(parser, "Expected a string, got " + parser.currentToken());
+        }
+        String value = parser.getText();
+        String interned = strings.putIfAbsent(value, value);
+        return interned != null ? interned : value;
+    }
+
+    private <E extends Enum<E>> E constant(Class<E> type) throws IOException {
+        String value = text();
+        if (value == null) return null;
+        try {
+            return Enum.valueOf(type, value);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException(parser, "Unknown " + type.getSimpleName() + ": " + value);
+        }
+    }
+
+    private void expect(JsonToken token) throws IOException {
+        if (parser.currentToken() != token) {
+            throw new JsonParseException(parser, "Expected " + token + ", got " + parser.currentToken());
+        }
+    }
+
+    @FunctionalInterface
+    private interface ElementReader<T> {
+        T read() throws IOException;
+    }
+}
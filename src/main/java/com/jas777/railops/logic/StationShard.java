@@ -0,0 +1,165 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.log.Log;
+import com.jas777.railops.log.Logger;
+import com.jas777.railops.log.Subsystem;
+import com.jas777.railops.model.NetworkLink;
+import com.jas777.railops.model.TimetableEntry;
+import com.jas777.railops.model.Train;
+import com.jas777.railops.util.MpscRingBuffer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One station of a {@link NetworkSimulation}: a {@link SimulationController} plus the inbox through which
+ * neighbouring shards hand trains over. Everything except {@link #offer} runs on the shard's own worker thread.
+ * <p>
+ * A train that clears this station leaves through an exit node it can reach from where it stood: over the link
+ * towards its destination station, or else over the first such link that does not lead back where it came from.
+ * It terminates here if this is its destination or the end of the line. A train that can reach none of the
+ * outbound links is dropped with an error. Arrival times travel between shards in simulated seconds, so handoffs past midnight keep their day.
+ */
+public final class StationShard {
+
+    private static final Logger LOG = Log.get(Subsystem.ENGINE);
+
+    private static final Comparator<Handoff> HANDOFF_ORDER = Comparator.comparingLong(Handoff::arrival)
+            .thenComparing(h -> h.entry().trainNumber());
+
+    private final String name;
+    private final SimulationController controller;
+    private final MpscRingBuffer<Handoff> inbox;
+    private final List<NetworkLink> outbound = new ArrayList<>();
+    private final List<boolean[]> reachesExit = new ArrayList<>(); // Per outbound link, by node
+    private final List<Handoff> drained = new ArrayList<>();
+    private final List<Pending> overflow = new ArrayList<>();
+    private Map<String, StationShard> network = Map.of();
+    private long handedOff = 0;
+    private long received = 0;
+    private long terminated = 0;
+    private long dropped = 0;
+
+    /** A train on its way in; arrival is in simulated seconds. */
+    record Handoff(long arrival, TimetableEntry entry) {}
+
+    /** A handoff the target's inbox had no room for yet. */
+    private record Pending(StationShard target, Handoff handoff) {}
+
+    StationShard(String name, SimulationController controller, int inboxCapacity) {
+        this.name = name;
+        this.controller = controller;
+        this.inbox = new MpscRingBuffer<>(inboxCapacity);
+        controller.addExitListener(this::onTrainExit);
+    }
+
+    void connect(Map<String, StationShard> network, List<NetworkLink> links) {
+        this.network = network;
+        CompiledTopology topology = controller.getTopology();
+        for (NetworkLink link : links) {
+            if (!name.equals(link.fromStation()) || !network.containsKey(link.toStation())) continue;
+            int exit = topology.nodeIndex(link.exitNodeId());
+            if (exit == CompiledTopology.NONE) {
+                LOG.error(name + ": link to " + link.toStation() + " leaves through unknown node "
+                        + link.exitNodeId());
+                continue;
+            }
+            outbound.add(link);
+            reachesExit.add(InterlockingTable.reachesAny(topology, new int[] { exit }));
+        }
+    }
+
+    private void onTrainExit(TimetableEntry entry, Train train, long exitTime) {
+        if (name.equals(entry.toStation()) || outbound.isEmpty()) {
+            terminated++;
+            return;
+        }
+        int node = train.getCurrentNodeId() == null ? CompiledTopology.NONE
+                : controller.getTopology().nodeIndex(train.getCurrentNodeId());
+        NetworkLink link = node == CompiledTopology.NONE ? null : linkFor(entry, node);
+        if (link == null) {
+            dropped++;
+            LOG.error(name + ": train " + entry.trainNumber() + " left from " + train.getCurrentNodeId()
+                    + ", which reaches no outbound link; dropping it");
+            return;
+        }
+
+        long arrival = exitTime + link.travelSeconds();
+        long dwell = Math.floorMod(Duration.between(entry.scheduledArrival(), entry.scheduledDeparture()).toSeconds(),
+                24 * 3600L);
+        TimetableEntry next = new TimetableEntry(entry.trainNumber(), name, entry.toStation(),
+                SimulationController.toLocalTime(arrival), SimulationController.toLocalTime(arrival + dwell),
+                entry.designatedPlatform(), link.entryNodeId());
+
+        Pending pending = new Pending(network.get(link.toStation()), new Handoff(arrival, next));
+        if (!overflow.isEmpty() || !pending.target().offer(pending.handoff())) {
+            overflow.add(pending);
+        }
+        handedOff++;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(name + ": train " + entry.trainNumber() + " handed to " + link.toStation());
+        }
+    }
+
+    // Only links whose exit node the train can still reach from the node it cleared the station at
+    private NetworkLink linkFor(TimetableEntry entry, int node) {
+        for (int i = 0; i < outbound.size(); i++) {
+            if (reachesExit.get(i)[node] && outbound.get(i).toStation().equals(entry.toStation())) {
+                return outbound.get(i);
+            }
+        }
+        for (int i = 0; i < outbound.size(); i++) {
+            if (reachesExit.get(i)[node] && !outbound.get(i).toStation().equals(entry.fromStation())) {
+                return outbound.get(i);
+            }
+        }
+        return null;
+    }
+
+    /** Called by other shards' threads. */
+    boolean offer(Handoff handoff) {
+        return inbox.offer(handoff);
+    }
+
+    /**
+     * Retry handoffs that found the target inbox full, oldest first.
+     */
+    void flushOverflow() {
+        int sent = 0;
+        while (sent < overflow.size() && overflow.get(sent).target().offer(overflow.get(sent).handoff())) {
+            sent++;
+        }
+        overflow.subList(0, sent).clear();
+    }
+
+    /**
+     * Inject everything in the inbox. Producers race, so the batch is sorted first to keep runs deterministic.
+     */
+    void drainInbox() {
+        Handoff handoff;
+        while ((handoff = inbox.poll()) != null) {
+            drained.add(handoff);
+        }
+        if (drained.isEmpty()) return;
+
+        drained.sort(HANDOFF_ORDER);
+        for (Handoff h : drained) {
+            controller.injectTrain(h.entry(), h.arrival());
+        }
+        received += drained.size();
+        drained.clear();
+    }
+
+    public String getName() { return name; }
+    public SimulationController getController() { return controller; }
+    public long getHandedOff() { return handedOff; }
+    public long getReceived() { return received; }
+    public long getTerminated() { return terminated; }
+
+    /** Trains that could reach no outbound link and were taken out of the network. */
+    public long getDropped() { return dropped; }
+    public int getBacklog() { return overflow.size(); }
+}
@@ -0,0 +1,77 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.SwitchState;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Compact position vector for all switches of a {@link CompiledTopology}: one bit per switch index,
+ * set when the switch lies SIDE and clear when it lies MAIN.
+ */
+public final class SwitchPositions {
+
+    private long[] words;
+    private int size;
+    private long version = 0;
+
+    public SwitchPositions(int switchCount) {
+        this.size = switchCount;
+        this.words = new long[(switchCount + 63) >>> 6];
+    }
+
+    public static SwitchPositions of(CompiledTopology topology, Map<String, SwitchState> switchStates) {
+        SwitchPositions positions = new SwitchPositions(topology.switchCount());
+        for (int sw = 0; sw < topology.switchCount(); sw++) {
+            SwitchState state = switchStates.get(topology.switchId(sw));
+            if (state != null) {
+                positions.set(sw, CompiledTopology.parseSwitchState(state.getState()));
+            }
+        }
+        return positions;
+    }
+
+    public boolean isSide(int sw) {
+        return (words[sw >>> 6] & (1L << sw)) != 0;
+    }
+
+    /** {@link CompiledTopology#STATE_MAIN} or {@link CompiledTopology#STATE_SIDE}. */
+    public byte state(int sw) {
+        return isSide(sw) ? CompiledTopology.STATE_SIDE : CompiledTopology.STATE_MAIN;
+    }
+
+    public boolean matches(int sw, byte requiredState) {
+        return isSide(sw) == (requiredState == CompiledTopology.STATE_SIDE);
+    }
+
+    /**
+     * Set the position of a switch. Returns true if it actually moved.
+     */
+    public boolean set(int sw, byte state) {
+        long mask = 1L << sw;
+        long before = words[sw >>> 6];
+        long after = state == CompiledTopology.STATE_SIDE ? before | mask : before & ~mask;
+        if (after == before) {
+            return false;
+        }
+        words[sw >>> 6] = after;
+        version++;
+        return true;
+    }
+
+    /** Make room for switches appended to the topology; they start out MAIN. */
+    public void grow(int switchCount) {
+        if (switchCount <= size) return;
+        words = Arrays.copyOf(words, (switchCount + 63) >>> 6);
+        size = switchCount;
+        version++;
+    }
+
+    public int size() { return size; }
+
+    /** Incremented every time a switch moves. */
+    public long version() { return version; }
+
+    public int wordCount() { return words.length; }
+    public long word(int index) { return words[index]; }
+}
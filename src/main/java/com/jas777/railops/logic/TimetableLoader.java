@@ -0,0 +1,513 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.log.Log;
+import com.jas777.railops.log.Logger;
+import com.jas777.railops.log.Subsystem;
+import com.jas777.railops.model.StationConfig;
+import com.jas777.railops.model.TimetableEntry;
+import com.jas777.railops.model.Track;
+import com.jas777.railops.util.IntList;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams the timetable of one station out of large schedule files: GTFS {@code stop_times.txt}, or CSV exports
+ * with the columns {@code station, train_number, from_station, to_station, arrival, departure, platform,
+ * entry_node} (only {@code train_number}, {@code arrival} and {@code departure} are required, plus {@code station}
+ * when filtering by station). The format is recognised from the header row.
+ * <p>
+ * The file is memory-mapped and scanned in place: fields are byte ranges of the mapping and are compared against
+ * the station filter without decoding, so rows for other stations cost no allocation. Strings are only built for
+ * rows that are kept, and every distinct value is interned once. Memory use is bounded by the kept rows.
+ * <p>
+ * GTFS rows must be grouped by trip in stop order, as feeds normally are. A trip becomes one entry for its first
+ * call at the station, running from the trip's first stop to its last. GTFS has no platforms or entry nodes, so
+ * those are left to the allocator and the default entry node.
+ * <p>
+ * Entries come back in spawn order, i.e. by arrival on the simulated day, bucketed per second, so
+ * {@link SpawnIndex} and the platform planner get presorted input. Quoted fields are supported, line breaks inside
+ * them are not.
+ */
+public final class TimetableLoader {
+
+    private static final Logger LOG = Log.get(Subsystem.SIMULATION);
+
+    private static final long WINDOW = 1L << 30; // Mapped at a time; a line may not be longer
+    private static final int SECONDS_PER_DAY = 24 * 3600;
+    private static final int NO_TIME = -1;
+
+    private final byte[][] stations;
+    private final String defaultEntryNode;
+    private final long window;
+    private final Interner interner = new Interner();
+
+    // Current line
+    private MappedByteBuffer buffer;
+    private int[] fieldStart = new int[16];
+    private int[] fieldEnd = new int[16];
+    private boolean[] fieldQuoted = new boolean[16];
+    private int fieldCount;
+    private byte[] scratch = new byte[256];
+
+    private final List<TimetableEntry> entries = new ArrayList<>();
+    private final IntList spawnKeys = new IntList();
+    private long rowsRead;
+
+    /**
+     * @param stations         ids to keep rows for: GTFS stop ids, or values of the CSV {@code station} column.
+     *                         Empty keeps every CSV row; GTFS needs at least one.
+     * @param defaultEntryNode entry node for rows that do not name one
+     */
+    public TimetableLoader(Collection<String> stations, String defaultEntryNode) {
+        this(stations, defaultEntryNode, WINDOW);
+    }
+
+    /** With a smaller mapping window, so tests can split rows across windows. */
+    TimetableLoader(Collection<String> stations, String defaultEntryNode, long window) {
+        this.window = window;
+        this.stations = new byte[stations.size()][];
+        int i = 0;
+        for (String station : stations) {
+            this.stations[i++] = station.getBytes(StandardCharsets.UTF_8);
+        }
+        this.defaultEntryNode = defaultEntryNode;
+    }
+
+    /**
+     * Entry node of the first entrance track, as used by the demo timetable.
+     */
+    public static String defaultEntryNode(StationConfig config) {
+        for (Track track : config.getTracks()) {
+            if (track.entryNodeId() != null
+                    && ("MAIN_LINE".equals(track.type()) || "PLATFORM_TRACK".equals(track.type()))) {
+                return track.entryNodeId();
+            }
+        }
+        return null;
+    }
+
+    public List<TimetableEntry> load(Path file) throws IOException {
+        long start = System.nanoTime();
+        entries.clear();
+        spawnKeys.clear();
+        rowsRead = 0;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            Format format = null;
+            while (position < size) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(window, size - position));
+                boolean lastWindow = position + buffer.capacity() == size;
+                int offset = position == 0 ? skipBom() : 0;
+
+                while (offset < buffer.capacity()) {
+                    int end = splitLine(offset);
+                    if (end < 0) {
+                        if (!lastWindow) break; // Line continues in the next window
+                        end = buffer.capacity();
+                    }
+                    if (fieldCount > 1 || fieldEnd[0] > fieldStart[0]) {
+                        if (format == null) {
+                            format = header(file);
+                        } else {
+                            rowsRead++;
+                            format.row();
+                        }
+                    }
+                    offset = end + 1;
+                }
+                if (offset == 0) {
+                    throw new IOException("Line longer than " + window + " bytes in " + file);
+                }
+                position += Math.min(offset, buffer.capacity());
+            }
+            if (format != null) {
+                format.finish();
+            }
+        } finally {
+            buffer = null;
+        }
+
+        List<TimetableEntry> sorted = sortBySpawnTime();
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Loaded %d of %d timetable rows from %s in %.0f ms", sorted.size(), rowsRead,
+                    file.getFileName(), (System.nanoTime() - start) / 1_000_000.0));
+        }
+        return sorted;
+    }
+
+    public long getRowsRead() { return rowsRead; }
+
+    private int skipBom() {
+        return buffer.capacity() >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB
+                && buffer.get(2) == (byte) 0xBF ? 3 : 0;
+    }
+
+    /**
+     * Record the field boundaries of the line starting at {@code offset}. Returns the offset of its line feed,
+     * or -1 if the window ends first.
+     */
+    private int splitLine(int offset) {
+        int limit = buffer.capacity();
+        int i = offset;
+        fieldCount = 0;
+        while (true) {
+            if (fieldCount == fieldStart.length) {
+                fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+                fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+                fieldQuoted = Arrays.copyOf(fieldQuoted, fieldCount * 2);
+            }
+            int field = fieldCount++;
+            fieldQuoted[field] = false;
+            if (i < limit && buffer.get(i) == '"') {
+                fieldQuoted[field] = true;
+                fieldStart[field] = ++i;
+                while (i < limit && !(buffer.get(i) == '"' && (i + 1 >= limit || buffer.get(i + 1) != '"'))) {
+                    i += buffer.get(i) == '"' ? 2 : 1;
+                }
+                fieldEnd[field] = i;
+                if (i < limit) i++; // Closing quote
+            } else {
+                fieldStart[field] = i;
+            }
+            while (i < limit) {
+                byte b = buffer.get(i);
+                if (b == ',' || b == '\n') break;
+                i++;
+            }
+            if (!fieldQuoted[field]) {
+                fieldEnd[field] = i > fieldStart[field] && buffer.get(i - 1) == '\r' ? i - 1 : i;
+            }
+            if (i >= limit) return -1;
+            if (buffer.get(i) == '\n') return i;
+            i++; // Comma
+        }
+    }
+
+    private boolean isEmpty(int field) {
+        return field >= fieldCount || fieldEnd[field] <= fieldStart[field];
+    }
+
+    private boolean fieldEquals(int field, byte[] value) {
+        return fieldEquals(field, value, value.length);
+    }
+
+    private boolean fieldEquals(int field, Bytes value) {
+        return fieldEquals(field, value.data, value.length);
+    }
+
+    private boolean fieldEquals(int field, byte[] value, int length) {
+        if (field >= fieldCount || fieldEnd[field] - fieldStart[field] != length) return false;
+        int start = fieldStart[field];
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(start + i) != value[i]) return false;
+        }
+        return true;
+    }
+
+    private boolean isStation(int field) {
+        for (byte[] station : stations) {
+            if (fieldEquals(field, station)) return true;
+        }
+        return false;
+    }
+
+    /** Copy a field into {@link #scratch}, unescaping doubled quotes. Returns its length. */
+    private int copyField(int field) {
+        int start = fieldStart[field];
+        int length = fieldEnd[field] - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(start, scratch, 0, length);
+        if (!fieldQuoted[field]) return length;
+        int out = 0;
+        for (int i = 0; i < length; i++) {
+            scratch[out++] = scratch[i];
+            if (scratch[i] == '"' && i + 1 < length && scratch[i + 1] == '"') i++;
+        }
+        return out;
+    }
+
+    private String string(int field) {
+        if (isEmpty(field)) return null;
+        return interner.intern(scratch, copyField(field));
+    }
+
+    private String string(int field, String fallback) {
+        String value = string(field);
+        return value == null ? fallback : value;
+    }
+
+    /**
+     * Parse H:MM:SS or HH:MM[:SS] into seconds. GTFS times past midnight (e.g. 25:10:00) are allowed.
+     * Returns {@link #NO_TIME} for empty or malformed fields.
+     */
+    private int time(int field) {
+        if (isEmpty(field)) return NO_TIME;
+        int seconds = 0;
+        int part = 0;
+        int parts = 1;
+        for (int i = fieldStart[field]; i < fieldEnd[field]; i++) {
+            byte b = buffer.get(i);
+            if (b == ':') {
+                seconds = seconds * 60 + part;
+                part = 0;
+                parts++;
+            } else if (b >= '0' && b <= '9') {
+                part = part * 10 + (b - '0');
+            } else if (b != ' ') {
+                return NO_TIME;
+            }
+        }
+        seconds = seconds * 60 + part;
+        if (parts == 2) seconds *= 60; // HH:MM
+        return parts >= 2 && parts <= 3 ? seconds : NO_TIME;
+    }
+
+    private void add(String trainNumber, String from, String to, int arrival, int departure, String platform,
+                     String entryNode) {
+        LocalTime arrivalTime = LocalTime.ofSecondOfDay(Math.floorMod(arrival, SECONDS_PER_DAY));
+        LocalTime departureTime = LocalTime.ofSecondOfDay(Math.floorMod(departure, SECONDS_PER_DAY));
+        entries.add(new TimetableEntry(trainNumber, from, to, arrivalTime, departureTime, platform, entryNode));
+        spawnKeys.add((int) (SimulationController.toSimSeconds(arrivalTime) - SimulationController.START_OF_DAY));
+    }
+
+    /**
+     * Counting sort by second of the simulated day. Stable, so rows arriving in the same second keep file order.
+     */
+    private List<TimetableEntry> sortBySpawnTime() {
+        int[] offsets = new int[SECONDS_PER_DAY + 1];
+        for (int i = 0; i < spawnKeys.size(); i++) {
+            offsets[spawnKeys.get(i) + 1]++;
+        }
+        for (int s = 0; s < SECONDS_PER_DAY; s++) {
+            offsets[s + 1] += offsets[s];
+        }
+        TimetableEntry[] sorted = new TimetableEntry[entries.size()];
+        for (int i = 0; i < spawnKeys.size(); i++) {
+            sorted[offsets[spawnKeys.get(i)]++] = entries.get(i);
+        }
+        entries.clear();
+        spawnKeys.clear();
+        return new ArrayList<>(Arrays.asList(sorted));
+    }
+
+    private Format header(Path file) throws IOException {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int field = 0; field < fieldCount; field++) {
+            String name = string(field);
+            if (name != null) {
+                columns.putIfAbsent(name.trim().toLowerCase(), field);
+            }
+        }
+        if (columns.containsKey("trip_id") && columns.containsKey("stop_id")) {
+            if (stations.length == 0) {
+                throw new IllegalArgumentException("A station filter is needed to load GTFS stop times");
+            }
+            return new GtfsFormat(columns, file);
+        }
+        if (columns.containsKey("train_number")) {
+            return new CsvFormat(columns, file);
+        }
+        throw new IOException("Unrecognised timetable header in " + file + ": " + columns.keySet());
+    }
+
+    private static int column(Map<String, Integer> columns, String name, boolean required, Path file)
+            throws IOException {
+        Integer index = columns.get(name);
+        if (index == null && required) {
+            throw new IOException("Timetable has no " + name + " column: " + file);
+        }
+        return index == null ? Integer.MAX_VALUE : index;
+    }
+
+    private interface Format {
+        void row();
+
+        default void finish() {
+        }
+    }
+
+    private final class CsvFormat implements Format {
+        private final int station;
+        private final int trainNumber;
+        private final int from;
+        private final int to;
+        private final int arrival;
+        private final int departure;
+        private final int platform;
+        private final int entryNode;
+
+        CsvFormat(Map<String, Integer> columns, Path file) throws IOException {
+            // Without a station column a filter would silently drop every row
+            station = column(columns, "station", stations.length > 0, file);
+            trainNumber = column(columns, "train_number", true, file);
+            from = column(columns, "from_station", false, file);
+            to = column(columns, "to_station", false, file);
+            arrival = column(columns, "arrival", true, file);
+            departure = column(columns, "departure", true, file);
+            platform = column(columns, "platform", false, file);
+            entryNode = column(columns, "entry_node", false, file);
+        }
+
+        @Override
+        public void row() {
+            if (stations.length > 0 && !isStation(station)) return;
+            int arrivalTime = time(arrival);
+            int departureTime = time(departure);
+            if (arrivalTime == NO_TIME) arrivalTime = departureTime;
+            if (departureTime == NO_TIME) departureTime = arrivalTime;
+            String number = string(trainNumber);
+            if (arrivalTime == NO_TIME || number == null) return;
+            add(number, string(from), string(to), arrivalTime, departureTime, string(platform),
+                    string(entryNode, defaultEntryNode));
+        }
+    }
+
+    /**
+     * Follows one trip at a time. Only the current trip id and its first and last stop are kept, as raw bytes.
+     */
+    private final class GtfsFormat implements Format {
+        private final int tripId;
+        private final int arrival;
+        private final int departure;
+        private final int stopId;
+
+        private final Bytes trip = new Bytes();
+        private final Bytes firstStop = new Bytes();
+        private final Bytes lastStop = new Bytes();
+
+        // Call at the station on the current trip, if any
+        private boolean calls;
+        private String trainNumber;
+        private String origin;
+        private int arrivalTime;
+        private int departureTime;
+
+        GtfsFormat(Map<String, Integer> columns, Path file) throws IOException {
+            tripId = column(columns, "trip_id", true, file);
+            arrival = column(columns, "arrival_time", true, file);
+            departure = column(columns, "departure_time", true, file);
+            stopId = column(columns, "stop_id", true, file);
+        }
+
+        @Override
+        public void row() {
+            if (isEmpty(tripId) || isEmpty(stopId)) return;
+            if (!fieldEquals(tripId, trip)) {
+                finish();
+                trip.set(scratch, copyField(tripId));
+                firstStop.set(scratch, copyField(stopId));
+            }
+            lastStop.set(scratch, copyField(stopId));
+
+            if (!calls && isStation(stopId)) {
+                int arrivalAt = time(arrival);
+                int departureAt = time(departure);
+                if (arrivalAt == NO_TIME) arrivalAt = departureAt;
+                if (departureAt == NO_TIME) departureAt = arrivalAt;
+                if (arrivalAt == NO_TIME) return;
+                calls = true;
+                trainNumber = interner.intern(trip.data, trip.length);
+                origin = interner.intern(firstStop.data, firstStop.length);
+                arrivalTime = arrivalAt;
+                departureTime = departureAt;
+            }
+        }
+
+        @Override
+        public void finish() {
+            if (calls) {
+                add(trainNumber, origin, interner.intern(lastStop.data, lastStop.length), arrivalTime,
+                        departureTime, null, defaultEntryNode);
+                calls = false;
+            }
+        }
+    }
+
+    /** Reusable byte holder that grows as needed. */
+    private static final class Bytes {
+        byte[] data = new byte[64];
+        int length = -1;
+
+        void set(byte[] source, int count) {
+            if (data.length < count) {
+                data = new byte[Math.max(count, data.length * 2)];
+            }
+            System.arraycopy(source, 0, data, 0, count);
+            length = count;
+        }
+    }
+
+    /**
+     * Open-addressing string pool keyed by UTF-8 bytes, so each distinct value is decoded once.
+     */
+    private static final class Interner {
+        private String[] strings = new String[1024];
+        private byte[][] keys = new byte[1024][];
+        private int size;
+
+        String intern(byte[] bytes, int length) {
+            int hash = 1;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            int mask = keys.length - 1;
+            int slot = mix(hash) & mask;
+            while (keys[slot] != null) {
+                if (Arrays.equals(keys[slot], 0, keys[slot].length, bytes, 0, length)) {
+                    return strings[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            byte[] key = Arrays.copyOf(bytes, length);
+            String value = new String(key, StandardCharsets.UTF_8);
+            keys[slot] = key;
+            strings[slot] = value;
+            if (++size * 2 > keys.length) {
+                rehash();
+            }
+            return value;
+        }
+
+        private void rehash() {
+            byte[][] oldKeys = keys;
+            String[] oldStrings = strings;
+            keys = new byte[oldKeys.length * 2][];
+            strings = new String[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                byte[] key = oldKeys[i];
+                if (key == null) continue;
+                int hash = 1;
+                for (byte b : key) {
+                    hash = 31 * hash + b;
+                }
+                int slot = mix(hash) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                strings[slot] = oldStrings[i];
+            }
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.log.Log;
+import com.jas777.railops.log.Logger;
+import com.jas777.railops.log.Subsystem;
+import com.jas777.railops.model.LayoutGeometry;
+import com.jas777.railops.model.Signal;
+import com.jas777.railops.model.StationConfig;
+import com.jas777.railops.model.Switch;
+import com.jas777.railops.model.Track;
+import com.jas777.railops.model.Waypoint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Compiled form of a station layout, so startup does not have to parse the JSON, build the logical graph and
+ * enumerate the interlocking routes every time.
+ * <p>
+ * The cache file holds the layout itself, the interned {@link CompiledTopology} with its adjacency and node
+ * coordinates, and the {@link InterlockingTable} route tables with their conflict sets. It is stamped with the
+ * format version it was written in and the SHA-256 digest of the JSON it was compiled from; loading streams the
+ * JSON through the digest, maps the file and uses it only if the stamp still matches. Otherwise the layout is
+ * parsed and compiled the normal way, streaming again, and the file is rewritten.
+ * <p>
+ * A cache file is a 48-byte little-endian header followed by the payload:
+ * <pre>
+ *  0  int   magic
+ *  4  short format version
+ *  6  short flags, 1 if edges are weighted by track length
+ *  8  byte[32] SHA-256 of the source JSON
+ * 40  int   payload length
+ * 44  int   CRC32 of the payload
+ * </pre>
+ * The payload uses the string pool and array encoding of {@link SnapshotCodec}. Bump {@link #VERSION} whenever the
+ * layout model or the compiled structures change. Files are written to a temporary name, forced to disk and
+ * renamed into place. They live in {@code -Drailops.cache=DIR}, by default the user's cache directory:
+ * {@code $XDG_CACHE_HOME/railops} or {@code ~/.cache/railops}, {@code ~/Library/Caches/railops} on macOS and
+ * {@code %LOCALAPPDATA%\railops\cache} on Windows.
+ */
+public final class TopologyCache {
+
+    private static final Logger LOG = Log.get(Subsystem.GRAPH);
+
+    public static final int MAGIC = 0x504F5452; // "RTOP"
+    public static final short VERSION = 4;
+    private static final int HEADER_SIZE = 48;
+    private static final int DIGEST_SIZE = 32;
+    private static final short FLAG_TRACK_LENGTHS = 1;
+
+    private TopologyCache() {
+    }
+
+    /**
+     * Load a station layout resource, from the cache if it was compiled from the same JSON.
+     */
+    public static CompiledStation load(String resourceName, boolean useTrackLengths) throws IOException {
+        long start = System.nanoTime();
+        byte[] sourceDigest;
+        try (InputStream in = StationConfigLoader.open(resourceName)) {
+            sourceDigest = digest(in);
+        }
+        short flags = useTrackLengths ? FLAG_TRACK_LENGTHS : 0;
+        Path file = cacheFile(resourceName, useTrackLengths);
+
+        if (Files.isRegularFile(file)) {
+            try {
+                CompiledStation station = read(file, flags, sourceDigest);
+                if (station != null) {
+                    if (LOG.isInfoEnabled()) {
+                        LOG.info(String.format("Loaded %s from %s in %.1f ms", resourceName, file,
+                                (System.nanoTime() - start) / 1_000_000.0));
+                    }
+                    return station;
+                }
+                LOG.info(resourceName + " changed since it was cached, recompiling");
+            } catch (IOException e) {
+                LOG.warn("Ignoring unreadable topology cache: " + e.getMessage());
+            }
+        }
+
+        CompiledStation station = CompiledStation.compile(StationConfigLoader.load(resourceName), useTrackLengths);
+        try {
+            write(station, file, flags, sourceDigest);
+        } catch (IOException e) {
+            LOG.warn("Could not write topology cache " + file + ": " + e.getMessage());
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Compiled %s in %.1f ms", resourceName, (System.nanoTime() - start) / 1_000_000.0));
+        }
+        return station;
+    }
+
+    static Path cacheFile(String resourceName, boolean useTrackLengths) {
+        String directory = System.getProperty("railops.cache");
+        Path root = directory != null ? Path.of(directory) : defaultDirectory();
+        String name = resourceName.replaceAll("[^A-Za-z0-9._-]", "_");
+        return root.resolve(name + (useTrackLengths ? ".lengths" : "") + ".topo");
+    }
+
+    /** Per-user cache directory of the platform; a shared temp directory would let other users plant files. */
+    static Path defaultDirectory() {
+        String home = System.getProperty("user.home");
+        String os = System.getProperty("os.name", "").toLowerCase();
+        if (os.startsWith("windows")) {
+            String localAppData = System.getenv("LOCALAPPDATA");
+            Path base = localAppData != null && !localAppData.isBlank()
+                    ? Path.of(localAppData) : Path.of(home, "AppData", "Local");
+            return base.resolve("railops").resolve("cache");
+        }
+        if (os.startsWith("mac")) {
+            return Path.of(home, "Library", "Caches", "railops");
+        }
+        String xdg = System.getenv("XDG_CACHE_HOME");
+        Path base = xdg != null && Path.of(xdg).isAbsolute() ? Path.of(xdg) : Path.of(home, ".cache");
+        return base.resolve("railops");
+    }
+
+    /** SHA-256 of a stream, read in chunks so a layout of any size is never held in memory. */
+    static byte[] digest(InputStream in) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] chunk = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(chunk)) > 0) {
+            digest.update(chunk, 0, read);
+        }
+        return digest.digest();
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    static void write(CompiledStation station, Path file, short flags, byte[] sourceDigest) throws IOException {
+        SnapshotCodec.Output out = new SnapshotCodec.Output(1 << 16);
+        putConfig(out, station.getConfig());
+        station.getTopology().write(out);
+        station.getInterlocking().write(out);
+
+        ByteBuffer pool = out.stringPool();
+        ByteBuffer body = out.flip();
+        CRC32 crc = new CRC32();
+        crc.update(pool.duplicate());
+        crc.update(body.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort(flags)
+                .put(sourceDigest)
+                .putInt(pool.remaining() + body.remaining())
+                .putInt((int) crc.getValue())
+                .flip();
+
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer[] parts = {header, pool, body};
+                while (body.hasRemaining()) {
+                    channel.write(parts);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Read a cache file, or null if it was compiled from a different source or with different flags.
+     */
+    static CompiledStation read(Path file, short flags, byte[] sourceDigest) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a topology cache: " + file);
+        }
+        if (buffer.getShort() != VERSION || buffer.getShort() != flags) {
+            return null;
+        }
+        byte[] digest = new byte[DIGEST_SIZE];
+        buffer.get(digest);
+        if (!MessageDigest.isEqual(digest, sourceDigest)) {
+            return null;
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (buffer.remaining() < length) {
+            throw new IOException("Truncated topology cache: " + file);
+        }
+        ByteBuffer payload = buffer.slice(HEADER_SIZE, length).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Topology cache checksum mismatch: " + file);
+        }
+
+        SnapshotCodec.Input in = new SnapshotCodec.Input(payload);
+        StationConfig config = getConfig(in);
+        CompiledTopology topology = CompiledTopology.read(in);
+        InterlockingTable interlocking = InterlockingTable.read(in, topology);
+        return new CompiledStation(config, topology, interlocking);
+    }
+
+    // Layout model. The packed geometry is written as one array and the elements refer to it by point index;
+    // element lists are written with a length prefix, -1 for null.
+
+    private static void putConfig(SnapshotCodec.Output out, StationConfig config) {
+        LayoutGeometry geometry = config.getGeometry();
+        out.putString(config.getStationName());
+        out.putDoubles(geometry.toArray());
+
+        List<Track> tracks = config.getTracks();
+        out.putInt(tracks == null ? -1 : tracks.size());
+        if (tracks != null) {
+            for (Track track : tracks) {
+                checkGeometry(geometry, track.geometry(), track.id());
+                out.putString(track.id());
+                out.putString(track.type());
+                out.putString(track.color());
+                out.putString(track.entryNodeId());
+                out.putString(track.exitNodeId());
+                out.putInt(track.firstPoint());
+                out.putInt(track.pointCount());
+            }
+        }
+
+        List<Switch> switches = config.getSwitches();
+        out.putInt(switches == null ? -1 : switches.size());
+        if (switches != null) {
+            for (Switch sw : switches) {
+                checkGeometry(geometry, sw.geometry(), sw.id());
+                out.putString(sw.id());
+                out.putInt(sw.p1Point());
+                out.putInt(sw.p2MainPoint());
+                out.putInt(sw.p2SidePoint());
+                out.putString(sw.defaultState());
+                out.putString(sw.p1ConnectionId());
+                out.putString(sw.p2MainConnectionId());
+                out.putString(sw.p2SideConnectionId());
+            }
+        }
+
+        List<Waypoint> waypoints = config.getWaypoints();
+        out.putInt(waypoints == null ? -1 : waypoints.size());
+        if (waypoints != null) {
+            for (Waypoint waypoint : waypoints) {
+                checkGeometry(geometry, waypoint.geometry(), waypoint.id());
+                out.putString(waypoint.id());
+                out.putString(waypoint.name());
+                out.putInt(waypoint.positionPoint());
+                out.putByte((byte) (waypoint.type() == null ? -1 : waypoint.type().ordinal()));
+            }
+        }
+
+        List<Signal> signals = config.getSignals();
+        out.putInt(signals == null ? -1 : signals.size());
+        if (signals != null) {
+            for (Signal signal : signals) {
+                checkGeometry(geometry, signal.geometry(), signal.id());
+                out.putString(signal.id());
+                out.putString(signal.name());
+                out.putInt(signal.positionPoint());
+                out.putByte((byte) (signal.currentAspect() == null ? -1 : signal.currentAspect().ordinal()));
+                out.putString(signal.protectedNodeId());
+            }
+        }
+    }
+
+    private static StationConfig getConfig(SnapshotCodec.Input in) {
+        StationConfig config = new StationConfig();
+        config.setStationName(in.getString());
+        LayoutGeometry geometry = new LayoutGeometry(in.getDoubles());
+        config.setGeometry(geometry);
+
+        int trackCount = in.getInt();
+        if (trackCount >= 0) {
+            List<Track> tracks = new ArrayList<>(trackCount);
+            for (int i = 0; i < trackCount; i++) {
+                String id = in.getString();
+                String type = in.getString();
+                String color = in.getString();
+                String entryNodeId = in.getString();
+                String exitNodeId = in.getString();
+                int firstPoint = in.getInt();
+                int pointCount = in.getInt();
+                tracks.add(new Track(id, type, geometry, firstPoint, pointCount, color, entryNodeId, exitNodeId));
+            }
+            config.setTracks(tracks);
+        } else {
+            config.setTracks(null);
+        }
+
+        int switchCount = in.getInt();
+        if (switchCount >= 0) {
+            List<Switch> switches = new ArrayList<>(switchCount);
+            for (int i = 0; i < switchCount; i++) {
+                switches.add(new Switch(in.getString(), geometry, in.getInt(), in.getInt(), in.getInt(),
+                        in.getString(), in.getString(), in.getString(), in.getString()));
+            }
+            config.setSwitches(switches);
+        } else {
+            config.setSwitches(null);
+        }
+
+        int waypointCount = in.getInt();
+        if (waypointCount >= 0) {
+            Waypoint.WaypointType[] types = Waypoint.WaypointType.values();
+            List<Waypoint> waypoints = new ArrayList<>(waypointCount);
+            for (int i = 0; i < waypointCount; i++) {
+                String id = in.getString();
+                String name = in.getString();
+                int position = in.getInt();
+                byte type = in.getByte();
+                waypoints.add(new Waypoint(id, name, geometry, position, type < 0 ? null : types[type]));
+            }
+            config.setWaypoints(waypoints);
+        } else {
+            config.setWaypoints(null);
+        }
+
+        int signalCount = in.getInt();
+        if (signalCount >= 0) {
+            Signal.SignalAspect[] aspects = Signal.SignalAspect.values();
+            List<Signal> signals = new ArrayList<>(signalCount);
+            for (int i = 0; i < signalCount; i++) {
+                String id = in.getString();
+                String name = in.getString();
+                int position = in.getInt();
+                byte aspect = in.getByte();
+                signals.add(new Signal(id, name, geometry, position, aspect < 0 ? null : aspects[aspect],
+                        in.getString()));
+            }
+            config.setSignals(signals);
+        } else {
+            config.setSignals(null);
+        }
+        return config;
+    }
+
+    private static void checkGeometry(LayoutGeometry layout, LayoutGeometry element, String id) {
+        if (element != layout) {
+            throw new IllegalArgumentException(id + " does not use the geometry of its layout");
+        }
+    }
+}
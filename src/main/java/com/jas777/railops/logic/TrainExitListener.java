@@ -0,0 +1,14 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.TimetableEntry;
+import com.jas777.railops.model.Train;
+
+/**
+ * Callback invoked when a departed train has cleared the station, on the thread that drives the simulation.
+ * {@code entry} is the timetable entry the train was spawned from and {@code train} a view of its final state.
+ * Time is in simulated seconds.
+ */
+@FunctionalInterface
+public interface TrainExitListener {
+    void onTrainExit(TimetableEntry entry, Train train, long simTime);
+}
@@ -0,0 +1,443 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.Route;
+import com.jas777.railops.model.TimetableEntry;
+import com.jas777.railops.model.Train;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Columnar store of the trains in the simulation. Every train is a slot index into parallel primitive arrays;
+ * freed slots are recycled through a free-list, so a steady-state run allocates nothing per train.
+ * Times are simulated seconds as used by {@link SimulationController}, or {@link #NO_TIME}.
+ * <p>
+ * Routes are interned by content in a route table and referenced by id. Trains sharing a path share its
+ * {@link Route}; an id is reference-counted by the slots using it and recycled once the last of them is freed.
+ * {@link Train} objects are only built on demand as views for the UI, see {@link #view}.
+ */
+public final class TrainStore {
+
+    public static final int NONE = -1;
+    public static final int NO_TIME = -1;
+
+    private static final Train.TrainStatus[] STATUSES = Train.TrainStatus.values();
+
+    // Per-slot columns
+    private TimetableEntry[] entries;
+    private byte[] status;
+    private int[] node;
+    private int[] routeId;
+    private int[] cursor;
+    private int[] platform;
+    private int[] scheduledDeparture;
+    private int[] actualArrival;
+    private int[] actualDeparture;
+    private int[] lockedRoute;
+    private int[] activeIndex;
+
+    // Dense list of live slots, in no particular order
+    private int[] active;
+    private int activeCount = 0;
+
+    // Recycled slots, used before the high-water mark grows
+    private int[] freeList;
+    private int freeCount = 0;
+    private int highWater = 0;
+
+    // Route table; freed ids are null and recycled before the table grows
+    private Route[] routes = new Route[16];
+    private int[] routeRefs = new int[16];
+    private int routeCount = 0;
+    private int[] freeRoutes = new int[16];
+    private int freeRouteCount = 0;
+    private final Map<RouteKey, Integer> routeIds = new HashMap<>();
+
+    public TrainStore() {
+        this(64);
+    }
+
+    public TrainStore(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        entries = new TimetableEntry[capacity];
+        status = new byte[capacity];
+        node = new int[capacity];
+        routeId = new int[capacity];
+        cursor = new int[capacity];
+        platform = new int[capacity];
+        scheduledDeparture = new int[capacity];
+        actualArrival = new int[capacity];
+        actualDeparture = new int[capacity];
+        lockedRoute = new int[capacity];
+        activeIndex = new int[capacity];
+        active = new int[capacity];
+        freeList = new int[capacity];
+    }
+
+    /**
+     * Take a slot for a new train. The train starts on the first node of its route and holds a reference to it
+     * until the slot is freed.
+     */
+    public int allocate(TimetableEntry entry, int platformTrack, int route, long scheduledDepartureTime) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeList[--freeCount];
+        } else {
+            if (highWater == entries.length) {
+                grow(entries.length * 2);
+            }
+            slot = highWater++;
+        }
+
+        entries[slot] = entry;
+        status[slot] = (byte) Train.TrainStatus.SCHEDULED.ordinal();
+        routeId[slot] = route;
+        if (route != NONE) {
+            routeRefs[route]++;
+        }
+        cursor[slot] = 0;
+        node[slot] = route == NONE ? NONE : routes[route].firstNode();
+        platform[slot] = platformTrack;
+        scheduledDeparture[slot] = (int) scheduledDepartureTime;
+        actualArrival[slot] = NO_TIME;
+        actualDeparture[slot] = NO_TIME;
+        lockedRoute[slot] = NONE;
+
+        activeIndex[slot] = activeCount;
+        active[activeCount++] = slot;
+        return slot;
+    }
+
+    /**
+     * Return a slot to the free-list and drop its route reference. The other columns are left as they are until
+     * the slot is reused.
+     */
+    public void free(int slot) {
+        int index = activeIndex[slot];
+        if (index == NONE) return;
+        int last = active[--activeCount];
+        active[index] = last;
+        activeIndex[last] = index;
+        activeIndex[slot] = NONE;
+        entries[slot] = null;
+        freeList[freeCount++] = slot;
+        int route = routeId[slot];
+        routeId[slot] = NONE;
+        if (route != NONE && --routeRefs[route] == 0) {
+            routeIds.remove(new RouteKey(routes[route].toArray()));
+            routes[route] = null;
+            freeRoutes[freeRouteCount++] = route;
+        }
+    }
+
+    private void grow(int capacity) {
+        entries = Arrays.copyOf(entries, capacity);
+        status = Arrays.copyOf(status, capacity);
+        node = Arrays.copyOf(node, capacity);
+        routeId = Arrays.copyOf(routeId, capacity);
+        cursor = Arrays.copyOf(cursor, capacity);
+        platform = Arrays.copyOf(platform, capacity);
+        scheduledDeparture = Arrays.copyOf(scheduledDeparture, capacity);
+        actualArrival = Arrays.copyOf(actualArrival, capacity);
+        actualDeparture = Arrays.copyOf(actualDeparture, capacity);
+        lockedRoute = Arrays.copyOf(lockedRoute, capacity);
+        activeIndex = Arrays.copyOf(activeIndex, capacity);
+        active = Arrays.copyOf(active, capacity);
+        freeList = Arrays.copyOf(freeList, capacity);
+    }
+
+    /** Detached deep copy, e.g. for a snapshot. Routes are immutable and shared. */
+    public TrainStore copy() {
+        TrainStore copy = new TrainStore(1);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    /**
+     * Replace the whole contents of this store with a copy of another one's. Used to restore a snapshot into
+     * a store that other components already hold on to.
+     */
+    public void copyFrom(TrainStore source) {
+        entries = source.entries.clone();
+        status = source.status.clone();
+        node = source.node.clone();
+        routeId = source.routeId.clone();
+        cursor = source.cursor.clone();
+        platform = source.platform.clone();
+        scheduledDeparture = source.scheduledDeparture.clone();
+        actualArrival = source.actualArrival.clone();
+        actualDeparture = source.actualDeparture.clone();
+        lockedRoute = source.lockedRoute.clone();
+        activeIndex = source.activeIndex.clone();
+        active = source.active.clone();
+        activeCount = source.activeCount;
+        freeList = source.freeList.clone();
+        freeCount = source.freeCount;
+        highWater = source.highWater;
+        routes = source.routes.clone();
+        routeRefs = source.routeRefs.clone();
+        routeCount = source.routeCount;
+        freeRoutes = source.freeRoutes.clone();
+        freeRouteCount = source.freeRouteCount;
+        routeIds.clear();
+        routeIds.putAll(source.routeIds);
+    }
+
+    /**
+     * Write the store to a checkpoint, timetable entries as the indices given by {@code entryIndex}. Only the
+     * slots below the high-water mark are written.
+     */
+    void write(SnapshotCodec.Output out, ToIntFunction<TimetableEntry> entryIndex) {
+        int used = highWater;
+        int[] entryIds = new int[used];
+        for (int i = 0; i < used; i++) {
+            entryIds[i] = entryIndex.applyAsInt(entries[i]);
+        }
+        out.putInts(entryIds, used);
+        byte[] statusCodes = new byte[used];
+        for (int i = 0; i < used; i++) {
+            statusCodes[i] = STATUSES[status[i]].code();
+        }
+        out.putBytes(statusCodes, used);
+        out.putInts(node, used);
+        out.putInts(routeId, used);
+        out.putInts(cursor, used);
+        out.putInts(platform, used);
+        out.putInts(scheduledDeparture, used);
+        out.putInts(actualArrival, used);
+        out.putInts(actualDeparture, used);
+        out.putInts(lockedRoute, used);
+        out.putInts(activeIndex, used);
+        out.putInts(active, activeCount);
+        out.putInts(freeList, freeCount);
+
+        // Freed route ids are written as empty routes
+        out.putInt(routeCount);
+        for (int r = 0; r < routeCount; r++) {
+            if (routes[r] == null) {
+                out.putInts(new int[0], 0);
+            } else {
+                out.putInts(routes[r].toArray(), routes[r].length());
+            }
+        }
+    }
+
+    /** Replace the contents of this store with what {@link #write} wrote. */
+    void read(SnapshotCodec.Input in, IntFunction<TimetableEntry> entryAt) {
+        int[] entryIds = in.getInts();
+        int used = entryIds.length;
+        int capacity = Math.max(64, used);
+        entries = new TimetableEntry[capacity];
+        for (int i = 0; i < used; i++) {
+            entries[i] = entryAt.apply(entryIds[i]);
+        }
+        byte[] statusCodes = in.getBytes();
+        status = new byte[capacity];
+        for (int i = 0; i < used; i++) {
+            Train.TrainStatus value = Train.TrainStatus.fromCode(statusCodes[i]);
+            if (value == null) {
+                throw new IllegalArgumentException("Unknown train status code " + statusCodes[i]);
+            }
+            status[i] = (byte) value.ordinal();
+        }
+        node = Arrays.copyOf(in.getInts(), capacity);
+        routeId = Arrays.copyOf(in.getInts(), capacity);
+        cursor = Arrays.copyOf(in.getInts(), capacity);
+        platform = Arrays.copyOf(in.getInts(), capacity);
+        scheduledDeparture = Arrays.copyOf(in.getInts(), capacity);
+        actualArrival = Arrays.copyOf(in.getInts(), capacity);
+        actualDeparture = Arrays.copyOf(in.getInts(), capacity);
+        lockedRoute = Arrays.copyOf(in.getInts(), capacity);
+        activeIndex = Arrays.copyOf(in.getInts(), capacity);
+        int[] live = in.getInts();
+        active = Arrays.copyOf(live, capacity);
+        activeCount = live.length;
+        int[] recycled = in.getInts();
+        freeList = Arrays.copyOf(recycled, capacity);
+        freeCount = recycled.length;
+        highWater = used;
+
+        routeCount = in.getInt();
+        routes = new Route[Math.max(16, routeCount)];
+        routeRefs = new int[routes.length];
+        freeRoutes = new int[routes.length];
+        freeRouteCount = 0;
+        routeIds.clear();
+        for (int r = 0; r < routeCount; r++) {
+            int[] nodes = in.getInts();
+            if (nodes.length == 0) {
+                freeRoutes[freeRouteCount++] = r;
+            } else {
+                routes[r] = new Route(nodes);
+                routeIds.put(new RouteKey(nodes), r);
+            }
+        }
+        for (int i = 0; i < activeCount; i++) {
+            int route = routeId[active[i]];
+            if (route != NONE) {
+                routeRefs[route]++;
+            }
+        }
+    }
+
+    /**
+     * Id of the route with the given node sequence; each distinct path gets one {@link Route}, however many
+     * arrays it was computed into. A new route is only kept while a train uses it, so pass the id straight to
+     * {@link #allocate}.
+     */
+    public int internRoute(int[] nodes) {
+        Integer id = routeIds.get(new RouteKey(nodes));
+        if (id != null) return id;
+        int route;
+        if (freeRouteCount > 0) {
+            route = freeRoutes[--freeRouteCount];
+        } else {
+            if (routeCount == routes.length) {
+                routes = Arrays.copyOf(routes, routeCount * 2);
+                routeRefs = Arrays.copyOf(routeRefs, routeCount * 2);
+                freeRoutes = Arrays.copyOf(freeRoutes, routeCount * 2);
+            }
+            route = routeCount++;
+        }
+        routes[route] = new Route(nodes);
+        routeRefs[route] = 0;
+        routeIds.put(new RouteKey(routes[route].toArray()), route);
+        return route;
+    }
+
+    public Route route(int id) { return routes[id]; }
+
+    /** Number of routes in the table, i.e. used by at least one train or just interned. */
+    public int routeCount() { return routeIds.size(); }
+
+    // Content key of an interned route; stored keys own their array
+    private record RouteKey(int[] nodes, int hash) {
+        RouteKey(int[] nodes) {
+            this(nodes, Arrays.hashCode(nodes));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RouteKey other && hash == other.hash && Arrays.equals(nodes, other.nodes);
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+    }
+
+    // Live slots
+
+    public int activeCount() { return activeCount; }
+
+    /** Slot at the given position of the live list, for 0 <= index < {@link #activeCount()}. */
+    public int activeSlot(int index) { return active[index]; }
+
+    public boolean isLive(int slot) { return slot >= 0 && slot < highWater && activeIndex[slot] != NONE; }
+
+    /** Number of slots ever allocated; live slots are all below it. */
+    public int capacityUsed() { return highWater; }
+
+    // Columns
+
+    public TimetableEntry entry(int slot) { return entries[slot]; }
+    public String trainNumber(int slot) { return entries[slot].trainNumber(); }
+
+    public Train.TrainStatus status(int slot) { return STATUSES[status[slot]]; }
+    public void setStatus(int slot, Train.TrainStatus value) { status[slot] = (byte) value.ordinal(); }
+
+    public int node(int slot) { return node[slot]; }
+    public int routeId(int slot) { return routeId[slot]; }
+    public int cursor(int slot) { return cursor[slot]; }
+    public int platform(int slot) { return platform[slot]; }
+    public long scheduledDeparture(int slot) { return scheduledDeparture[slot]; }
+
+    public long actualArrival(int slot) { return actualArrival[slot]; }
+    public void setActualArrival(int slot, long time) { actualArrival[slot] = (int) time; }
+
+    public long actualDeparture(int slot) { return actualDeparture[slot]; }
+    public void setActualDeparture(int slot, long time) { actualDeparture[slot] = (int) time; }
+
+    /** {@link InterlockingTable} route the train holds, or {@link #NONE}. */
+    public int lockedRoute(int slot) { return lockedRoute[slot]; }
+    public void setLockedRoute(int slot, int route) { lockedRoute[slot] = route; }
+
+    // Route cursor
+
+    /** Next node of the train's route, or {@link #NONE} at the end of it. */
+    public int peekNextNode(int slot) {
+        int id = routeId[slot];
+        if (id == NONE) return NONE;
+        Route route = routes[id];
+        int next = cursor[slot] + 1;
+        return next < route.length() ? route.node(next) : NONE;
+    }
+
+    public boolean isAtRouteEnd(int slot) {
+        int id = routeId[slot];
+        return id == NONE || cursor[slot] >= routes[id].length() - 1;
+    }
+
+    /** Nodes left after the current one. */
+    public int remainingNodes(int slot) {
+        int id = routeId[slot];
+        return id == NONE ? 0 : routes[id].length() - 1 - cursor[slot];
+    }
+
+    public void advance(int slot) {
+        int next = ++cursor[slot];
+        node[slot] = routes[routeId[slot]].node(next);
+    }
+
+    /** Reposition a train on its route, e.g. when restoring saved state. */
+    public void setCursor(int slot, int position) {
+        cursor[slot] = position;
+        node[slot] = routes[routeId[slot]].node(position);
+    }
+
+    public boolean isOnRoute(int slot, int nodeIndex) {
+        int id = routeId[slot];
+        return id != NONE && routes[id].contains(nodeIndex);
+    }
+
+    /**
+     * Build a {@link Train} view of a slot for the UI. The view is a detached copy; changing it has no effect
+     * on the simulation.
+     */
+    public Train view(int slot, CompiledTopology topology) {
+        TimetableEntry entry = entries[slot];
+        int track = platform[slot];
+        Train train = new Train(entry.trainNumber(), entry.fromStation(), entry.toStation(),
+                entry.scheduledArrival(), entry.scheduledDeparture(), entry.designatedPlatform());
+        train.setStatus(status(slot));
+        if (track != NONE) {
+            train.setCurrentPlatform(topology.trackId(track));
+        }
+        if (actualArrival[slot] != NO_TIME) {
+            train.setActualArrival(SimulationController.toLocalTime(actualArrival[slot]));
+        }
+        if (actualDeparture[slot] != NO_TIME) {
+            train.setActualDeparture(SimulationController.toLocalTime(actualDeparture[slot]));
+        }
+
+        int id = routeId[slot];
+        if (id != NONE) {
+            Route route = routes[id];
+            train.setRoute(route);
+            train.setRouteCursor(cursor[slot]);
+            List<String> path = new ArrayList<>(route.length());
+            for (int i = 0; i < route.length(); i++) {
+                path.add(topology.nodeId(route.node(i)));
+            }
+            train.setCurrentPath(path);
+        }
+        if (node[slot] != NONE) {
+            train.setCurrentNodeId(topology.nodeId(node[slot]));
+        }
+        return train;
+    }
+}
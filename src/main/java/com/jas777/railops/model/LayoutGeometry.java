@@ -0,0 +1,119 @@
+package com.jas777.railops.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Every coordinate of a station layout, packed as x/y pairs into one {@code double[]}.
+ * <p>
+ * Points are addressed by index. A polyline is a run of consecutive points, so a track only needs its first point
+ * and point count. {@link #point} and {@link #polyline} expose points as read-only {@code List} views for code that
+ * works on the boxed layout model; the values are only boxed when read through them.
+ * <p>
+ * A point that was given with fewer than two coordinates is stored as NaN and reads back as an empty list.
+ */
+public final class LayoutGeometry {
+
+    public static final int NONE = -1;
+
+    private double[] coords;
+    private int size;
+
+    public LayoutGeometry() {
+        this.coords = new double[64];
+    }
+
+    /** Geometry over x/y pairs taken by {@link #toArray()}. */
+    public LayoutGeometry(double[] coords) {
+        if (coords.length % 2 != 0) {
+            throw new IllegalArgumentException("Coordinates must come in x/y pairs: " + coords.length);
+        }
+        this.coords = coords;
+        this.size = coords.length / 2;
+    }
+
+    /** Append a point and return its index. */
+    public int addPoint(double x, double y) {
+        if (2 * size + 2 > coords.length) {
+            coords = Arrays.copyOf(coords, Math.max(64, coords.length * 2));
+        }
+        coords[2 * size] = x;
+        coords[2 * size + 1] = y;
+        return size++;
+    }
+
+    /** Release the spare capacity once loading is done. */
+    public void trim() {
+        if (coords.length > 2 * size) {
+            coords = Arrays.copyOf(coords, 2 * size);
+        }
+    }
+
+    /** Copy of the packed x/y pairs. */
+    public double[] toArray() {
+        return Arrays.copyOf(coords, 2 * size);
+    }
+
+    public int pointCount() { return size; }
+
+    /** X coordinate of the point, NaN for {@link #NONE} or a point without coordinates. */
+    public double x(int point) { return point == NONE ? Double.NaN : coords[2 * point]; }
+    public double y(int point) { return point == NONE ? Double.NaN : coords[2 * point + 1]; }
+    public boolean isValid(int point) { return point != NONE && !Double.isNaN(coords[2 * point]); }
+
+    /** View of one point as {@code [x, y]}, or null for {@link #NONE}. */
+    public List<Double> point(int point) {
+        return point == NONE ? null : new PointView(point);
+    }
+
+    /** View of {@code count} consecutive points starting at {@code first}. */
+    public List<List<Double>> polyline(int first, int count) {
+        return new PolylineView(first, count);
+    }
+
+    private final class PointView extends AbstractList<Double> implements RandomAccess {
+        private final int point;
+
+        PointView(int point) {
+            this.point = point;
+        }
+
+        @Override
+        public Double get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return coords[2 * point + index];
+        }
+
+        @Override
+        public int size() {
+            return isValid(point) ? 2 : 0;
+        }
+    }
+
+    private final class PolylineView extends AbstractList<List<Double>> implements RandomAccess {
+        private final int first;
+        private final int count;
+
+        PolylineView(int first, int count) {
+            this.first = first;
+            this.count = count;
+        }
+
+        @Override
+        public List<Double> get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return new PointView(first + index);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
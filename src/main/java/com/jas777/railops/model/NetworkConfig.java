@@ -0,0 +1,24 @@
+package com.jas777.railops.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class NetworkConfig {
+    private String networkName;
+    private List<NetworkStation> stations;
+    private List<NetworkLink> links;
+
+    public NetworkConfig() {
+        this.stations = new ArrayList<>();
+        this.links = new ArrayList<>();
+    }
+
+    public String getNetworkName() { return networkName; }
+    public void setNetworkName(String networkName) { this.networkName = networkName; }
+
+    public List<NetworkStation> getStations() { return stations; }
+    public void setStations(List<NetworkStation> stations) { this.stations = stations; }
+
+    public List<NetworkLink> getLinks() { return links; }
+    public void setLinks(List<NetworkLink> links) { this.links = links; }
+}
@@ -0,0 +1,9 @@
+package com.jas777.railops.model;
+
+/**
+ * Line between two stations of a network. Trains leaving {@code fromStation} through {@code exitNodeId} enter
+ * {@code toStation} at {@code entryNodeId} after {@code travelSeconds}.
+ */
+public record NetworkLink(String fromStation, String exitNodeId, String toStation, String entryNodeId,
+                          int travelSeconds) {
+}
@@ -0,0 +1,7 @@
+package com.jas777.railops.model;
+
+/**
+ * A station of a network: its unique name and the station layout resource it loads.
+ */
+public record NetworkStation(String name, String config) {
+}
@@ -0,0 +1,42 @@
+package com.jas777.railops.model;
+
+import java.util.Arrays;
+
+/**
+ * Immutable route as a sequence of interned node indices, with a membership bitset for O(1)
+ * "is this node on the route" checks.
+ */
+public final class Route {
+
+    private final int[] nodes;
+    private final long[] membership;
+
+    public Route(int[] nodes) {
+        this.nodes = nodes.clone();
+        int maxNode = 0;
+        for (int node : nodes) {
+            maxNode = Math.max(maxNode, node);
+        }
+        this.membership = new long[(maxNode >>> 6) + 1];
+        for (int node : nodes) {
+            membership[node >>> 6] |= 1L << node;
+        }
+    }
+
+    public int length() { return nodes.length; }
+    public int node(int position) { return nodes[position]; }
+    public int firstNode() { return nodes[0]; }
+    public int lastNode() { return nodes[nodes.length - 1]; }
+
+    public boolean contains(int node) {
+        int word = node >>> 6;
+        return node >= 0 && word < membership.length && (membership[word] & (1L << node)) != 0;
+    }
+
+    public int[] toArray() { return nodes.clone(); }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(nodes);
+    }
+}
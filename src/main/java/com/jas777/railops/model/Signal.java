@@ -8,14 +8,43 @@ import java.util.List;
 public record Signal(
         String id,
         String name,  // e.g., "Tm1", "Sm2", "Od3"
-        List<Double> position,
+        LayoutGeometry geometry,
+        int positionPoint,
         SignalAspect currentAspect,
         String protectedNodeId  // The track/switch this signal protects
 ) {
+    public double x() { return geometry.x(positionPoint); }
+    public double y() { return geometry.y(positionPoint); }
+    public boolean hasPosition() { return geometry.isValid(positionPoint); }
+
+    public List<Double> position() { return geometry.point(positionPoint); }
+
+    /** The code is what checkpoints, caches and journals write to disk, so existing codes must never change. */
     public enum SignalAspect {
-        RED,              // S1 - Stop
-        GREEN,            // S2 - Go
-        YELLOW,           // S3 - Next signal stop
-        GREEN_YELLOW      // S5 - Proceed with caution, next stop
+        RED(1),           // S1 - Stop
+        GREEN(2),         // S2 - Go
+        YELLOW(3),        // S3 - Next signal stop
+        GREEN_YELLOW(4);  // S5 - Proceed with caution, next stop
+
+        private static final SignalAspect[] BY_CODE = new SignalAspect[8];
+
+        static {
+            for (SignalAspect aspect : values()) {
+                BY_CODE[aspect.code] = aspect;
+            }
+        }
+
+        private final byte code;
+
+        SignalAspect(int code) {
+            this.code = (byte) code;
+        }
+
+        public byte code() { return code; }
+
+        /** Aspect for a code read from disk, or null for unknown codes. */
+        public static SignalAspect fromCode(byte code) {
+            return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        }
     }
 }
\ No newline at end of file
@@ -9,10 +9,12 @@ public class StationConfig {
     private List<Switch> switches;
     private List<Waypoint> waypoints;
     private List<Signal> signals;
+    private LayoutGeometry geometry;
 
     public StationConfig() {
         this.waypoints = new ArrayList<>();
         this.signals = new ArrayList<>();
+        this.geometry = new LayoutGeometry();
     }
 
     public String getStationName() { return stationName; }
@@ -29,4 +31,8 @@ public class StationConfig {
 
     public List<Signal> getSignals() { return signals; }
     public void setSignals(List<Signal> signals) { this.signals = signals; }
+
+    /** Coordinates of every track, switch, signal and waypoint of the layout. */
+    public LayoutGeometry getGeometry() { return geometry; }
+    public void setGeometry(LayoutGeometry geometry) { this.geometry = geometry; }
 }
\ No newline at end of file
@@ -3,28 +3,37 @@ package com.jas777.railops.model;
 import java.util.List;
 
 public record Switch(String id,
-                     List<Double> p1,
-                     List<Double> p2Main,
-                     List<Double> p2Side,
+                     LayoutGeometry geometry,
+                     int p1Point,
+                     int p2MainPoint,
+                     int p2SidePoint,
                      String defaultState,
                      String p1ConnectionId,
                      String p2MainConnectionId,
                      String p2SideConnectionId) {
 
+    // Point indices into the geometry; NaN coordinates where a point is not defined
+    public double p1X() { return geometry.x(p1Point); }
+    public double p1Y() { return geometry.y(p1Point); }
+    public double p2MainX() { return geometry.x(mainPoint()); }
+    public double p2MainY() { return geometry.y(mainPoint()); }
+    public double p2SideX() { return geometry.x(sidePoint()); }
+    public double p2SideY() { return geometry.y(sidePoint()); }
+
+    // p2Main/p2Side fall back to p1 when not defined
+    private int mainPoint() { return geometry.isValid(p2MainPoint) ? p2MainPoint : p1Point; }
+    private int sidePoint() { return geometry.isValid(p2SidePoint) ? p2SidePoint : p1Point; }
+
+    public List<Double> p1() { return geometry.point(p1Point); }
+    public List<Double> p2Main() { return geometry.point(p2MainPoint); }
+    public List<Double> p2Side() { return geometry.point(p2SidePoint); }
+
     // Helper to get p2Main if it exists, otherwise calculate based on p1 and direction
     public List<Double> getP2Main() {
-        if (p2Main != null && !p2Main.isEmpty()) {
-            return p2Main;
-        }
-        // If p2Main not defined, use p1 as fallback
-        return p1;
+        return geometry.point(mainPoint());
     }
 
     public List<Double> getP2Side() {
-        if (p2Side != null && !p2Side.isEmpty()) {
-            return p2Side;
-        }
-        // If p2Side not defined, use p1 as fallback
-        return p1;
+        return geometry.point(sidePoint());
     }
-}
\ No newline at end of file
+}
@@ -2,5 +2,21 @@ package com.jas777.railops.model;
 
 import java.util.List;
 
-public record Track(String id, String type, List<List<Double>> points,
-                    String color, String entryNodeId, String exitNodeId) {}
\ No newline at end of file
+/**
+ * A track segment. Its polyline is the {@code pointCount} consecutive points of the layout's
+ * {@link LayoutGeometry} starting at {@code firstPoint}.
+ */
+public record Track(String id, String type, LayoutGeometry geometry, int firstPoint, int pointCount,
+                    String color, String entryNodeId, String exitNodeId) {
+
+    public double x(int point) { return geometry.x(firstPoint + point); }
+    public double y(int point) { return geometry.y(firstPoint + point); }
+
+    /** False if the point was given with fewer than two coordinates. */
+    public boolean hasPoint(int point) { return geometry.isValid(firstPoint + point); }
+
+    /** The polyline as boxed lists; prefer {@link #x}/{@link #y} in loops. */
+    public List<List<Double>> points() {
+        return geometry.polyline(firstPoint, pointCount);
+    }
+}
@@ -18,15 +18,39 @@ public class Train {
     private TrainStatus status;
     private List<String> currentPath; // List of node IDs the train occupies
     private String currentNodeId;
+    private Route route;
+    private int routeCursor; // Position of the train on its route
 
+    /** The code is what checkpoints write to disk, so existing codes must never change. */
     public enum TrainStatus {
-        SCHEDULED,
-        WAITING_ENTRY,
-        ENTERING,
-        ARRIVING,
-        AT_PLATFORM,
-        DEPARTING,
-        DEPARTED
+        SCHEDULED(1),
+        WAITING_ENTRY(2),
+        ENTERING(3),
+        ARRIVING(4),
+        AT_PLATFORM(5),
+        DEPARTING(6),
+        DEPARTED(7);
+
+        private static final TrainStatus[] BY_CODE = new TrainStatus[16];
+
+        static {
+            for (TrainStatus status : values()) {
+                BY_CODE[status.code] = status;
+            }
+        }
+
+        private final byte code;
+
+        TrainStatus(int code) {
+            this.code = (byte) code;
+        }
+
+        public byte code() { return code; }
+
+        /** Status for a code read from disk, or null for unknown codes. */
+        public static TrainStatus fromCode(byte code) {
+            return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        }
     }
 
     public Train(String trainNumber, String fromStation, String toStation,
@@ -68,6 +92,34 @@ public class Train {
     public String getCurrentNodeId() { return currentNodeId; }
     public void setCurrentNodeId(String currentNodeId) { this.currentNodeId = currentNodeId; }
 
+    public Route getRoute() { return route; }
+
+    /** Assign a route and place the train on its first node. */
+    public void setRoute(Route route) {
+        this.route = route;
+        this.routeCursor = 0;
+    }
+
+    public int getRouteCursor() { return routeCursor; }
+    public void setRouteCursor(int routeCursor) { this.routeCursor = routeCursor; }
+
+    /** Node index the train is on, or -1 without a route. */
+    public int getRouteNode() { return route == null ? -1 : route.node(routeCursor); }
+
+    /** Next node index on the route, or -1 at the end of it. */
+    public int peekNextRouteNode() {
+        return route == null || routeCursor >= route.length() - 1 ? -1 : route.node(routeCursor + 1);
+    }
+
+    public boolean isAtRouteEnd() { return route == null || routeCursor >= route.length() - 1; }
+
+    /** Nodes left after the current one. */
+    public int getRemainingRouteNodes() { return route == null ? 0 : route.length() - 1 - routeCursor; }
+
+    public void advanceOnRoute() { routeCursor++; }
+
+    public boolean isOnRoute(int node) { return route != null && route.contains(node); }
+
     public int getDelayMinutes() {
         if (actualArrival == null) return 0;
         return (int) java.time.Duration.between(scheduledArrival, actualArrival).toMinutes();
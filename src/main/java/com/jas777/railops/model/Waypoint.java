@@ -8,9 +8,16 @@ import java.util.List;
 public record Waypoint(
         String id,
         String name,
-        List<Double> position,
+        LayoutGeometry geometry,
+        int positionPoint,
         WaypointType type
 ) {
+    public double x() { return geometry.x(positionPoint); }
+    public double y() { return geometry.y(positionPoint); }
+    public boolean hasPosition() { return geometry.isValid(positionPoint); }
+
+    public List<Double> position() { return geometry.point(positionPoint); }
+
     public enum WaypointType {
         PLATFORM,
         ENTRANCE,
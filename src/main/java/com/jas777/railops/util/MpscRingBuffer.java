@@ -0,0 +1,82 @@
+package com.jas777.railops.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer.
+ * Each slot carries a sequence number: producers claim a slot with one CAS on the tail and publish it by
+ * bumping the slot sequence, the consumer frees it by advancing the sequence a full lap.
+ * {@link #offer} never blocks; it returns false when the buffer is full.
+ */
+public final class MpscRingBuffer<E> {
+
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head = 0; // Only written by the consumer
+
+    public MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.buffer = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Enqueue an element. Safe to call from any number of threads.
+     */
+    public boolean offer(E element) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer[index] = element;
+                    sequences.lazySet(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false; // Full: the consumer has not freed this slot yet
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Dequeue the oldest element, or null if none is published yet. Must only be called by the consumer thread.
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long pos = head;
+        int index = (int) (pos & mask);
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+        E element = (E) buffer[index];
+        buffer[index] = null;
+        sequences.lazySet(index, pos + buffer.length);
+        head = pos + 1;
+        return element;
+    }
+
+    public boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    /** Approximate number of queued elements. */
+    public int size() {
+        return (int) Math.max(0, Math.min(buffer.length, tail.get() - head));
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
@@ -0,0 +1,73 @@
+package com.jas777.railops.views;
+
+import com.jas777.railops.logic.SimulationController;
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+
+import java.time.LocalTime;
+
+/**
+ * Drives a {@link SimulationController} from the JavaFX AnimationTimer and publishes its clock as a property
+ * for views. The controller itself knows nothing about JavaFX; headless runs use a
+ * {@link com.jas777.railops.logic.HeadlessSimulationEngine} instead.
+ */
+public class FxSimulationClock {
+
+    private final SimulationController controller;
+    private final ObjectProperty<LocalTime> currentTime;
+
+    private AnimationTimer simulationTimer;
+    private long lastUpdate = 0;
+    private double timeAcceleration = 60.0;
+    private double accumulatedTime = 0.0;
+
+    public FxSimulationClock(SimulationController controller) {
+        this.controller = controller;
+        this.currentTime = new SimpleObjectProperty<>(controller.getCurrentTime());
+    }
+
+    public void start() {
+        simulationTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (lastUpdate == 0) {
+                    lastUpdate = now;
+                    return;
+                }
+
+                long elapsed = now - lastUpdate;
+                double elapsedSeconds = elapsed / 1_000_000_000.0;
+
+                accumulatedTime += elapsedSeconds * timeAcceleration;
+
+                if (accumulatedTime >= 1.0) {
+                    long wholeSeconds = (long) accumulatedTime;
+                    controller.advanceTo(controller.getSimClock() + wholeSeconds);
+                    accumulatedTime -= wholeSeconds;
+                }
+
+                publishTime();
+                lastUpdate = now;
+            }
+        };
+        simulationTimer.start();
+    }
+
+    public void stop() {
+        if (simulationTimer != null) {
+            simulationTimer.stop();
+        }
+    }
+
+    /**
+     * Copy the simulation clock into {@link #currentTimeProperty()}. Must run on the FX thread.
+     */
+    public void publishTime() {
+        currentTime.set(controller.getCurrentTime());
+    }
+
+    public ObjectProperty<LocalTime> currentTimeProperty() { return currentTime; }
+    public void setTimeAcceleration(double acceleration) { this.timeAcceleration = acceleration; }
+    public SimulationController getController() { return controller; }
+}
@@ -0,0 +1,31 @@
+package com.jas777.railops.views;
+
+import com.jas777.railops.logic.SimulationListener;
+import javafx.application.Platform;
+
+import java.time.LocalTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lets a JavaFX view follow a simulation that is stepped by a {@link com.jas777.railops.logic.HeadlessSimulationEngine}.
+ * Steps are coalesced so the FX thread gets at most one pending refresh, no matter how fast the engine runs.
+ */
+public class FxSimulationObserver implements SimulationListener {
+
+    private final FxSimulationClock clock;
+    private final AtomicBoolean refreshPending = new AtomicBoolean(false);
+
+    public FxSimulationObserver(FxSimulationClock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public void onStep(LocalTime time) {
+        if (refreshPending.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                refreshPending.set(false);
+                clock.publishTime();
+            });
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.jas777.railops.views;
+
+import com.jas777.railops.logic.ReplayEngine;
+import com.jas777.railops.logic.SimulationController;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.paint.Color;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Timeline bar for scrubbing through a recorded run. Moving the slider seeks the {@link ReplayEngine}, which
+ * puts the view's controller into the recorded state at that time.
+ */
+public class ReplayTimeline extends HBox {
+
+    private final ReplayEngine replay;
+    private final FxSimulationClock clock;
+    private final Label timeLabel = new Label();
+    private final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    public ReplayTimeline(ReplayEngine replay, FxSimulationClock clock) {
+        super(10);
+        this.replay = replay;
+        this.clock = clock;
+        setPadding(new Insets(10));
+        setAlignment(Pos.CENTER_LEFT);
+        setStyle("-fx-background-color: #2b2b2b; -fx-border-color: #555; -fx-border-width: 2 0 0 0;");
+
+        Label title = new Label("Replay:");
+        title.setTextFill(Color.WHITE);
+
+        Slider slider = new Slider(replay.getStartTime(), Math.max(replay.getEndTime(), replay.getStartTime() + 1),
+                replay.getStartTime());
+        slider.setBlockIncrement(60);
+        HBox.setHgrow(slider, Priority.ALWAYS);
+
+        timeLabel.setTextFill(Color.YELLOW);
+        timeLabel.setMinWidth(70);
+
+        slider.valueProperty().addListener((obs, oldVal, newVal) -> seek(newVal.longValue()));
+
+        getChildren().addAll(title, slider, timeLabel);
+        seek(replay.getStartTime());
+    }
+
+    private void seek(long time) {
+        replay.seek(time);
+        SimulationController controller = replay.getController();
+        clock.publishTime();
+        timeLabel.setText(LocalTime.ofSecondOfDay(controller.getSimClock() % (24 * 3600)).format(timeFormatter));
+    }
+}
@@ -1,10 +1,14 @@
 package com.jas777.railops.views;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.jas777.railops.RailOpsApplication;
+import com.jas777.railops.log.Log;
+import com.jas777.railops.log.Logger;
+import com.jas777.railops.log.Subsystem;
 import com.jas777.railops.model.*;
-import com.jas777.railops.logic.LogicalGraphBuilder;
+import com.jas777.railops.logic.CompiledStation;
+import com.jas777.railops.logic.CompiledTopology;
+import com.jas777.railops.logic.LayoutEdit;
 import com.jas777.railops.logic.SimulationController;
+import com.jas777.railops.logic.TopologyCache;
 
 import javafx.geometry.VPos;
 import javafx.scene.Group;
@@ -23,7 +27,6 @@ import javafx.scene.input.KeyCode;
 import javafx.geometry.Bounds;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 
@@ -31,6 +34,8 @@ record Coords(double x, double y) {}
 
 public class StationView extends Pane {
 
+    private static final Logger LOG = Log.get(Subsystem.VIEW);
+
     private final double TRACK_WIDTH = 3.0;
     private final double TEXT_SIZE = 10.0;
     private final double NODE_RADIUS = 4.0;
@@ -61,11 +66,13 @@ public class StationView extends Pane {
     private Map<String, SwitchState> switchStates = new HashMap<>();
     private Map<String, SignalState> signalStates = new HashMap<>();
     private Map<String, List<TrackLink>> logicalGraphMap = new HashMap<>();
+    private CompiledTopology topology;
     private final Map<String, Coords> nodePositions = new HashMap<>();
     private final Map<String, Switch> switchMap = new HashMap<>();
     private final Map<String, Track> nodeToTrackMap = new HashMap<>();
 
     private SimulationController simulationController;
+    private FxSimulationClock simulationClock;
     private final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ss");
 
     private ContextMenu switchContextMenu;
@@ -85,19 +92,22 @@ public class StationView extends Pane {
         this.getChildren().add(schematicGroup);
 
         try {
-            config = loadConfig("station_config.json");
+            CompiledStation station = loadStation("station_config.json");
+            config = station.getConfig();
 
-            initializeStationLogic(config);
+            initializeStationLogic(station);
             mapNodesToPositions(config);
 
-            simulationController = new SimulationController(config, logicalGraphMap, switchStates);
+            simulationController = new SimulationController(station, switchStates,
+                    SimulationController.createDefaultTimetable(config));
+            simulationClock = new FxSimulationClock(simulationController);
 
             clockText = new Text();
             clockText.setFont(Font.font("Arial", 18));
             clockText.setFill(Color.YELLOW);
             this.getChildren().add(clockText);
 
-            simulationController.currentTimeProperty().addListener((obs, old, newTime) -> {
+            simulationClock.currentTimeProperty().addListener((obs, old, newTime) -> {
                 clockText.setText(newTime.format(timeFormatter));
                 redrawTracks();
                 drawStation(config);
@@ -131,27 +141,23 @@ public class StationView extends Pane {
             positionClock(this.getWidth());
             centerView();
 
-            simulationController.start();
+            simulationClock.start();
 
         } catch (IOException e) {
-            System.err.println("Error loading station configuration: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error loading station configuration: " + e.getMessage(), e);
             Text errorText = new Text(100, 100, "Error: Could not load station configuration.");
             errorText.setFill(Color.RED);
             this.getChildren().add(errorText);
         }
     }
 
-    private StationConfig loadConfig(String filename) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        InputStream is = RailOpsApplication.class.getResourceAsStream(filename);
-        if (is == null) {
-            throw new IOException("Resource file not found: " + filename);
-        }
-        return mapper.readValue(is, StationConfig.class);
+    private CompiledStation loadStation(String filename) throws IOException {
+        return TopologyCache.load(filename, false);
     }
 
-    private void initializeStationLogic(StationConfig config) {
+    private void initializeStationLogic(CompiledStation station) {
+        StationConfig config = station.getConfig();
+
         // Initialize switches
         for (Switch sw : config.getSwitches()) {
             switchStates.put(sw.id(), new SwitchState(sw.id(), sw.defaultState()));
@@ -165,67 +171,40 @@ public class StationView extends Pane {
             }
         }
 
-        LogicalGraphBuilder builder = new LogicalGraphBuilder();
-        this.logicalGraphMap = builder.buildLogicalGraph(config);
+        this.topology = station.getTopology();
+        this.logicalGraphMap = topology.logicalGraph();
 
-        System.out.println("=== Logical Graph ===");
-        for (Map.Entry<String, List<TrackLink>> entry : logicalGraphMap.entrySet()) {
-            System.out.println(entry.getKey() + " -> " + entry.getValue());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("=== Logical Graph ===");
+            for (Map.Entry<String, List<TrackLink>> entry : logicalGraphMap.entrySet()) {
+                LOG.debug(entry.getKey() + " -> " + entry.getValue());
+            }
         }
     }
 
+    // Node positions and the node -> track association are precompiled in the topology
     private void mapNodesToPositions(StationConfig config) {
         nodePositions.clear();
         nodeToTrackMap.clear();
 
-        // Map switch positions using their connection IDs directly
-        for (Switch sw : config.getSwitches()) {
-            if (sw.p1() != null && sw.p1().size() >= 2) {
-                String p1ConnId = sw.p1ConnectionId();
-                if (p1ConnId != null) {
-                    nodePositions.put(p1ConnId, new Coords(sw.p1().get(0), sw.p1().get(1)));
-                }
-            }
-
-            if (sw.p2MainConnectionId() != null && sw.getP2Main() != null && sw.getP2Main().size() >= 2) {
-                nodePositions.put(sw.p2MainConnectionId(),
-                        new Coords(sw.getP2Main().get(0), sw.getP2Main().get(1)));
+        List<Track> tracks = config.getTracks();
+        for (int node = 0; node < topology.nodeCount(); node++) {
+            String nodeId = topology.nodeId(node);
+            if (topology.hasCoordinates(node)) {
+                nodePositions.put(nodeId, new Coords(topology.nodeX(node), topology.nodeY(node)));
             }
-
-            if (sw.p2SideConnectionId() != null && sw.getP2Side() != null && sw.getP2Side().size() >= 2) {
-                nodePositions.put(sw.p2SideConnectionId(),
-                        new Coords(sw.getP2Side().get(0), sw.getP2Side().get(1)));
+            int track = topology.nodeTrack(node);
+            if (track != CompiledTopology.NONE && tracks.get(track).pointCount() > 0) {
+                nodeToTrackMap.put(nodeId, tracks.get(track));
             }
         }
 
-        // Map track entry and exit nodes and track associations
-        for (Track track : config.getTracks()) {
-            List<List<Double>> points = track.points();
-            if (!points.isEmpty()) {
-                List<Double> firstPoint = points.get(0);
-                List<Double> lastPoint = points.get(points.size() - 1);
-
-                if (track.entryNodeId() != null) {
-                    if (firstPoint.size() >= 2) {
-                        nodePositions.put(track.entryNodeId(),
-                                new Coords(firstPoint.get(0), firstPoint.get(1)));
-                    }
-                    nodeToTrackMap.put(track.entryNodeId(), track);
-                }
-                if (track.exitNodeId() != null) {
-                    if (lastPoint.size() >= 2) {
-                        nodePositions.put(track.exitNodeId(),
-                                new Coords(lastPoint.get(0), lastPoint.get(1)));
-                    }
-                    nodeToTrackMap.put(track.exitNodeId(), track);
-                }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("=== Node Positions ===");
+            for (Map.Entry<String, Coords> entry : nodePositions.entrySet()) {
+                LOG.debug(entry.getKey() + " at " + entry.getValue());
             }
         }
-
-        System.out.println("=== Node Positions ===");
-        for (Map.Entry<String, Coords> entry : nodePositions.entrySet()) {
-            System.out.println(entry.getKey() + " at " + entry.getValue());
-        }
     }
 
     private void drawStation(StationConfig config) {
@@ -248,14 +227,17 @@ public class StationView extends Pane {
         }
         centerTextPosition(this.getWidth());
 
-        // Draw tracks first (bottom layer)
-        for (Track track : config.getTracks()) {
-            drawTrack(track);
+        // Draw tracks first (bottom layer); the list index is the track's index in the compiled topology
+        List<Track> tracks = config.getTracks();
+        for (int i = 0; i < tracks.size(); i++) {
+            drawTrack(tracks.get(i), i);
         }
 
-        // Draw switches
+        // Draw switches; removed ones are kept in the list without connections
         for (Switch sw : config.getSwitches()) {
-            drawSwitch(sw);
+            if (sw.p1ConnectionId() != null) {
+                drawSwitch(sw);
+            }
         }
 
         // Draw signals on top of tracks
@@ -284,41 +266,25 @@ public class StationView extends Pane {
 //        applyTransforms();
     }
 
-    private void drawTrack(Track track) {
-        List<List<Double>> points = track.points();
+    private void drawTrack(Track track, int trackIndex) {
+        int pointCount = track.pointCount();
         Color color = getColorFromString(track.color());
 
-        // Check if ANY node associated with this track is occupied
-        boolean isOccupied = false;
-        if (simulationController != null) {
-            Set<String> occupied = simulationController.getOccupiedNodes();
-
-            // Check if entry or exit nodes are occupied
-            if (track.entryNodeId() != null && occupied.contains(track.entryNodeId())) {
-                isOccupied = true;
-            }
-            if (track.exitNodeId() != null && occupied.contains(track.exitNodeId())) {
-                isOccupied = true;
-            }
-
-            // Also check by track ID
-            if (occupied.contains(track.id())) {
-                isOccupied = true;
-            }
-        }
+        // Check if entry or exit node of this track is occupied
+        boolean isOccupied = simulationController != null
+                && simulationController.getOccupancy().isTrackOccupied(trackIndex);
 
         // Override color if occupied
         if (isOccupied) {
             color = Color.rgb(200, 0, 0); // Bright red for occupied tracks
         }
 
-        if (points.isEmpty()) return;
+        if (pointCount == 0) return;
 
-        if (points.size() == 1) {
-            List<Double> point = points.get(0);
-            if (point.size() >= 2) {
-                double x = point.get(0);
-                double y = point.get(1);
+        if (pointCount == 1) {
+            if (track.hasPoint(0)) {
+                double x = track.x(0);
+                double y = track.y(0);
 
                 Coords entryCoords = nodePositions.get(track.entryNodeId());
                 Coords exitCoords = nodePositions.get(track.exitNodeId());
@@ -330,11 +296,9 @@ public class StationView extends Pane {
                 }
             }
         } else {
-            for (int i = 0; i < points.size() - 1; i++) {
-                List<Double> p1 = points.get(i);
-                List<Double> p2 = points.get(i + 1);
-                if (p1.size() >= 2 && p2.size() >= 2) {
-                    drawLine(p1.get(0), p1.get(1), p2.get(0), p2.get(1), color);
+            for (int i = 0; i < pointCount - 1; i++) {
+                if (track.hasPoint(i) && track.hasPoint(i + 1)) {
+                    drawLine(track.x(i), track.y(i), track.x(i + 1), track.y(i + 1), color);
                 }
             }
         }
@@ -347,7 +311,7 @@ public class StationView extends Pane {
         Coords p1Coords = nodePositions.get(sw.p1ConnectionId());
 
         if (p1Coords == null) {
-            System.err.println("Warning: No position for switch " + swId + " P1 connection: " + sw.p1ConnectionId());
+            LOG.warn("Warning: No position for switch " + swId + " P1 connection: " + sw.p1ConnectionId());
             return;
         }
 
@@ -427,10 +391,10 @@ public class StationView extends Pane {
     }
 
     private void drawWaypoint(Waypoint wp) {
-        if (wp.position() == null || wp.position().size() < 2) return;
+        if (!wp.hasPosition()) return;
 
-        double x = wp.position().get(0);
-        double y = wp.position().get(1);
+        double x = wp.x();
+        double y = wp.y();
 
         if (wp.type() == Waypoint.WaypointType.ENTRANCE) {
             // Draw bidirectional arrow for entrances
@@ -495,10 +459,10 @@ public class StationView extends Pane {
     }
 
     private void drawSignal(Signal signal) {
-        if (signal.position() == null || signal.position().size() < 2) return;
+        if (!signal.hasPosition()) return;
 
-        double x = signal.position().get(0);
-        double y = signal.position().get(1);
+        double x = signal.x();
+        double y = signal.y();
 
         // Find the protected track to determine direction
         Coords protectedNode = nodePositions.get(signal.protectedNodeId());
@@ -630,8 +594,9 @@ public class StationView extends Pane {
 
         trackGroup.getChildren().clear();
         drawStation(config);
-        for (Track track : config.getTracks()) {
-            drawTrack(track);
+        List<Track> tracks = config.getTracks();
+        for (int i = 0; i < tracks.size(); i++) {
+            drawTrack(tracks.get(i), i);
         }
     }
 
@@ -766,14 +731,46 @@ public class StationView extends Pane {
     public void setSwitchState(String switchId, String newState) {
         SwitchState state = switchStates.get(switchId);
         if (state != null) {
-            state.setState(newState.toUpperCase());
+            if (simulationController != null) {
+                simulationController.setSwitchState(switchId, newState.toUpperCase());
+            } else {
+                state.setState(newState.toUpperCase());
+            }
             try {
                 drawStation(config);
                 applyTransforms();
             } catch (Exception e) {
-                System.err.println("Error redrawing station: " + e.getMessage());
+                LOG.error("Error redrawing station: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Apply a layout edit to the running simulation and redraw the station. Returns false if the simulation
+     * refused the edit.
+     */
+    public boolean applyLayoutEdit(LayoutEdit edit) {
+        if (simulationController == null) return false;
+        try {
+            simulationController.applyLayoutEdit(edit);
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            LOG.warn("Layout edit refused: " + e.getMessage());
+            return false;
+        }
+
+        config = simulationController.getConfig();
+        topology = simulationController.getTopology();
+        logicalGraphMap = topology.logicalGraph();
+        switchMap.clear();
+        for (Switch sw : config.getSwitches()) {
+            if (sw.p1ConnectionId() != null) {
+                switchMap.put(sw.id(), sw);
             }
         }
+        mapNodesToPositions(config);
+        drawStation(config);
+        applyTransforms();
+        return true;
     }
 
     public Map<String, List<TrackLink>> getLogicalGraphMap() {
@@ -784,9 +781,14 @@ public class StationView extends Pane {
         return simulationController;
     }
 
+    /** Drives the controller from the FX thread; null if the station could not be loaded. */
+    public FxSimulationClock getSimulationClock() {
+        return simulationClock;
+    }
+
     public void cleanup() {
-        if (simulationController != null) {
-            simulationController.stop();
+        if (simulationClock != null) {
+            simulationClock.stop();
         }
     }
 }
\ No newline at end of file
@@ -128,10 +128,7 @@ public class TimetableView extends BorderPane {
     public void refresh() {
         for (TimetableRow row : data) {
             // Find corresponding active train
-            Train train = simulationController.getActiveTrains().stream()
-                    .filter(t -> t.getTrainNumber().equals(row.getTrainNumber()))
-                    .findFirst()
-                    .orElse(null);
+            Train train = simulationController.getTrain(row.getTrainNumber());
 
             if (train != null) {
                 row.updateFromTrain(train);
@@ -0,0 +1,253 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.LayoutGeometry;
+import com.jas777.railops.model.StationConfig;
+import com.jas777.railops.model.Switch;
+import com.jas777.railops.model.TimetableEntry;
+import com.jas777.railops.model.Track;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Every incremental result is checked against compiling the edited layout from scratch: the patched adjacency,
+ * the updated interlocking and a simulation run on the edited station.
+ */
+class IncrementalGraphTest {
+
+    private static final long START = SimulationController.START_OF_DAY;
+
+    private final TestLayouts layout = new TestLayouts()
+            .track("IN", "ENTRY", "s")
+            .sw("SW", "s", "a", "b")
+            .platform("P_1", "a", "x")
+            .platform("P_2", "b", "y")
+            .track("OUT", "x", "EXIT");
+
+    /** A straight track of the given length, so weighted edges differ from hop counts. */
+    private Track track(String id, String type, String entryNodeId, String exitNodeId, double length) {
+        LayoutGeometry geometry = layout.config().getGeometry();
+        int first = geometry.addPoint(0, 0);
+        geometry.addPoint(length, 0);
+        return new Track(id, type, geometry, first, 2, null, entryNodeId, exitNodeId);
+    }
+
+    private Switch sw(String id, String p1, String main, String side) {
+        return new Switch(id, layout.config().getGeometry(), LayoutGeometry.NONE, LayoutGeometry.NONE,
+                LayoutGeometry.NONE, "MAIN", p1, main, side);
+    }
+
+    private StationConfig edited(GraphDelta delta) {
+        StationConfig config = new StationConfig();
+        config.setStationName(layout.config().getStationName());
+        config.setGeometry(layout.config().getGeometry());
+        config.setTracks(delta.tracks());
+        config.setSwitches(delta.switches());
+        config.setSignals(layout.config().getSignals());
+        return config;
+    }
+
+    /** Non-empty adjacency rows by node id, each edge with its target, switch leg and weight. */
+    private static Map<String, Set<String>> rows(CompiledTopology topology) {
+        Map<String, Set<String>> rows = new TreeMap<>();
+        for (int node = 0; node < topology.nodeCount(); node++) {
+            Set<String> edges = new TreeSet<>();
+            for (int edge = topology.firstEdge(node); edge < topology.endEdge(node); edge++) {
+                int sw = topology.edgeSwitch(edge);
+                edges.add(topology.nodeId(topology.edgeTarget(edge))
+                        + (sw == CompiledTopology.NONE ? "" : " via " + topology.switchId(sw) + "/"
+                        + topology.edgeSwitchState(edge))
+                        + " weight " + topology.edgeWeight(edge));
+            }
+            if (!edges.isEmpty()) {
+                rows.put(topology.nodeId(node), edges);
+            }
+        }
+        return rows;
+    }
+
+    private static String nodeId(CompiledTopology topology, int node) {
+        return node == CompiledTopology.NONE ? null : topology.nodeId(node);
+    }
+
+    private static void assertSameGraph(CompiledTopology expected, CompiledTopology actual) {
+        assertEquals(rows(expected), rows(actual));
+        assertEquals(expected.hasEdgeWeights(), actual.hasEdgeWeights());
+        assertEquals(expected.trackCount(), actual.trackCount());
+        for (int t = 0; t < expected.trackCount(); t++) {
+            assertEquals(expected.trackId(t), actual.trackId(t));
+            assertEquals(nodeId(expected, expected.trackEntryNode(t)), nodeId(actual, actual.trackEntryNode(t)));
+            assertEquals(nodeId(expected, expected.trackExitNode(t)), nodeId(actual, actual.trackExitNode(t)));
+        }
+        assertEquals(expected.switchCount(), actual.switchCount());
+        for (int sw = 0; sw < expected.switchCount(); sw++) {
+            assertEquals(expected.switchId(sw), actual.switchId(sw));
+        }
+        // The offsets must describe the same rows as the targets they index
+        for (int node = 0; node < actual.nodeCount(); node++) {
+            assertEquals(node == 0 ? 0 : actual.endEdge(node - 1), actual.firstEdge(node));
+        }
+        assertEquals(actual.edgeCount(), actual.endEdge(actual.nodeCount() - 1));
+    }
+
+    private static String routeKey(InterlockingTable table, int route) {
+        CompiledTopology topology = table.topology();
+        return topology.nodeId(table.entryNode(route)) + " -> " + topology.trackId(table.platformTrack(route));
+    }
+
+    /** Live routes by entry and platform: their path and the switch positions they require. */
+    private static Map<String, String> routes(InterlockingTable table) {
+        CompiledTopology topology = table.topology();
+        Map<String, String> routes = new TreeMap<>();
+        for (int route = 0; route < table.routeCount(); route++) {
+            if (table.nodes(route).length == 0) continue;
+            StringBuilder description = new StringBuilder();
+            for (int node : table.nodes(route)) {
+                description.append(topology.nodeId(node)).append(' ');
+            }
+            for (int sw = 0; sw < topology.switchCount(); sw++) {
+                if (table.requiresSwitch(route, sw)) {
+                    description.append(topology.switchId(sw)).append('=').append(table.requiredState(route, sw))
+                            .append(' ');
+                }
+            }
+            routes.put(routeKey(table, route), description.toString());
+        }
+        return routes;
+    }
+
+    private static Map<String, Set<String>> conflicts(InterlockingTable table) {
+        Map<String, Set<String>> conflicts = new TreeMap<>();
+        for (int route = 0; route < table.routeCount(); route++) {
+            if (table.nodes(route).length == 0) continue;
+            Set<String> others = new TreeSet<>();
+            for (int other = 0; other < table.routeCount(); other++) {
+                if (other != route && table.nodes(other).length > 0 && table.conflictsWith(route, other)) {
+                    others.add(routeKey(table, other));
+                }
+            }
+            conflicts.put(routeKey(table, route), others);
+        }
+        return conflicts;
+    }
+
+    private static void assertSameInterlocking(InterlockingTable expected, InterlockingTable actual) {
+        assertEquals(routes(expected), routes(actual));
+        assertEquals(conflicts(expected), conflicts(actual));
+    }
+
+    /** Apply each edit in turn, comparing the incremental state with a full recompile after every step. */
+    private void assertMatchesRecompile(boolean useTrackLengths, List<LayoutEdit> edits) {
+        LogicalGraphBuilder builder = new LogicalGraphBuilder();
+        CompiledTopology topology = builder.compile(layout.config(), useTrackLengths);
+        IncrementalGraph graph = new IncrementalGraph(layout.config(), topology);
+        InterlockingTable interlocking = InterlockingTable.compile(layout.config(), topology);
+
+        for (LayoutEdit edit : edits) {
+            CompiledTopology previous = graph.topology();
+            GraphDelta delta = graph.apply(edit);
+            interlocking = interlocking.update(delta, new RouteLocks(interlocking));
+
+            StationConfig config = edited(delta);
+            CompiledTopology recompiled = builder.compile(config, useTrackLengths);
+            for (int node = 0; node < previous.nodeCount(); node++) {
+                assertEquals(previous.nodeId(node), delta.topology().nodeId(node), "node indices are kept");
+            }
+            assertSameGraph(recompiled, delta.topology());
+            assertSameInterlocking(InterlockingTable.compile(config, recompiled), interlocking);
+        }
+    }
+
+    private List<LayoutEdit> edits() {
+        return List.of(
+                // A second entry and a third platform behind a new switch
+                new LayoutEdit()
+                        .putTrack(track("IN_2", "MAIN_LINE", "ENTRY_2", "t", 120))
+                        .putSwitch(sw("SW_2", "t", "c", "b"))
+                        .putTrack(track("P_3", "PLATFORM_TRACK", "c", "z", 300)),
+                // Platform 1 now leaves towards a new exit; the old exit track is lifted
+                new LayoutEdit()
+                        .putTrack(track("P_1", "PLATFORM_TRACK", "a", "x2", 280))
+                        .removeTrack("OUT")
+                        .putTrack(track("OUT_2", "MAIN_LINE", "x2", "EXIT", 90)),
+                // The first switch is removed: the first entry no longer reaches any platform
+                new LayoutEdit().removeSwitch("SW"),
+                // And put back with its legs swapped
+                new LayoutEdit().putSwitch(sw("SW", "s", "b", "a")));
+    }
+
+    @Test
+    void patchedGraphMatchesAFullRecompile() {
+        assertMatchesRecompile(false, edits());
+    }
+
+    @Test
+    void patchedWeightedGraphMatchesAFullRecompile() {
+        assertMatchesRecompile(true, edits());
+    }
+
+    @Test
+    void editedControllerRunsLikeOneBuiltOnTheEditedLayout() {
+        List<TimetableEntry> timetable = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            LocalTime arrival = LocalTime.of(6, 10 + 5 * i);
+            timetable.add(new TimetableEntry("R " + i, "A", "B", arrival, arrival.plusMinutes(3),
+                    i % 2 == 0 ? "1" : "2", "ENTRY"));
+        }
+        // The second platform is now reached over an extra link, so its trains take longer to arrive
+        LayoutEdit edit = new LayoutEdit()
+                .putSwitch(sw("SW", "s", "a", "b2"))
+                .putTrack(track("LINK", "MAIN_LINE", "b2", "b", 50));
+
+        CompiledStation station = CompiledStation.of(layout.config(), layout.compile());
+        SimulationController live = new SimulationController(station,
+                StationConfigLoader.createSwitchStates(layout.config()), timetable);
+        live.advanceTo(START);
+        GraphDelta delta = live.applyLayoutEdit(edit);
+        assertNotEquals(0, delta.changedNodes().length);
+
+        StationConfig config = edited(delta);
+        SimulationController rebuilt = new SimulationController(
+                CompiledStation.of(config, new LogicalGraphBuilder().compile(config)),
+                StationConfigLoader.createSwitchStates(config), timetable);
+        rebuilt.advanceTo(START);
+
+        List<String> liveExits = new ArrayList<>();
+        List<String> rebuiltExits = new ArrayList<>();
+        live.addExitListener((entry, train, time) -> liveExits.add(entry.trainNumber() + " at " + time));
+        rebuilt.addExitListener((entry, train, time) -> rebuiltExits.add(entry.trainNumber() + " at " + time));
+        for (long time = START; time <= START + 2 * 3600; time += 60) {
+            live.advanceTo(time);
+            rebuilt.advanceTo(time);
+            assertEquals(trains(rebuilt.snapshot(), rebuilt.getTopology()),
+                    trains(live.snapshot(), live.getTopology()), "at " + time);
+        }
+        assertEquals(rebuiltExits, liveExits);
+        assertFalse(liveExits.isEmpty());
+    }
+
+    /** Active trains with their state, node and platform by id, so node numbering does not matter. */
+    private static List<String> trains(SimulationSnapshot snapshot, CompiledTopology topology) {
+        List<String> trains = new ArrayList<>();
+        for (int i = 0; i < snapshot.trains.activeCount(); i++) {
+            int slot = snapshot.trains.activeSlot(i);
+            int node = snapshot.trains.node(slot);
+            int platform = snapshot.trains.platform(slot);
+            trains.add(snapshot.trains.trainNumber(slot) + " " + snapshot.trains.status(slot)
+                    + " at " + nodeId(topology, node)
+                    + " platform " + (platform == CompiledTopology.NONE ? null : topology.trackId(platform))
+                    + " arrived " + snapshot.trains.actualArrival(slot));
+        }
+        return trains;
+    }
+}
@@ -0,0 +1,75 @@
+package com.jas777.railops.logic;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InterlockingTableTest {
+
+    // IN leads into SW; the side leg reaches the platform in one track, the main leg in three
+    private static TestLayouts layout() {
+        return new TestLayouts()
+                .track("IN", "e0", "s")
+                .sw("SW", "s", "a", "b")
+                .track("A1", "a", "m1")
+                .track("A2", "m1", "m2")
+                .track("A3", "m2", "p")
+                .track("B1", "b", "p")
+                .platform("P", "p", "x");
+    }
+
+    @Test
+    void unweightedRouteTakesFewestEdges() {
+        TestLayouts layout = layout();
+        CompiledTopology topology = layout.compile();
+        InterlockingTable table = InterlockingTable.compile(layout.config(), topology);
+
+        int route = table.routeFor(topology.nodeIndex("e0"), topology.trackIndex("P"));
+        assertNotEquals(InterlockingTable.NONE, route);
+        assertTrue(table.containsNode(route, topology.nodeIndex("b")));
+        assertEquals(CompiledTopology.STATE_SIDE, table.requiredState(route, topology.switchIndex("SW")));
+    }
+
+    @Test
+    void weightedRouteTakesShortestLength() {
+        TestLayouts layout = layout();
+        CompiledTopology plain = layout.compile();
+        double[] weights = new double[plain.edgeCount()];
+        Arrays.fill(weights, 1.0);
+        int b = plain.nodeIndex("b");
+        for (int edge = plain.firstEdge(b); edge < plain.endEdge(b); edge++) {
+            weights[edge] = 10.0;
+        }
+        CompiledTopology topology = plain.withEdgeWeights(weights);
+        InterlockingTable table = InterlockingTable.compile(layout.config(), topology);
+
+        int route = table.routeFor(topology.nodeIndex("e0"), topology.trackIndex("P"));
+        assertNotEquals(InterlockingTable.NONE, route);
+        assertFalse(table.containsNode(route, b));
+        assertTrue(table.containsNode(route, topology.nodeIndex("m2")));
+        assertEquals(CompiledTopology.STATE_MAIN, table.requiredState(route, topology.switchIndex("SW")));
+    }
+
+    @Test
+    void stationSharesOneTableAcrossControllers() {
+        TestLayouts layout = layout();
+        CompiledStation station = CompiledStation.of(layout.config(), layout.compile());
+        SimulationController first = new SimulationController(station,
+                StationConfigLoader.createSwitchStates(layout.config()));
+        SimulationController second = new SimulationController(station,
+                StationConfigLoader.createSwitchStates(layout.config()));
+
+        assertSame(first.getInterlocking(), second.getInterlocking());
+        int route = first.getInterlocking().routeFor(station.getTopology().nodeIndex("e0"),
+                station.getTopology().trackIndex("P"));
+        first.getRouteLocks().lock(route);
+        assertTrue(first.getRouteLocks().isLocked(route));
+        assertFalse(second.getRouteLocks().isLocked(route));
+    }
+}
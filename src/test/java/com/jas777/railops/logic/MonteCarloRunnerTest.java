@@ -0,0 +1,51 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.TimetableEntry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MonteCarloRunnerTest {
+
+    private static CompiledStation station() {
+        TestLayouts layout = new TestLayouts()
+                .track("IN", "ENTRY", "s")
+                .sw("SW", "s", "a", "b")
+                .platform("P_1", "a", "x")
+                .platform("P_2", "b", "y");
+        return CompiledStation.of(layout.config(), layout.compile());
+    }
+
+    private static List<TimetableEntry> timetable() {
+        return List.of(
+                new TimetableEntry("R 1", "A", "B", LocalTime.of(6, 10), LocalTime.of(6, 15), "1", "ENTRY"),
+                new TimetableEntry("R 2", "A", "B", LocalTime.of(6, 12), LocalTime.of(6, 20), "2", "ENTRY"),
+                new TimetableEntry("R 3", "A", "B", LocalTime.of(6, 30), LocalTime.of(6, 35), "1", "ENTRY"));
+    }
+
+    private static MonteCarloReport run(CompiledStation station, int threads) throws InterruptedException {
+        MonteCarloRunner runner = new MonteCarloRunner(station, timetable(),
+                ArrivalPerturbation.exponential(0.5, 300));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return runner.run(64, 7L, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void sharedStationGivesTheSameReportOnAnyThreadCount() throws InterruptedException {
+        CompiledStation station = station();
+
+        MonteCarloReport single = run(station, 1);
+        MonteCarloReport parallel = run(station, 4);
+
+        assertEquals(single.format(), parallel.format());
+        assertEquals(3, single.trains().size());
+    }
+}
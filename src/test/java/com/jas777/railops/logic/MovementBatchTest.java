@@ -0,0 +1,173 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.SignalState;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovementBatchTest {
+
+    @Test
+    void convergingTrainsGetOneWinnerInlineAndOnPool() {
+        CompiledTopology topology = new TestLayouts()
+                .track("T_A", "A", "M")
+                .track("T_B", "B", "M")
+                .track("T_M", "M", "X")
+                .compile();
+        int a = topology.nodeIndex("A");
+        int b = topology.nodeIndex("B");
+        int m = topology.nodeIndex("M");
+        int x = topology.nodeIndex("X");
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (ForkJoinPool run : new ForkJoinPool[]{null, pool}) {
+                TrainStore trains = new TrainStore();
+                OccupancyMap occupancy = new OccupancyMap(topology);
+                MovementBatch batch = new MovementBatch(trains, occupancy,
+                        new SignalState[topology.nodeCount()], topology.nodeCount());
+                batch.setPool(run, 1);
+                int first = trains.allocate(null, 0, trains.internRoute(new int[]{a, m, x}), 0);
+                int second = trains.allocate(null, 0, trains.internRoute(new int[]{b, m, x}), 0);
+                occupancy.occupy(a);
+                occupancy.occupy(b);
+
+                batch.add(first);
+                batch.add(second);
+                batch.resolve(0);
+
+                assertEquals(MovementBatch.MOVE, batch.outcome(0));
+                assertEquals(MovementBatch.NODE_WAIT, batch.outcome(1));
+                assertEquals(m, trains.node(first));
+                assertEquals(b, trains.node(second));
+                assertFalse(occupancy.isNodeOccupied(a));
+                assertTrue(occupancy.isNodeOccupied(b));
+                assertTrue(occupancy.isNodeOccupied(m));
+                assertEquals(2, occupancy.occupiedCount());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void trainsWaitForAnOccupiedNode() {
+        CompiledTopology topology = new TestLayouts()
+                .track("T_A", "A", "M")
+                .track("T_B", "B", "M")
+                .track("T_M", "M", "X")
+                .compile();
+        int m = topology.nodeIndex("M");
+        TrainStore trains = new TrainStore();
+        OccupancyMap occupancy = new OccupancyMap(topology);
+        MovementBatch batch = new MovementBatch(trains, occupancy, new SignalState[topology.nodeCount()],
+                topology.nodeCount());
+        int first = trains.allocate(null, 0,
+                trains.internRoute(new int[]{topology.nodeIndex("A"), m, topology.nodeIndex("X")}), 0);
+        int second = trains.allocate(null, 0,
+                trains.internRoute(new int[]{topology.nodeIndex("B"), m, topology.nodeIndex("X")}), 0);
+        occupancy.occupy(topology.nodeIndex("A"));
+        occupancy.occupy(topology.nodeIndex("B"));
+        occupancy.occupy(m);
+
+        batch.add(first);
+        batch.add(second);
+        batch.resolve(0);
+
+        assertEquals(MovementBatch.NODE_WAIT, batch.outcome(0));
+        assertEquals(MovementBatch.NODE_WAIT, batch.outcome(1));
+        assertEquals(topology.nodeIndex("A"), trains.node(first));
+        assertEquals(topology.nodeIndex("B"), trains.node(second));
+    }
+
+    @Test
+    void largeBatchIsIdenticalInlineAndOnPool() {
+        int pairs = 3000;
+        TestLayouts layout = new TestLayouts();
+        for (int i = 0; i < pairs; i++) {
+            layout.track("T_A" + i, "A" + i, "M" + i)
+                    .track("T_B" + i, "B" + i, "M" + i)
+                    .track("T_M" + i, "M" + i, "X" + i);
+        }
+        CompiledTopology topology = layout.compile();
+
+        // Interleave the pairs so the winner of a node depends on its position in the batch
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 2 * pairs; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(7));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Result inline = run(topology, pairs, order, null);
+            Result parallel = run(topology, pairs, order, pool);
+            assertArrayEquals(inline.outcomes, parallel.outcomes);
+            assertArrayEquals(inline.nodes, parallel.nodes);
+            assertArrayEquals(inline.occupancy, parallel.occupancy);
+
+            for (int i = 0; i < pairs; i++) {
+                int m = topology.nodeIndex("M" + i);
+                int onM = 0;
+                for (int node : inline.nodes) {
+                    if (node == m) onM++;
+                }
+                assertEquals(1, onM, "Exactly one train of pair " + i + " moves");
+            }
+            assertEquals(2 * pairs, countBits(inline.occupancy), "No two trains share a node");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private record Result(byte[] outcomes, int[] nodes, long[] occupancy) {
+    }
+
+    private static Result run(CompiledTopology topology, int pairs, List<Integer> order, ForkJoinPool pool) {
+        TrainStore trains = new TrainStore();
+        OccupancyMap occupancy = new OccupancyMap(topology);
+        MovementBatch batch = new MovementBatch(trains, occupancy, new SignalState[topology.nodeCount()],
+                topology.nodeCount());
+        batch.setPool(pool, 16);
+
+        int[] slots = new int[2 * pairs];
+        for (int i = 0; i < pairs; i++) {
+            int m = topology.nodeIndex("M" + i);
+            int x = topology.nodeIndex("X" + i);
+            int a = topology.nodeIndex("A" + i);
+            int b = topology.nodeIndex("B" + i);
+            slots[2 * i] = trains.allocate(null, 0, trains.internRoute(new int[]{a, m, x}), 0);
+            slots[2 * i + 1] = trains.allocate(null, 0, trains.internRoute(new int[]{b, m, x}), 0);
+            occupancy.occupy(a);
+            occupancy.occupy(b);
+        }
+        for (int i : order) {
+            batch.add(slots[i]);
+        }
+        batch.resolve(0);
+
+        byte[] outcomes = new byte[batch.size()];
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = batch.outcome(i);
+        }
+        int[] nodes = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            nodes[i] = trains.node(slots[i]);
+        }
+        return new Result(outcomes, nodes, occupancy.toWords());
+    }
+
+    private static int countBits(long[] words) {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,75 @@
+package com.jas777.railops.logic;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PlatformAllocatorTest {
+
+    private static PlatformAllocator allocator(int platforms) {
+        TestLayouts layout = new TestLayouts();
+        for (int p = 1; p <= platforms; p++) {
+            layout.platform("P_" + p, "in" + p, "out" + p);
+        }
+        return new PlatformAllocator(layout.config(), layout.compile());
+    }
+
+    /*
+     * Platform 1: A [4, 12)
+     * Platform 2: B1 [0, 4), B2 [6, 10)
+     * Platform 3: D1 [0, 5), D2 [10, 14)
+     * X [0, 10) fits nowhere, and no single move makes room for it: A has nowhere to go, X overlaps both
+     * bookings on platform 2, and D1 has nowhere to go. Only the chain X -> 1, A -> 2, B2 -> 3 works.
+     */
+    private static PlatformAllocator twoStepLayout() {
+        PlatformAllocator allocator = allocator(3);
+        assertEquals(0, allocator.book("A", "1", 4, 12));
+        assertEquals(1, allocator.book("B1", "2", 0, 4));
+        assertEquals(1, allocator.book("B2", "2", 6, 10));
+        assertEquals(2, allocator.book("D1", "3", 0, 5));
+        assertEquals(2, allocator.book("D2", "3", 10, 14));
+        return allocator;
+    }
+
+    @Test
+    void bookingFollowsATwoStepDisplacementChain() {
+        PlatformAllocator allocator = twoStepLayout();
+
+        assertEquals(0, allocator.book("X", "1", 0, 10));
+
+        assertEquals(0, allocator.plannedPlatform("X"));
+        assertEquals(1, allocator.plannedPlatform("A"));
+        assertEquals(2, allocator.plannedPlatform("B2"));
+        assertEquals(1, allocator.plannedPlatform("B1"));
+        assertEquals(2, allocator.plannedPlatform("D1"));
+        assertEquals(2, allocator.plannedPlatform("D2"));
+    }
+
+    @Test
+    void repairReplacesDisplacedBookingsThroughAChain() {
+        PlatformAllocator allocator = twoStepLayout();
+
+        // X was planned elsewhere but actually stops on platform 1; A must move, and only B2 can make room
+        assertEquals(1, allocator.repair("X", 0, 0, 10));
+
+        assertEquals(0, allocator.plannedPlatform("X"));
+        assertEquals(1, allocator.plannedPlatform("A"));
+        assertEquals(2, allocator.plannedPlatform("B2"));
+    }
+
+    @Test
+    void displacedBookingGoesBackToItsDesignatedPlatform() {
+        PlatformAllocator allocator = allocator(3);
+        assertEquals(0, allocator.book("A", "1", 0, 25));
+        assertEquals(2, allocator.book("D", "3", 15, 35));
+        // Platform 3 is taken, so B is planned on platform 2
+        assertEquals(1, allocator.book("B", "3", 20, 30));
+        allocator.cancel("D");
+
+        assertEquals(1, allocator.repair("C", 1, 20, 30));
+
+        assertEquals(1, allocator.plannedPlatform("C"));
+        assertEquals(2, allocator.plannedPlatform("B"));
+        assertEquals(0, allocator.plannedPlatform("A"));
+    }
+}
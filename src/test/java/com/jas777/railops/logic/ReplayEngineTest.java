@@ -0,0 +1,128 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.journal.EventJournal;
+import com.jas777.railops.model.Track;
+import com.jas777.railops.model.TimetableEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.jas777.railops.logic.SnapshotAssertions.assertSameState;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplayEngineTest {
+
+    private static final long START = SimulationController.START_OF_DAY;
+
+    @TempDir
+    Path journalDirectory;
+
+    private final TestLayouts layout = new TestLayouts()
+            .track("IN", "ENTRY", "s")
+            .sw("SW", "s", "a", "b")
+            .platform("P_1", "a", "x")
+            .platform("P_2", "b", "y");
+    private final CompiledStation station = CompiledStation.of(layout.config(), layout.compile());
+
+    private static TimetableEntry train(String number, int hour, int minute, String platform) {
+        LocalTime arrival = LocalTime.of(hour, minute);
+        return new TimetableEntry(number, "A", "B", arrival, arrival.plusMinutes(4), platform, "ENTRY");
+    }
+
+    private static List<TimetableEntry> timetable() {
+        List<TimetableEntry> timetable = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            timetable.add(train("R " + i, 6, 10 + 7 * i, i % 2 == 0 ? "1" : "2"));
+        }
+        return timetable;
+    }
+
+    private SimulationController controller(List<TimetableEntry> timetable) {
+        return new SimulationController(station, StationConfigLoader.createSwitchStates(layout.config()), timetable);
+    }
+
+    /** Run with operator switch throws and an injected train; returns the live state at {@code at}. */
+    private SimulationSnapshot recordRun(long at, long end) throws IOException {
+        SimulationController live = controller(timetable());
+        try (EventJournal journal = new EventJournal(journalDirectory, 64 * 1024)) {
+            live.setJournal(journal);
+            live.advanceTo(START + 20 * 60);
+            live.setSwitchState("SW", "SIDE");
+            live.advanceTo(START + 35 * 60);
+            live.injectTrain(train("X 1", 6, 50, "1"), START + 50 * 60);
+            live.advanceTo(START + 41 * 60);
+            live.setSwitchState("SW", "MAIN");
+            live.advanceTo(at);
+            SimulationSnapshot snapshot = live.snapshot();
+            live.advanceTo(end);
+            live.setJournal(null);
+            return snapshot;
+        }
+    }
+
+    @Test
+    void replayedStateMatchesLiveStateAtSnapshotPoint() throws IOException {
+        long at = START + 47 * 60 + 3;
+        SimulationSnapshot live = recordRun(at, START + 3 * 3600);
+        assertTrue(live.getActiveTrainCount() > 0);
+        assertEquals(1, live.injectedArrivals.size());
+
+        SimulationController replayed = controller(ReplayEngine.readTimetable(journalDirectory));
+        ReplayEngine replay = new ReplayEngine(replayed, journalDirectory, 10 * 60);
+        replay.seek(at);
+        assertSameState(live, replayed.snapshot());
+
+        // Again from a snapshot, after scrubbing past the point
+        replay.seek(START + 2 * 3600);
+        replay.seek(at);
+        assertSameState(live, replayed.snapshot());
+    }
+
+    @Test
+    void replayReadsTheLatestRunOfADirectory() throws IOException {
+        try (EventJournal earlier = new EventJournal(journalDirectory, 64 * 1024)) {
+            SimulationController run = controller(List.of(train("OLD", 6, 5, "1")));
+            run.setJournal(earlier);
+            run.advanceTo(START + 3600);
+        }
+        long at = START + 75 * 60;
+        SimulationSnapshot live = recordRun(at, START + 2 * 3600);
+
+        assertEquals(timetable(), ReplayEngine.readTimetable(journalDirectory));
+        SimulationController replayed = controller(ReplayEngine.readTimetable(journalDirectory));
+        new ReplayEngine(replayed, journalDirectory).seek(at);
+        assertSameState(live, replayed.snapshot());
+    }
+
+    @Test
+    void replayRefusesAnotherTimetable() throws IOException {
+        recordRun(START + 3600, START + 3600);
+
+        SimulationController other = controller(List.of(train("OTHER", 6, 5, "1")));
+        assertThrows(IllegalArgumentException.class, () -> new ReplayEngine(other, journalDirectory));
+    }
+
+    @Test
+    void replayRefusesRunsWithLayoutEdits() throws IOException {
+        try (EventJournal journal = new EventJournal(journalDirectory, 64 * 1024)) {
+            SimulationController run = controller(timetable());
+            run.setJournal(journal);
+            run.advanceTo(START + 60);
+            run.applyLayoutEdit(new LayoutEdit().putTrack(
+                    new Track("SPUR", "MAIN_LINE", layout.config().getGeometry(), 0, 0, null, "x", "z")));
+            run.advanceTo(START + 3600);
+        }
+
+        SimulationController replayed = controller(ReplayEngine.readTimetable(journalDirectory));
+        IllegalStateException refused = assertThrows(IllegalStateException.class,
+                () -> new ReplayEngine(replayed, journalDirectory));
+        assertTrue(refused.getMessage().contains("layout edit"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.TimetableEntry;
+import com.jas777.railops.model.Train;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SimulationControllerTest {
+
+    private static final long START = SimulationController.START_OF_DAY;
+
+    private static SimulationController controller(TestLayouts layout, List<TimetableEntry> timetable) {
+        CompiledStation station = CompiledStation.of(layout.config(), layout.compile());
+        return new SimulationController(station, StationConfigLoader.createSwitchStates(layout.config()), timetable);
+    }
+
+    private static TimetableEntry train(String number, LocalTime arrival, String platform, String entryNode) {
+        return new TimetableEntry(number, "A", "B", arrival, arrival.plusMinutes(10), platform, entryNode);
+    }
+
+    private static Set<String> trainsAtPlatform(SimulationController controller, long from, long to) {
+        Set<String> arrived = new TreeSet<>();
+        for (long time = from; time <= to; time++) {
+            controller.advanceTo(time);
+            SimulationSnapshot snapshot = controller.snapshot();
+            for (int i = 0; i < snapshot.trains.activeCount(); i++) {
+                int slot = snapshot.trains.activeSlot(i);
+                if (snapshot.trains.status(slot) == Train.TrainStatus.AT_PLATFORM) {
+                    arrived.add(snapshot.trains.trainNumber(slot));
+                }
+            }
+        }
+        return arrived;
+    }
+
+    /*
+     * E1 and E2 merge into M; platform 1 starts right behind M and platform 2 behind platform 1. The feeders make
+     * E1 and E2 entries without an interlocking route, so both trains take pathfinder routes. The second enters one
+     * movement after the first and finds M held by it in the same batch the first leaves M.
+     */
+    @Test
+    void trainWaitingOnANodeLeftInTheSameBatchIsWoken() {
+        TestLayouts layout = new TestLayouts()
+                .track("F_1", "Z1", "E1")
+                .track("F_2", "Z2", "E2")
+                .track("A_1", "E1", "M")
+                .track("A_2", "E2", "M")
+                .track("L", "M", "p")
+                .platform("P_1", "p", "q")
+                .platform("P_2", "q", "r");
+        LocalTime arrival = LocalTime.of(6, 5);
+        SimulationController controller = controller(layout, List.of(
+                train("LEADER", arrival, "2", "E1"),
+                train("FOLLOWER", arrival.plusSeconds(2), "1", "E2")));
+
+        assertEquals(Set.of("FOLLOWER", "LEADER"), trainsAtPlatform(controller, START, START + 3600));
+    }
+
+    /*
+     * Trains take pathfinder routes from E, which has no interlocking route, alternately to platform 1 and 2. The
+     * operator throws the switch back and forth between them; after one miss per platform every route is a hit.
+     */
+    @Test
+    void switchingBackAndForthBetweenTwoRoutesHitsTheRouteCache() {
+        TestLayouts layout = new TestLayouts()
+                .track("FEED", "Z", "E")
+                .track("IN", "E", "s")
+                .sw("SW", "s", "a", "b")
+                .platform("P_1", "a", "x")
+                .platform("P_2", "b", "y");
+        List<TimetableEntry> timetable = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            timetable.add(train("R " + i, LocalTime.of(6, 0).plusMinutes(10 + 20 * i),i % 2 == 0 ? "1" : "2", "E"));
+        }
+        SimulationController controller = controller(layout, timetable);
+
+        for (int i = 0; i < timetable.size(); i++) {
+            long arrival = START + (10 + 20 * i) * 60;
+            controller.advanceTo(arrival - 10 * 60);
+            controller.setSwitchState("SW", i % 2 == 0 ? "MAIN" : "SIDE");
+            controller.advanceTo(arrival + 15 * 60);
+        }
+
+        RouteCache cache = controller.getRouteCache();
+        assertEquals(2, cache.getMisses());
+        assertEquals(timetable.size() - 2, cache.getHits());
+    }
+}
@@ -0,0 +1,43 @@
+package com.jas777.railops.logic;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Field-by-field comparison of two {@link SimulationSnapshot}s, trains and events included.
+ */
+final class SnapshotAssertions {
+
+    private SnapshotAssertions() {
+    }
+
+    static void assertSameState(SimulationSnapshot expected, SimulationSnapshot actual) {
+        assertEquals(expected.time, actual.time);
+        assertEquals(expected.timetable, actual.timetable);
+        assertEquals(expected.injectedArrivals, actual.injectedArrivals);
+        assertArrayEquals(expected.occupancy, actual.occupancy);
+        assertArrayEquals(expected.lockedRoutes, actual.lockedRoutes);
+        assertArrayEquals(expected.switchStates, actual.switchStates);
+        assertEquals(expected.signalAspects, actual.signalAspects);
+        assertEquals(expected.pendingSpawns, actual.pendingSpawns);
+        assertEquals(expected.spawnCursor, actual.spawnCursor);
+
+        assertEquals(expected.trains.activeCount(), actual.trains.activeCount());
+        for (int i = 0; i < expected.trains.activeCount(); i++) {
+            int e = expected.trains.activeSlot(i);
+            int a = actual.trains.activeSlot(i);
+            assertEquals(expected.trains.trainNumber(e), actual.trains.trainNumber(a));
+            assertEquals(expected.trains.status(e), actual.trains.status(a));
+            assertEquals(expected.trains.node(e), actual.trains.node(a));
+            assertEquals(expected.trains.platform(e), actual.trains.platform(a));
+            assertEquals(expected.trains.actualArrival(e), actual.trains.actualArrival(a));
+        }
+
+        assertEquals(expected.events.size(), actual.events.size());
+        for (int i = 0; i < expected.events.size(); i++) {
+            assertEquals(expected.events.get(i).time(), actual.events.get(i).time());
+            assertEquals(expected.events.get(i).type(), actual.events.get(i).type());
+            assertEquals(expected.events.get(i).train(), actual.events.get(i).train());
+        }
+    }
+}
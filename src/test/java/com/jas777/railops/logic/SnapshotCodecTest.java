@@ -0,0 +1,84 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.Signal;
+import com.jas777.railops.model.TimetableEntry;
+import com.jas777.railops.model.Train;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.jas777.railops.logic.SnapshotAssertions.assertSameState;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotCodecTest {
+
+    private static final long START = SimulationController.START_OF_DAY;
+
+    @TempDir
+    Path directory;
+
+    private final TestLayouts layout = new TestLayouts()
+            .track("IN", "ENTRY", "s")
+            .sw("SW", "s", "a", "b")
+            .platform("P_1", "a", "x")
+            .platform("P_2", "b", "y")
+            .signal("S1", "x", Signal.SignalAspect.GREEN);
+    private final CompiledStation station = CompiledStation.of(layout.config(), layout.compile());
+
+    private SimulationController controller() {
+        List<TimetableEntry> timetable = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            LocalTime arrival = LocalTime.of(6, 10 + i);
+            timetable.add(new TimetableEntry("R " + i, "A", "B", arrival, arrival.plusMinutes(4),
+                    i % 2 == 0 ? "1" : "2", "ENTRY"));
+        }
+        return new SimulationController(station, StationConfigLoader.createSwitchStates(layout.config()), timetable);
+    }
+
+    /**
+     * A run with both platforms taken and trains queueing for them, a thrown switch, a changed signal and an
+     * injected train.
+     */
+    private SimulationController running(long at) {
+        SimulationController controller = controller();
+        controller.advanceTo(START + 5 * 60);
+        controller.setSwitchState("SW", "SIDE");
+        controller.setSignalAspect("x", Signal.SignalAspect.GREEN_YELLOW);
+        controller.injectTrain(new TimetableEntry("X 1", "C", "B", LocalTime.of(6, 50), LocalTime.of(6, 54),
+                "1", "ENTRY"), START + 50 * 60);
+        controller.advanceTo(at);
+        return controller;
+    }
+
+    @Test
+    void checkpointRoundTripRestoresTheSameState() throws IOException {
+        long at = START + 10 * 60 + 3;
+        SimulationController live = running(at);
+        SimulationSnapshot before = live.snapshot();
+        assertEquals(2, before.trains.activeCount());
+        assertEquals(Train.TrainStatus.AT_PLATFORM, before.trains.status(before.trains.activeSlot(0)));
+        assertFalse(before.pendingSpawns.isEmpty());
+        assertEquals(1, before.injectedArrivals.size());
+        assertEquals(Signal.SignalAspect.GREEN_YELLOW, before.signalAspects.get("x"));
+
+        Path file = directory.resolve("checkpoint.bin");
+        live.saveCheckpoint(file);
+        SimulationController restored = controller();
+        restored.loadCheckpoint(file);
+        assertSameState(before, restored.snapshot());
+
+        // Both carry on identically from the restored state
+        live.advanceTo(START + 3 * 3600);
+        restored.advanceTo(START + 3 * 3600);
+        assertSameState(live.snapshot(), restored.snapshot());
+        assertTrue(Files.notExists(directory.resolve("checkpoint.bin.tmp")));
+    }
+}
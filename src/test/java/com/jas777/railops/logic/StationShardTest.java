@@ -0,0 +1,116 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.NetworkLink;
+import com.jas777.railops.model.TimetableEntry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StationShardTest {
+
+    private static final long DAY = 24 * 3600;
+
+    // IN -> P -> OUT; a train standing on the platform can reach EXIT
+    private static TestLayouts through() {
+        return new TestLayouts()
+                .track("IN", "ENTRY", "p")
+                .platform("P", "p", "x")
+                .track("OUT", "x", "EXIT");
+    }
+
+    // EXIT exists but nothing leads there from the platform
+    private static TestLayouts deadEnd() {
+        return new TestLayouts()
+                .track("IN", "ENTRY", "p")
+                .platform("P", "p", "x")
+                .track("OUT", "y", "EXIT");
+    }
+
+    private static StationShard shard(String name, TestLayouts layout, List<TimetableEntry> timetable) {
+        CompiledStation station = CompiledStation.of(layout.config(), layout.compile());
+        return new StationShard(name, new SimulationController(station,
+                StationConfigLoader.createSwitchStates(layout.config()), timetable), 64);
+    }
+
+    private static Map<String, StationShard> connect(List<NetworkLink> links, StationShard... shards) {
+        Map<String, StationShard> network = new LinkedHashMap<>();
+        for (StationShard shard : shards) {
+            network.put(shard.getName(), shard);
+        }
+        for (StationShard shard : shards) {
+            shard.connect(network, links);
+        }
+        return network;
+    }
+
+    private static TimetableEntry train(LocalTime arrival) {
+        return new TimetableEntry("R 1", "Origin", "B", arrival, arrival.plusMinutes(2), "P", "ENTRY");
+    }
+
+    private static void runUntilIdle(SimulationController controller, long end) {
+        long next;
+        while ((next = controller.nextEventTime()) <= end) {
+            controller.advanceTo(next);
+        }
+    }
+
+    @Test
+    void trainLeavesOverTheLinkOfItsExitNode() {
+        StationShard a = shard("A", through(), List.of(train(LocalTime.of(6, 10))));
+        StationShard b = shard("B", through(), List.of());
+        connect(List.of(new NetworkLink("A", "EXIT", "B", "ENTRY", 600)), a, b);
+
+        runUntilIdle(a.getController(), SimulationController.START_OF_DAY + 3600);
+        b.drainInbox();
+
+        assertEquals(1, a.getHandedOff());
+        assertEquals(0, a.getDropped());
+        assertEquals(1, b.getReceived());
+    }
+
+    @Test
+    void trainThatCannotReachAnyExitIsDropped() {
+        StationShard a = shard("A", deadEnd(), List.of(train(LocalTime.of(6, 10))));
+        StationShard b = shard("B", through(), List.of());
+        connect(List.of(new NetworkLink("A", "EXIT", "B", "ENTRY", 600)), a, b);
+
+        runUntilIdle(a.getController(), SimulationController.START_OF_DAY + 3600);
+        b.drainInbox();
+
+        assertEquals(0, a.getHandedOff());
+        assertEquals(1, a.getDropped());
+        assertEquals(0, b.getReceived());
+    }
+
+    @Test
+    void handoffKeepsItsDayAcrossMidnight() {
+        StationShard a = shard("A", through(), List.of());
+        StationShard b = shard("B", through(), List.of());
+        connect(List.of(new NetworkLink("A", "EXIT", "B", "ENTRY", 600)), a, b);
+
+        // Due a full day after the clock's start: as a time of day it would look long overdue
+        long arrival = SimulationController.START_OF_DAY + DAY + 600;
+        SimulationController controller = b.getController();
+        controller.advanceTo(SimulationController.START_OF_DAY + DAY);
+        assertTrue(b.offer(new StationShard.Handoff(arrival,
+                train(SimulationController.toLocalTime(arrival)))));
+        b.drainInbox();
+
+        int[] exited = new int[1];
+        long[] exitTime = new long[1];
+        controller.addExitListener((entry, train, time) -> {
+            exited[0]++;
+            exitTime[0] = time;
+        });
+        runUntilIdle(controller, arrival + 3600);
+
+        assertEquals(1, exited[0]);
+        assertTrue(exitTime[0] > arrival);
+    }
+}
@@ -0,0 +1,61 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.LayoutGeometry;
+import com.jas777.railops.model.Signal;
+import com.jas777.railops.model.StationConfig;
+import com.jas777.railops.model.Switch;
+import com.jas777.railops.model.Track;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Small hand-built layouts for tests. Tracks and switches have no coordinates, so every edge costs 1.0.
+ */
+final class TestLayouts {
+
+    private final StationConfig config = new StationConfig();
+    private final List<Track> tracks = new ArrayList<>();
+    private final List<Switch> switches = new ArrayList<>();
+    private final List<Signal> signals = new ArrayList<>();
+
+    TestLayouts() {
+        config.setStationName("Test");
+        config.setTracks(tracks);
+        config.setSwitches(switches);
+        config.setSignals(signals);
+    }
+
+    TestLayouts track(String id, String entryNodeId, String exitNodeId) {
+        return track(id, "MAIN_LINE", entryNodeId, exitNodeId);
+    }
+
+    TestLayouts platform(String id, String entryNodeId, String exitNodeId) {
+        return track(id, "PLATFORM_TRACK", entryNodeId, exitNodeId);
+    }
+
+    TestLayouts track(String id, String type, String entryNodeId, String exitNodeId) {
+        tracks.add(new Track(id, type, config.getGeometry(), 0, 0, null, entryNodeId, exitNodeId));
+        return this;
+    }
+
+    /** A switch whose P1 is the exit node of the track leading into it. */
+    TestLayouts sw(String id, String p1, String main, String side) {
+        switches.add(new Switch(id, config.getGeometry(), LayoutGeometry.NONE, LayoutGeometry.NONE,
+                LayoutGeometry.NONE, "MAIN", p1, main, side));
+        return this;
+    }
+
+    TestLayouts signal(String id, String protectedNodeId, Signal.SignalAspect aspect) {
+        signals.add(new Signal(id, id, config.getGeometry(), LayoutGeometry.NONE, aspect, protectedNodeId));
+        return this;
+    }
+
+    StationConfig config() {
+        return config;
+    }
+
+    CompiledTopology compile() {
+        return new LogicalGraphBuilder().compile(config);
+    }
+}
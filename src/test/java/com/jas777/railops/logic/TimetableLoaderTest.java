@@ -0,0 +1,133 @@
+package com.jas777.railops.logic;
+
+import com.jas777.railops.model.TimetableEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimetableLoaderTest {
+
+    private static final byte[] BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    @TempDir
+    Path directory;
+
+    private Path write(String content) throws IOException {
+        return write(new byte[0], content);
+    }
+
+    private Path write(byte[] prefix, String content) throws IOException {
+        byte[] body = content.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[prefix.length + body.length];
+        System.arraycopy(prefix, 0, bytes, 0, prefix.length);
+        System.arraycopy(body, 0, bytes, prefix.length, body.length);
+        Path file = directory.resolve("timetable.csv");
+        Files.write(file, bytes);
+        return file;
+    }
+
+    private static TimetableEntry entry(String number, String from, String to, String arrival, String departure,
+                                        String platform, String entryNode) {
+        return new TimetableEntry(number, from, to, LocalTime.parse(arrival), LocalTime.parse(departure), platform,
+                entryNode);
+    }
+
+    private static final String CSV = """
+            station,train_number,from_station,to_station,arrival,departure,platform,entry_node
+            A,IC 101,Gdynia,Kraków,06:10,06:15,1,
+            B,IC 102,Gdynia,Kraków,06:11,06:16,2,
+            A,"R ""Nocny"" 7","Łódź, Kaliska",Warszawa,6:05:30,6:07,"2",E2
+            A,IC 103,,,06:20,,,
+            """;
+
+    private static final List<TimetableEntry> CSV_STATION_A = List.of(
+            entry("R \"Nocny\" 7", "Łódź, Kaliska", "Warszawa", "06:05:30", "06:07", "2", "E2"),
+            entry("IC 101", "Gdynia", "Kraków", "06:10", "06:15", "1", "ENTRY"),
+            entry("IC 103", null, null, "06:20", "06:20", null, "ENTRY"));
+
+    @Test
+    void quotedFieldsAreUnescaped() throws IOException {
+        Path file = write(CSV);
+
+        List<TimetableEntry> entries = new TimetableLoader(List.of("A"), "ENTRY").load(file);
+
+        assertEquals(CSV_STATION_A, entries);
+    }
+
+    @Test
+    void crlfLineEndingsAreStripped() throws IOException {
+        Path file = write(CSV.replace("\n", "\r\n"));
+
+        TimetableLoader loader = new TimetableLoader(List.of("A"), "ENTRY");
+
+        assertEquals(CSV_STATION_A, loader.load(file));
+        assertEquals(4, loader.getRowsRead());
+    }
+
+    @Test
+    void byteOrderMarkBeforeTheHeaderIsSkipped() throws IOException {
+        Path file = write(BOM, CSV);
+
+        assertEquals(CSV_STATION_A, new TimetableLoader(List.of("A"), "ENTRY").load(file));
+    }
+
+    @Test
+    void rowsSplitAcrossMappingWindowsAreReadWhole() throws IOException {
+        Path csv = write(BOM, CSV.replace("\n", "\r\n"));
+        // Every window boundary falls somewhere inside a row, a quoted field or a CRLF pair
+        for (long window = 90; window <= 120; window++) {
+            assertEquals(CSV_STATION_A, new TimetableLoader(List.of("A"), "ENTRY", window).load(csv),
+                    "window " + window);
+        }
+
+        Path gtfs = write("""
+                trip_id,arrival_time,departure_time,stop_id,stop_sequence
+                T1,06:00:00,06:00:00,S0,1
+                T1,06:30:00,06:32:00,A,2
+                T1,07:00:00,07:00:00,S9,3
+                T2,25:10:00,25:10:00,S1,1
+                T2,25:40:00,25:41:00,A,2
+                T2,26:00:00,26:00:00,S8,3
+                """);
+        List<TimetableEntry> expected = List.of(
+                entry("T1", "S0", "S9", "06:30", "06:32", null, "ENTRY"),
+                entry("T2", "S1", "S8", "01:40", "01:41", null, "ENTRY"));
+        for (long window = 60; window <= 90; window++) {
+            List<TimetableEntry> entries = new TimetableLoader(List.of("A"), "ENTRY", window).load(gtfs);
+            assertEquals(expected.size(), entries.size(), "window " + window);
+            assertTrue(entries.containsAll(expected), "window " + window);
+        }
+    }
+
+    @Test
+    void lineLongerThanTheWindowIsAnError() throws IOException {
+        Path file = write(CSV);
+
+        assertThrows(IOException.class, () -> new TimetableLoader(List.of("A"), "ENTRY", 40).load(file));
+    }
+
+    @Test
+    void stationFilterWithoutAStationColumnIsAnError() throws IOException {
+        Path file = write("""
+                train_number,arrival,departure
+                IC 101,06:10,06:15
+                """);
+
+        IOException missing = assertThrows(IOException.class,
+                () -> new TimetableLoader(List.of("A"), "ENTRY").load(file));
+        assertTrue(missing.getMessage().contains("station column"));
+
+        // Without a filter the column is optional
+        assertEquals(1, new TimetableLoader(List.of(), "ENTRY").load(file).size());
+    }
+}
@@ -0,0 +1,99 @@
+package com.jas777.railops.logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopologyCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private final TestLayouts layout = new TestLayouts()
+            .track("IN", "ENTRY", "s")
+            .sw("SW", "s", "a", "b")
+            .platform("P_1", "a", "x")
+            .platform("P_2", "b", "y");
+
+    private static byte[] digest(String source) {
+        return TopologyCache.sha256().digest(source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void cacheIsUsedOnlyForTheSourceItWasCompiledFrom() throws IOException {
+        CompiledStation station = CompiledStation.of(layout.config(), layout.compile());
+        Path file = directory.resolve("station.topo");
+        TopologyCache.write(station, file, (short) 0, digest("{\"tracks\": []}"));
+
+        CompiledStation cached = TopologyCache.read(file, (short) 0, digest("{\"tracks\": []}"));
+        assertNotNull(cached);
+        assertEquals(station.getTopology().nodeCount(), cached.getTopology().nodeCount());
+        assertEquals(station.getTopology().edgeCount(), cached.getTopology().edgeCount());
+        assertEquals(station.getInterlocking().routeCount(), cached.getInterlocking().routeCount());
+
+        // Same length, one byte different
+        assertNull(TopologyCache.read(file, (short) 0, digest("{\"tracks\": {}}")));
+        assertNull(TopologyCache.read(file, (short) 1, digest("{\"tracks\": []}")));
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count(), "no temporary files left behind");
+        }
+    }
+
+    @Test
+    void streamingDigestMatchesTheWholeSource() throws IOException {
+        byte[] source = new byte[200_000];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = (byte) (i * 31);
+        }
+
+        assertArrayEquals(TopologyCache.sha256().digest(source),
+                TopologyCache.digest(new ByteArrayInputStream(source)));
+    }
+
+    @Test
+    void layoutResourceIsCompiledOnceThenLoadedFromTheCache() throws IOException {
+        String previous = System.getProperty("railops.cache");
+        System.setProperty("railops.cache", directory.toString());
+        try {
+            CompiledStation compiled = TopologyCache.load("station_config.json", false);
+            assertTrue(Files.isRegularFile(TopologyCache.cacheFile("station_config.json", false)));
+            CompiledStation cached = TopologyCache.load("station_config.json", false);
+
+            assertEquals(StationConfigLoader.load("station_config.json").getTracks().size(),
+                    cached.getConfig().getTracks().size());
+            assertEquals(compiled.getTopology().nodeCount(), cached.getTopology().nodeCount());
+            assertEquals(compiled.getTopology().edgeCount(), cached.getTopology().edgeCount());
+            assertEquals(compiled.getInterlocking().routeCount(), cached.getInterlocking().routeCount());
+        } finally {
+            if (previous == null) {
+                System.clearProperty("railops.cache");
+            } else {
+                System.setProperty("railops.cache", previous);
+            }
+        }
+    }
+
+    @Test
+    void defaultDirectoryBelongsToTheUser() {
+        Path home = Path.of(System.getProperty("user.home"));
+        Path root = TopologyCache.defaultDirectory();
+
+        assertTrue(root.isAbsolute());
+        assertFalse(root.startsWith(Path.of(System.getProperty("java.io.tmpdir"))));
+        if (System.getenv("XDG_CACHE_HOME") == null) {
+            assertTrue(root.startsWith(home), root + " under " + home);
+        }
+    }
+}